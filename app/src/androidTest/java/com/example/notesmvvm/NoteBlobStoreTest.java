@@ -0,0 +1,285 @@
+package com.example.notesmvvm;
+
+/*
+*  Crash consistency of NoteBlobStore - on a device, because put() syncs the directory through android.system.Os.
+*
+*  A crash is simulated by leaving the store the way it would be found after it: a file written by put() whose row was never committed,
+*  a temp file of an interrupted put(), a file in trash which a row references again. collectGarbage() gets its clock as an argument,
+*  so the grace period passes without waiting for it.
+*  The tests with rows use an in-memory NoteDatabase: a write rolled back after its file was written, and a row whose file is gone.
+* */
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.room.Room;
+import androidx.room.RoomDatabase;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(AndroidJUnit4.class)
+public class NoteBlobStoreTest {
+
+    private static final Set<String> NOTHING_REFERENCED = Collections.emptySet();
+
+    private File directory;
+    private NoteBlobStore blobStore;
+    private NoteDatabase database;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        directory = new File(context.getCacheDir(), "note_blobs_test");
+        deleteDirectory();
+        blobStore = new NoteBlobStore(directory);
+    }
+
+    @After
+    public void tearDown() {
+        if (database != null) {
+            database.close();
+        }
+        deleteDirectory();
+    }
+
+    @Test
+    public void putStoresTextUnderItsContentName() throws IOException {
+        String ref = blobStore.put("first description");
+
+        assertEquals(ref, blobStore.put("first description")); // same text - same file
+        assertEquals("first description", blobStore.get(ref));
+        assertEquals(1, directory.listFiles().length); // no temp file left
+    }
+
+    // The stream is the file itself - UTF-8 bytes of the text, what export copies into a backup
+    @Test
+    public void openStreamReadsUtf8OfText() throws IOException {
+        String ref = blobStore.put("Grüße, 日本");
+
+        FileInputStream input = blobStore.openStream(ref);
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[16];
+            int read;
+            while ((read = input.read(buffer)) > 0) {
+                bytes.write(buffer, 0, read);
+            }
+            assertEquals("Grüße, 日本", bytes.toString("UTF-8"));
+        } finally {
+            input.close();
+        }
+    }
+
+    @Test
+    public void referencedFilesAreKept() throws IOException {
+        String ref = blobStore.put("referenced");
+        long now = now();
+
+        assertEquals(0, blobStore.collectGarbage(Collections.singleton(ref), now));
+        assertEquals(0, blobStore.collectGarbage(Collections.singleton(ref), now + NoteBlobStore.GRACE_PERIOD_MS + 1));
+        assertTrue(new File(directory, ref).exists());
+        assertEquals("referenced", blobStore.get(ref));
+    }
+
+    // Crash after put() but before the row was committed - the file is referenced by nobody, it is removed after the grace period
+    @Test
+    public void fileOfUncommittedRowIsDeletedAfterGracePeriod() throws IOException {
+        String ref = blobStore.put("never committed");
+        long now = now();
+
+        assertEquals(0, blobStore.collectGarbage(NOTHING_REFERENCED, now)); // only moved to trash
+        assertFalse(new File(directory, ref).exists());
+        assertEquals(0, blobStore.collectGarbage(NOTHING_REFERENCED, now + NoteBlobStore.GRACE_PERIOD_MS - 1));
+        assertEquals(1, blobStore.collectGarbage(NOTHING_REFERENCED, now + NoteBlobStore.GRACE_PERIOD_MS + 1));
+        assertEquals(0, directory.listFiles().length);
+    }
+
+    // A reader which read the row before its file became unreferenced can still read the file, until the grace period is over
+    @Test
+    public void unreferencedFileStaysReadableDuringGracePeriod() throws IOException {
+        String ref = blobStore.put("replaced description");
+        long now = now();
+
+        blobStore.collectGarbage(NOTHING_REFERENCED, now);
+        assertEquals("replaced description", blobStore.get(ref));
+
+        blobStore.collectGarbage(NOTHING_REFERENCED, now + NoteBlobStore.GRACE_PERIOD_MS + 1);
+        try {
+            blobStore.get(ref);
+            fail("File should be deleted");
+        } catch (IOException expected) {
+        }
+    }
+
+    // Crash in the middle of put() - the temp file is deleted, but only once no put() could still be writing it
+    @Test
+    public void tempFileOfInterruptedPutIsDeletedAfterGracePeriod() throws IOException {
+        File tempFile = new File(directory, "0123abcd.tmp");
+        write(tempFile, "half writ");
+        long now = now();
+
+        assertEquals(0, blobStore.collectGarbage(NOTHING_REFERENCED, now));
+        assertTrue(tempFile.exists());
+        assertEquals(1, blobStore.collectGarbage(NOTHING_REFERENCED, now + NoteBlobStore.GRACE_PERIOD_MS + 1));
+        assertFalse(tempFile.exists());
+    }
+
+    // Same text saved again while its old file is in trash - put() moves it back, and it isn't deleted with the trash
+    @Test
+    public void putRestoresFileFromTrash() throws IOException {
+        String ref = blobStore.put("saved again");
+        long now = now();
+        blobStore.collectGarbage(NOTHING_REFERENCED, now);
+        assertTrue(new File(directory, ref + ".trash").exists());
+
+        assertEquals(ref, blobStore.put("saved again"));
+        assertTrue(new File(directory, ref).exists());
+        assertFalse(new File(directory, ref + ".trash").exists());
+        assertEquals(0, blobStore.collectGarbage(Collections.singleton(ref), now + NoteBlobStore.GRACE_PERIOD_MS + 1));
+        assertEquals("saved again", blobStore.get(ref));
+    }
+
+    // A row references a file which is in trash (crash between moving it and the commit) - collectGarbage() moves it back
+    @Test
+    public void referencedFileInTrashIsRestored() throws IOException {
+        String ref = blobStore.put("in trash");
+        long now = now();
+        blobStore.collectGarbage(NOTHING_REFERENCED, now);
+
+        assertEquals(0, blobStore.collectGarbage(Collections.singleton(ref), now + NoteBlobStore.GRACE_PERIOD_MS + 1));
+        assertTrue(new File(directory, ref).exists());
+        assertEquals("in trash", blobStore.get(ref));
+    }
+
+    /*
+    * A write which fails after encoding its note (as a batch of NoteWriteQueue does when one of its writes throws) - the file is
+    * already written, the transaction is rolled back, so no row references it. It is only garbage: removed after the grace period.
+    * */
+    @Test
+    public void fileOfRolledBackWriteIsCollected() throws IOException {
+        final NoteDatabase database = createDatabase();
+        final String description = longDescription();
+        try {
+            database.runInTransaction(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        database.noteDao().Insert(NoteDescriptionCodec.encode(new Note("Spilled", description, 1), blobStore));
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                    throw new IllegalStateException("Write failed after its file was stored");
+                }
+            });
+            fail("Transaction should fail");
+        } catch (IllegalStateException expected) {
+        }
+
+        assertEquals(0, database.noteDao().getRowCount());
+        assertEquals(1, directory.listFiles().length);
+        Set<String> refs = new HashSet<>(database.noteDao().getDescriptionRefs());
+        assertTrue(refs.isEmpty());
+        long now = now();
+        assertEquals(0, blobStore.collectGarbage(refs, now));
+        assertEquals(1, blobStore.collectGarbage(refs, now + NoteBlobStore.GRACE_PERIOD_MS + 1));
+        assertEquals(0, directory.listFiles().length);
+    }
+
+    /*
+    * A row whose file is gone (e.g. deleted by hand, or a restored database without its files) - the row still has the beginning of its
+    * description for the list, but decoding it fails (getNote() then returns null instead of a note with a cut off text to edit), and
+    * so does streaming it (export fails instead of writing a shortened backup). collectGarbage() doesn't trip over it.
+    * */
+    @Test
+    public void rowReferencingMissingFileFailsToDecode() throws IOException {
+        NoteDatabase database = createDatabase();
+        String description = longDescription();
+        int id = (int) database.noteDao().Insert(NoteDescriptionCodec.encode(new Note("Spilled", description, 1), blobStore));
+        Note stored = database.noteDao().getNoteById(id);
+        assertNotNull(stored.getDescriptionRef());
+        assertTrue(new File(directory, stored.getDescriptionRef()).delete());
+
+        stored = database.noteDao().getNoteById(id);
+        assertTrue(description.startsWith(stored.getDescription()));
+        try {
+            NoteDescriptionCodec.decode(stored, blobStore);
+            fail("Description file is missing");
+        } catch (IOException expected) {
+        }
+        try {
+            blobStore.openStream(stored.getDescriptionRef()).close();
+            fail("Description file is missing");
+        } catch (IOException expected) {
+        }
+        assertEquals(0, blobStore.collectGarbage(new HashSet<>(database.noteDao().getDescriptionRefs()), now()));
+    }
+
+    private NoteDatabase createDatabase() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        database = Room.inMemoryDatabaseBuilder(context, NoteDatabase.class)
+                .allowMainThreadQueries()
+                .addCallback(new RoomDatabase.Callback() {
+                    @Override
+                    public void onCreate(@NonNull SupportSQLiteDatabase db) {
+                        NoteDatabase.createTriggersAndState(db); // note_state row - without it no note is visible
+                    }
+                })
+                .build();
+        return database;
+    }
+
+    // Longer than SPILL_THRESHOLD, so NoteDescriptionCodec puts it into a file of the store
+    private static String longDescription() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; text.length() <= NoteBlobStore.SPILL_THRESHOLD; i++) {
+            text.append("line ").append(i).append('\n');
+        }
+        return text.toString();
+    }
+
+    // Whole seconds - collectGarbage() sets this as mtime of trash, and some file systems store mtime only in seconds
+    private static long now() {
+        return System.currentTimeMillis() / 1000 * 1000;
+    }
+
+    private static void write(File file, String text) throws IOException {
+        file.getParentFile().mkdirs();
+        FileOutputStream output = new FileOutputStream(file);
+        try {
+            output.write(text.getBytes("UTF-8"));
+        } finally {
+            output.close();
+        }
+    }
+
+    private void deleteDirectory() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+}
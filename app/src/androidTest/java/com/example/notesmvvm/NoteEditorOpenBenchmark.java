@@ -0,0 +1,143 @@
+package com.example.notesmvvm;
+
+/*
+*  Time to open a 500 KB note in the editor - from AddEditNoteViewModel.loadNote() until its LiveData delivers the note on the main
+*  thread, the way AddEditNoteActivity gets it (NoteRepository.getNote(): row read, description read from its NoteBlobStore file).
+*  Cold runs invalidate the note in NoteCache first, warm runs are served from it.
+*  On a device, because a description this long is stored in a file (NoteBlobStore syncs through android.system.Os). It uses the app's
+*  database - the note it inserts is deleted at the end, and purged with the other deleted notes later.
+*  Results go to logcat (tag NoteMetrics) and to <filesDir>/benchmark-results/NoteEditorOpenBenchmark.json of the app.
+*
+*  Run with: ./gradlew connectedDebugAndroidTest -Pandroid.testInstrumentationRunnerArguments.benchmark=true
+*            -Pandroid.testInstrumentationRunnerArguments.class=com.example.notesmvvm.NoteEditorOpenBenchmark
+* */
+
+import android.app.Application;
+
+import androidx.lifecycle.Observer;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class NoteEditorOpenBenchmark {
+
+    private static final int DESCRIPTION_BYTES = 500 * 1024;
+    private static final int RUNS = 20;
+    private static final long TIMEOUT_SECONDS = 30;
+
+    @Test
+    public void openLargeNote() throws Exception {
+        // Only with -Pandroid.testInstrumentationRunnerArguments.benchmark=true, not in every connectedAndroidTest run
+        assumeTrue(Boolean.parseBoolean(InstrumentationRegistry.getArguments().getString("benchmark")));
+
+        final Application application = (Application) InstrumentationRegistry.getInstrumentation().getTargetContext().getApplicationContext();
+        NoteRepository repository = NoteRepository.getInstance(application);
+        String description = largeDescription();
+        int id = insert(repository, new Note("Large note", description, 1));
+
+        InMemoryNoteMetrics report = new InMemoryNoteMetrics();
+        try {
+            for (int run = 0; run < RUNS; run++) {
+                repository.getNoteCache().invalidate(id);
+                long startNanos = System.nanoTime();
+                Note note = open(application, id);
+                report.recordNanos("editor.open.cold." + DESCRIPTION_BYTES, System.nanoTime() - startNanos);
+                assertNotNull(note);
+                assertEquals(description.length(), note.getDescription().length());
+
+                startNanos = System.nanoTime();
+                note = open(application, id);
+                report.recordNanos("editor.open.warm." + DESCRIPTION_BYTES, System.nanoTime() - startNanos);
+                assertNotNull(note);
+            }
+        } finally {
+            repository.deleteById(id, null);
+        }
+
+        NoteMetricsExporter.toLogcat(report);
+        File directory = new File(application.getFilesDir(), "benchmark-results");
+        assertTrue(directory.isDirectory() || directory.mkdirs());
+        NoteMetricsExporter.writeJsonTo(report, new File(directory, "NoteEditorOpenBenchmark.json"));
+    }
+
+    // What AddEditNoteActivity does - a new ViewModel loads the note by id, the activity observes it on the main thread
+    private static Note open(final Application application, final int id) throws InterruptedException {
+        final AtomicReference<Note> result = new AtomicReference<>();
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AddEditNoteViewModel viewModel = new AddEditNoteViewModel(application);
+        final Observer<Note> observer = new Observer<Note>() {
+            @Override
+            public void onChanged(Note note) {
+                result.set(note);
+                latch.countDown();
+            }
+        };
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                viewModel.getNote().observeForever(observer);
+                viewModel.loadNote(id);
+            }
+        });
+        assertTrue("Note was not delivered", latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                viewModel.getNote().removeObserver(observer);
+            }
+        });
+        return result.get();
+    }
+
+    // Inserts the note and returns its id, taken from the change feed
+    private static int insert(final NoteRepository repository, final Note note) throws InterruptedException {
+        final AtomicInteger id = new AtomicInteger();
+        final CountDownLatch latch = new CountDownLatch(1);
+        final NoteChange.Listener listener = new NoteChange.Listener() {
+            @Override
+            public void onNoteChange(NoteChange change) {
+                if (change.getType() == NoteChange.Type.INSERTED && id.get() == 0) {
+                    id.set(change.getIds().get(0));
+                    latch.countDown();
+                }
+            }
+        };
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                repository.addChangeListener(listener);
+                repository.insert(note, null);
+            }
+        });
+        try {
+            assertTrue("Note was not inserted", latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        } finally {
+            repository.removeChangeListener(listener);
+        }
+        return id.get();
+    }
+
+    // Plain text, long enough to be stored in a file of NoteBlobStore
+    private static String largeDescription() {
+        StringBuilder text = new StringBuilder(DESCRIPTION_BYTES);
+        for (int line = 0; text.length() < DESCRIPTION_BYTES; line++) {
+            text.append("Line ").append(line).append(" of a long meeting transcript pasted into a note\n");
+        }
+        text.setLength(DESCRIPTION_BYTES);
+        return text.toString();
+    }
+}
@@ -0,0 +1,237 @@
+package com.example.notesmvvm;
+
+/*
+*  Migrations of NoteDatabase (NoteDatabase.getMigrations()) on a device.
+*
+*  A database of an old version is created the way the app created it - version 1 with the note_table of the first release
+*  (CREATE_NOTE_TABLE_1), a later version by running the migrations up to it. Then it is opened by Room with the current NoteDatabase,
+*  which runs the remaining migrations and validates the result against the schema its annotation processor generated (every column,
+*  type, default, index and the FTS options) - a migration which leaves anything different makes the open fail.
+*  The database from version 1 holds ROWS notes, about what a heavy user has, so the time of the whole upgrade (done on the first open
+*  after an app update) is checked too.
+* */
+
+import android.content.Context;
+import android.database.Cursor;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.room.Room;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteOpenHelper;
+import androidx.sqlite.db.SupportSQLiteStatement;
+import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class NoteMigrationTest {
+
+    private static final String TAG = "NoteMigrationTest";
+    private static final String TEST_DB = "note_migration_test";
+    private static final int ROWS = 100000;
+    // Every 100th note has this word, the others only words of WORDS
+    private static final String RARE_WORD = "zebracorn";
+    private static final long MAX_MIGRATION_MS = 30000;
+
+    // note_table as Room created it at version 1 (before any migration existed)
+    private static final String CREATE_NOTE_TABLE_1 = "CREATE TABLE IF NOT EXISTS `note_table` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+            + "`title` TEXT, `description` TEXT, `priority` INTEGER NOT NULL)";
+
+    private static final String[] WORDS = {"meeting", "budget", "shopping", "list", "call", "mom", "project", "deadline",
+            "review", "notes", "idea", "travel", "plan", "book", "read", "gym", "doctor", "pay", "rent", "groceries"};
+
+    private Context context;
+    private NoteBlobStore blobStore;
+    private int latestVersion;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(TEST_DB);
+        blobStore = NoteBlobStore.forContext(context);
+        latestVersion = NoteDatabase.getMigrations(blobStore).length + 1; // one migration per version bump
+    }
+
+    @After
+    public void tearDown() {
+        context.deleteDatabase(TEST_DB);
+    }
+
+    @Test
+    public void migratesAllRowsFromVersion1() {
+        SupportSQLiteOpenHelper helper = createDatabase(1);
+        SupportSQLiteDatabase db = helper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            SupportSQLiteStatement insert = db.compileStatement(
+                    "INSERT INTO `note_table` (`title`, `description`, `priority`) VALUES (?, ?, ?)");
+            Random random = new Random(ROWS);
+            for (int i = 0; i < ROWS; i++) {
+                insert.bindString(1, "Note " + i);
+                insert.bindString(2, words(random, 20) + (i % 100 == 0 ? " " + RARE_WORD : ""));
+                insert.bindLong(3, 1 + random.nextInt(10));
+                insert.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        helper.close();
+
+        long startMillis = System.currentTimeMillis();
+        NoteDatabase database = openWithRoom();
+        try {
+            db = database.getOpenHelper().getWritableDatabase(); // migrates and validates
+            long migrationMillis = System.currentTimeMillis() - startMillis;
+            Log.i(TAG, "Migration 1 -> " + latestVersion + " of " + ROWS + " notes took " + migrationMillis + " ms");
+
+            assertEquals(latestVersion, db.getVersion());
+            assertEquals(ROWS, longForQuery(db, "SELECT COUNT(*) FROM `note_table`"));
+            assertEquals(ROWS, longForQuery(db, "SELECT COUNT(*) FROM `note_table` WHERE `version` = 0 AND `generation` = 0 "
+                    + "AND `deleted_at` = 0 AND `description_blob` IS NULL AND `description_ref` IS NULL"));
+            assertEquals(1, longForQuery(db, "SELECT COUNT(*) FROM `note_state` WHERE `id` = " + NoteState.ID
+                    + " AND `visible_generation` = 0"));
+            assertEquals(ROWS, longForQuery(db, "SELECT COUNT(*) FROM `note_fts`"));
+            assertEquals(ROWS / 100, longForQuery(db, "SELECT COUNT(*) FROM `note_fts` WHERE `note_fts` MATCH '" + RARE_WORD + "'"));
+            assertEquals("Note 500", stringForQuery(db, "SELECT `title` FROM `note_table` WHERE `id` IN "
+                    + "(SELECT `docid` FROM `note_fts` WHERE `note_fts` MATCH '" + RARE_WORD + "') ORDER BY `id` LIMIT 1 OFFSET 5"));
+            assertEquals(ROWS, database.noteDao().getRowCount());
+
+            // Triggers the migrations create - Room doesn't validate these
+            assertNotNull(stringForQuery(db, "SELECT `name` FROM sqlite_master WHERE `type` = 'trigger' AND `name` = 'note_table_version_bump'"));
+            assertNotNull(stringForQuery(db, "SELECT `name` FROM sqlite_master WHERE `type` = 'trigger' AND `name` = 'note_fts_delete'"));
+            assertEquals(0, longForQuery(db, "SELECT COUNT(*) FROM sqlite_master WHERE `type` = 'trigger' "
+                    + "AND `name` LIKE 'room_fts_content_sync_%'"));
+
+            assertTrue("Migration took " + migrationMillis + " ms", migrationMillis < MAX_MIGRATION_MS);
+        } finally {
+            database.close();
+        }
+    }
+
+    // From every old version on its own - a database which stopped at any version (user skipped updates) is migrated and valid
+    @Test
+    public void everyVersionMigratesToLatest() {
+        for (int version = 1; version < latestVersion; version++) {
+            context.deleteDatabase(TEST_DB);
+            SupportSQLiteOpenHelper helper = createDatabase(version);
+            SupportSQLiteDatabase created = helper.getWritableDatabase();
+            created.execSQL("INSERT INTO `note_table` (`title`, `description`, `priority`) VALUES ('Title', 'meeting budget', 3)");
+            if (version >= 8) {
+                // From 8 on note_fts keeps its own content, the repository indexes every write itself
+                created.execSQL("INSERT INTO `note_fts` (`docid`, `title`, `description`) VALUES (last_insert_rowid(), 'Title', 'meeting budget')");
+            }
+            helper.close();
+
+            NoteDatabase database = openWithRoom();
+            try {
+                SupportSQLiteDatabase db = database.getOpenHelper().getWritableDatabase();
+                assertEquals("Notes after " + version + " -> " + latestVersion, 1, longForQuery(db, "SELECT COUNT(*) FROM `note_table`"));
+                assertEquals(1, longForQuery(db, "SELECT COUNT(*) FROM `note_fts` WHERE `note_fts` MATCH 'budget'"));
+            } finally {
+                database.close();
+            }
+        }
+    }
+
+    // 7 -> 8 indexes the whole text of a compressed description, not only the prefix stored in the description column
+    @Test
+    public void migrationTo8IndexesFullCompressedDescription() throws IOException {
+        String description = words(new Random(1), 2000) + " " + RARE_WORD;
+        Note note = NoteDescriptionCodec.encode(new Note("Transcript", description, 5), blobStore);
+        assertNotNull(note.getDescriptionBlob());
+
+        SupportSQLiteOpenHelper helper = createDatabase(7);
+        SupportSQLiteStatement insert = helper.getWritableDatabase().compileStatement(
+                "INSERT INTO `note_table` (`title`, `description`, `priority`, `description_blob`) VALUES (?, ?, ?, ?)");
+        insert.bindString(1, note.getTitle());
+        insert.bindString(2, note.getDescription());
+        insert.bindLong(3, note.getPriority());
+        insert.bindBlob(4, note.getDescriptionBlob());
+        long id = insert.executeInsert();
+        helper.close();
+
+        NoteDatabase database = openWithRoom();
+        try {
+            SupportSQLiteDatabase db = database.getOpenHelper().getWritableDatabase();
+            assertEquals(id, longForQuery(db, "SELECT `docid` FROM `note_fts` WHERE `note_fts` MATCH '" + RARE_WORD + "'"));
+            assertEquals(description, stringForQuery(db, "SELECT `description` FROM `note_fts` WHERE `docid` = " + id));
+        } finally {
+            database.close();
+        }
+    }
+
+    // Database of the given version, as an app which was never updated past it has it - version 1 plus the migrations up to version
+    private SupportSQLiteOpenHelper createDatabase(final int version) {
+        SupportSQLiteOpenHelper.Configuration configuration = SupportSQLiteOpenHelper.Configuration.builder(context)
+                .name(TEST_DB)
+                .callback(new SupportSQLiteOpenHelper.Callback(version) {
+                    @Override
+                    public void onCreate(@NonNull SupportSQLiteDatabase db) {
+                        db.execSQL(CREATE_NOTE_TABLE_1);
+                        Migration[] migrations = NoteDatabase.getMigrations(blobStore);
+                        for (int i = 0; i < version - 1; i++) {
+                            migrations[i].migrate(db);
+                        }
+                    }
+
+                    @Override
+                    public void onUpgrade(@NonNull SupportSQLiteDatabase db, int oldVersion, int newVersion) {
+                        throw new IllegalStateException("Test database must be new");
+                    }
+                })
+                .build();
+        return new FrameworkSQLiteOpenHelperFactory().create(configuration);
+    }
+
+    // Same migrations as NoteDatabase.getInstance(), Room checks the migrated schema when the database is first opened
+    private NoteDatabase openWithRoom() {
+        return Room.databaseBuilder(context, NoteDatabase.class, TEST_DB)
+                .addMigrations(NoteDatabase.getMigrations(blobStore))
+                .build();
+    }
+
+    private static String words(Random random, int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                text.append(' ');
+            }
+            text.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return text.toString();
+    }
+
+    private static long longForQuery(SupportSQLiteDatabase db, String sql) {
+        Cursor cursor = db.query(sql);
+        try {
+            assertTrue(sql, cursor.moveToFirst());
+            return cursor.getLong(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static String stringForQuery(SupportSQLiteDatabase db, String sql) {
+        Cursor cursor = db.query(sql);
+        try {
+            return cursor.moveToFirst() ? cursor.getString(0) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -2,6 +2,8 @@ package com.example.notesmvvm;
 
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.lifecycle.Observer;
+import androidx.lifecycle.ViewModelProvider;
 
 import android.content.Intent;
 import android.os.Bundle;
@@ -9,7 +11,6 @@ import android.view.Menu;
 import android.view.MenuInflater;
 import android.view.MenuItem;
 import android.widget.NumberPicker;
-import android.widget.Toast;
 
 import com.google.android.material.textfield.TextInputLayout;
 
@@ -18,15 +19,15 @@ import es.dmoral.toasty.Toasty;
 public class AddEditNoteActivity extends AppCompatActivity {
 
     // psfs
+    // Only id of the note is passed - its content is loaded by AddEditNoteViewModel, not sent through Intent extras.
     public static final String EXTRA_ID  = "com.example.notesmvvm.EXTRA_ID";
-    public static final String EXTRA_TITLE  = "com.example.notesmvvm.EXTRA_TITLE";
-    public static final String EXTRA_DESCRIPTION  = "com.example.notesmvvm.EXTRA_DESCRIPTION";
-    public static final String EXTRA_PRIORITY = "com.example.notesmvvm.EXTRA_PRIORITY";
 
     private TextInputLayout textInputLayoutTitle;
     private TextInputLayout textInputLayoutDescription;
     private NumberPicker numberPickerPriority;
 
+    private AddEditNoteViewModel addEditNoteViewModel;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -41,14 +42,31 @@ public class AddEditNoteActivity extends AppCompatActivity {
 
         getSupportActionBar().setHomeAsUpIndicator(R.drawable.ic_close_24);
 
+        addEditNoteViewModel = new ViewModelProvider(this, ViewModelProvider.AndroidViewModelFactory.getInstance(getApplication()))
+                .get(AddEditNoteViewModel.class);
+
         Intent intent = getIntent();
 
         if(intent.hasExtra(EXTRA_ID)){
             // Update
             setTitle("Edit Note");
-            textInputLayoutTitle.getEditText().setText(intent.getStringExtra(EXTRA_TITLE));
-            textInputLayoutDescription.getEditText().setText(intent.getStringExtra(EXTRA_DESCRIPTION));
-            numberPickerPriority.setValue(intent.getIntExtra(EXTRA_PRIORITY,1));
+            addEditNoteViewModel.loadNote(intent.getIntExtra(EXTRA_ID, -1));
+
+            // Delivered once the note is loaded in background (and again after rotation - but then EditTexts restore what user typed
+            // in onRestoreInstanceState(), which runs after this)
+            addEditNoteViewModel.getNote().observe(this, new Observer<Note>() {
+                @Override
+                public void onChanged(Note note) {
+                    if (note == null) {
+                        Toasty.error(AddEditNoteActivity.this, "Note can't be opened !", Toasty.LENGTH_SHORT).show();
+                        finish();
+                        return;
+                    }
+                    textInputLayoutTitle.getEditText().setText(note.getTitle());
+                    textInputLayoutDescription.getEditText().setText(note.getDescription());
+                    numberPickerPriority.setValue(note.getPriority());
+                }
+            });
         } else {
             // Add
             setTitle("Add Note");
@@ -78,6 +96,11 @@ public class AddEditNoteActivity extends AppCompatActivity {
 
     private void SaveNote() {
 
+        if (addEditNoteViewModel.isLoading()) {
+            // Note is not loaded yet, saving now would overwrite it with empty fields
+            return;
+        }
+
         String title = textInputLayoutTitle.getEditText().getText().toString();
         String description = textInputLayoutDescription.getEditText().getText().toString();
         int priority  = numberPickerPriority.getValue();
@@ -87,19 +110,11 @@ public class AddEditNoteActivity extends AppCompatActivity {
             return;
         }
 
-        // Send data back to Main Activity via Intent
-        Intent data = new Intent();
-        data.putExtra(EXTRA_TITLE,title);
-        data.putExtra(EXTRA_DESCRIPTION,description);
-        data.putExtra(EXTRA_PRIORITY,priority);
-
-        int id = getIntent().getIntExtra(EXTRA_ID,-1); // No entry in table will have id = -1
-        if(id != -1){
-            data.putExtra(EXTRA_ID,id);
-        }
+        // Saved in background by ViewModel - MainActivity only gets result code back, not the note itself
+        addEditNoteViewModel.saveNote(title, description, priority);
 
-        // RESULT_OK - integer constant indicating that data is given back by this activity
-        setResult(RESULT_OK,data);
+        // RESULT_OK - integer constant indicating that note is saved by this activity
+        setResult(RESULT_OK);
         finish();
 
 
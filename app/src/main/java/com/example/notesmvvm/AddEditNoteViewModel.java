@@ -0,0 +1,74 @@
+package com.example.notesmvvm;
+
+/*
+*  ViewModel of AddEditNoteActivity.
+*
+*  AddEditNoteActivity only gets id of the note to edit (not its content) - this ViewModel loads the note from repository in background
+*  and saves it back, so a big description never has to travel through Intent extras (Binder) in either direction.
+*  Since it survives configuration changes, the note is loaded only once even if screen is rotated.
+* */
+
+import android.app.Application;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+public class AddEditNoteViewModel extends AndroidViewModel {
+
+    private NoteRepository repository;
+
+    // Note being edited - null value means note doesn't exist (anymore)
+    private MutableLiveData<Note> note = new MutableLiveData<>();
+    private boolean loadStarted;
+    private boolean loadFinished;
+
+    public AddEditNoteViewModel(@NonNull Application application) {
+        super(application);
+
+        repository = NoteRepository.getInstance(application); // shared by all ViewModels
+    }
+
+    // Starts loading the note with given id, does nothing if it is already loaded/loading (e.g. after rotation)
+    public void loadNote(int id) {
+        if (loadStarted) {
+            return;
+        }
+        loadStarted = true;
+        repository.getNote(id, new NoteRepository.NoteCallback() {
+            @Override
+            public void onResult(@Nullable Note loadedNote) {
+                loadFinished = true;
+                note.setValue(loadedNote);
+            }
+        });
+    }
+
+    public LiveData<Note> getNote() {
+        return note;
+    }
+
+    // True while an existing note is being loaded - it can't be saved before that
+    public boolean isLoading() {
+        return loadStarted && !loadFinished;
+    }
+
+    /*
+    * Saves the note in background - insert for a new note. For an existing note only the fields which are different from the loaded note
+    * are written, and nothing at all if user didn't change anything.
+    * The write is queued in repository (NoteWriteQueue), so activity can finish right away.
+    * */
+    public void saveNote(String title, String description, int priority) {
+        Note newNote = new Note(title, description, priority);
+        Note originalNote = note.getValue();
+
+        if (originalNote != null) {
+            newNote.setId(originalNote.getId()); // So that we perform update operation on same note
+            repository.updateChangedFields(originalNote, newNote, null);
+        } else {
+            repository.insert(newNote);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.notesmvvm;
+
+/*
+*  Default NoteMetrics - one LogLinearHistogram per metric name, kept in memory for the life of the process.
+*  Use NoteMetricsExporter to look at them.
+* */
+
+import androidx.annotation.NonNull;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class InMemoryNoteMetrics implements NoteMetrics {
+
+    private final ConcurrentHashMap<String, LogLinearHistogram> histograms = new ConcurrentHashMap<>();
+    // Names recorded with recordValue() - every other histogram holds nanoseconds
+    private final Set<String> valueNames = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    @Override
+    public void recordNanos(String name, long nanos) {
+        getHistogram(name).record(nanos);
+    }
+
+    @Override
+    public void recordValue(String name, long value) {
+        valueNames.add(name);
+        getHistogram(name).record(value);
+    }
+
+    // Sorted by name, so exports always list metrics in the same order
+    @NonNull
+    public Map<String, LogLinearHistogram> getHistograms() {
+        return new TreeMap<>(histograms);
+    }
+
+    public boolean isLatency(String name) {
+        return !valueNames.contains(name);
+    }
+
+    public void reset() {
+        for (LogLinearHistogram histogram : histograms.values()) {
+            histogram.reset();
+        }
+    }
+
+    private LogLinearHistogram getHistogram(String name) {
+        LogLinearHistogram histogram = histograms.get(name);
+        if (histogram == null) {
+            LogLinearHistogram created = new LogLinearHistogram();
+            histogram = histograms.putIfAbsent(name, created);
+            if (histogram == null) {
+                histogram = created;
+            }
+        }
+        return histogram;
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.notesmvvm;
+
+/*
+*  Fixed memory histogram of non-negative long values, in the style of HdrHistogram -
+*  values are grouped into buckets which grow with the value (every power of 2 is split into 16 linear buckets), so any value
+*  from 0 to Long.MAX_VALUE is kept with a relative error of at most 1/16 (~6%), using the same small array (~8KB).
+*  Recording is O(1) and never allocates. Thread safe.
+* */
+
+import java.util.Arrays;
+
+public class LogLinearHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS; // 32 - values below are exact
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2; // buckets per power of 2 above that
+    private static final int BUCKETS = SUB_BUCKETS + (64 - SUB_BUCKET_BITS) * HALF_SUB_BUCKETS;
+
+    private final long[] counts = new long[BUCKETS];
+    private long totalCount;
+    private long sum;
+    private long min = Long.MAX_VALUE;
+    private long max;
+
+    public synchronized void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts[bucketIndex(value)]++;
+        totalCount++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    public synchronized long getTotalCount() {
+        return totalCount;
+    }
+
+    public synchronized long getMin() {
+        return totalCount > 0 ? min : 0;
+    }
+
+    public synchronized long getMax() {
+        return max;
+    }
+
+    public synchronized double getMean() {
+        return totalCount > 0 ? (double) sum / totalCount : 0;
+    }
+
+    // Value below which given percent (0-100) of recorded values are - upper bound of the bucket it falls in, capped by max
+    public synchronized long getValueAtPercentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * totalCount));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return Math.min(bucketUpperBound(i), max);
+            }
+        }
+        return max;
+    }
+
+    public synchronized void reset() {
+        Arrays.fill(counts, 0);
+        totalCount = 0;
+        sum = 0;
+        min = Long.MAX_VALUE;
+        max = 0;
+    }
+
+    /*
+    * Values 0..31 have their own bucket. Above that, the highest set bit selects the group (shift) and the 4 bits below it
+    * select one of 16 buckets inside it.
+    * */
+    private static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int highestBit = 63 - Long.numberOfLeadingZeros(value);
+        int shift = highestBit - SUB_BUCKET_BITS + 1;
+        int subBucket = (int) (value >>> shift) - HALF_SUB_BUCKETS; // top 5 bits are 16..31 -> 0..15
+        return SUB_BUCKETS + (shift - 1) * HALF_SUB_BUCKETS + subBucket;
+    }
+
+    private static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKETS) / HALF_SUB_BUCKETS + 1;
+        long subBucket = (index - SUB_BUCKETS) % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -5,20 +5,25 @@ import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.lifecycle.Observer;
 import androidx.lifecycle.ViewModelProvider;
+import androidx.paging.PagedList;
 import androidx.recyclerview.widget.ItemTouchHelper;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import android.content.Intent;
 import android.os.Bundle;
+import android.util.Log;
+import android.view.Choreographer;
 import android.view.Menu;
 import android.view.MenuInflater;
 import android.view.MenuItem;
 import android.view.View;
 
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
+import com.google.android.material.snackbar.Snackbar;
 
-import java.util.List;
+import java.io.File;
+import java.io.IOException;
 
 import es.dmoral.toasty.Toasty;
 
@@ -32,7 +37,11 @@ public class MainActivity extends AppCompatActivity {
     public static final int ADD_NOTE_REQUEST = 1;
     public static final int EDIT_NOTE_REQUEST = 2;
 
+    private static final String TAG = "MainActivity";
+    private static final String METRICS_FILE_NAME = "note-metrics.json";
+
     private NoteViewModel noteViewModel;
+    private boolean reportedFullyDrawn;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -53,12 +62,19 @@ public class MainActivity extends AppCompatActivity {
         });
 
 
-        RecyclerView recyclerView = findViewById(R.id.recycler_view);
-        recyclerView.setLayoutManager(new LinearLayoutManager(this));
+        NoteListConfig listConfig = new NoteListConfig();
+
+        final RecyclerView recyclerView = findViewById(R.id.recycler_view);
+        LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        layoutManager.setInitialPrefetchItemCount(listConfig.getInitialPrefetchItemCount());
+        recyclerView.setLayoutManager(layoutManager);
         recyclerView.setHasFixedSize(true);
+        recyclerView.setItemViewCacheSize(listConfig.getItemViewCacheSize());
+        recyclerView.setRecycledViewPool(listConfig.createRecycledViewPool());
 
         final NoteAdapter adapter = new NoteAdapter(); // No need to pass data, as we are not storing data in Activity.
         recyclerView.setAdapter(adapter); // By default, list in adapter is empty
+        adapter.preinflate(recyclerView, listConfig.getPreinflateItemCount()); // while the first notes are loading
 
         /*
          * We don't instantiate noteViewModel as noteViewModel = new NoteViewModel(), bcz doing so we are creating new instance of viewModel
@@ -66,19 +82,40 @@ public class MainActivity extends AppCompatActivity {
          * has to create new viewModel instance and when to provide already existing instance.  We use ViewModelProvider for getting this instance.
          * */
 
-        // By providing getApplication(), ViewModel knows whose lifecycle it has to scope to. Android system will destroy this viewModel when Activity
-        // is finished.
-        noteViewModel = new ViewModelProvider.AndroidViewModelFactory(getApplication()).create(NoteViewModel.class);
+        // ViewModelProvider(this, factory) - "this" is the ViewModelStore of the activity, which survives configuration changes. get() returns
+        // the NoteViewModel already in the store (after rotation) and uses the factory only when there is none yet. Android system will destroy
+        // this viewModel when Activity is finished.
+        // (Calling factory.create() directly would skip the store and create a new NoteViewModel - and query notes again - on every rotation.)
+        noteViewModel = new ViewModelProvider(this, ViewModelProvider.AndroidViewModelFactory.getInstance(getApplication()))
+                .get(NoteViewModel.class);
+
+        if (listConfig.isMonitorFrames()) {
+            NoteListPerformanceMonitor.attach(recyclerView, adapter, noteViewModel.getMetrics());
+        }
 
         // noteViewModel.getAllNotes() - return LiveData, can be observed for changes. LiveData is aware of Lifecycle and it will only
         // update activity if it is in foreground. When activity is destroyed, it'll clean the reference to activity which avoid memory
         // leaks and crashes
-        noteViewModel.getAllNotes().observe(this, new Observer<List<Note>>() {
+        // getNoteSummariesPaged() - instead of whole table, we get a PagedList which loads only visible notes plus prefetch.
+        noteViewModel.getNoteSummariesPaged().observe(this, new Observer<PagedList<NoteSummary>>() {
             @Override
-            public void onChanged(List<Note> notes) {
+            public void onChanged(PagedList<NoteSummary> notes) {
                 // Called whenever data in LiveData is changed. - Update Recycler view
                // adapter.setNotes(notes);
-                adapter.submitList(notes); // method of ListAdapter
+                final long emittedNanos = System.nanoTime();
+                adapter.submitList(notes, new Runnable() { // method of PagedListAdapter
+                    @Override
+                    public void run() {
+                        // New list is in the adapter (diff is done) - it is on screen after the next frame's draw
+                        recordRenderedAfterNextFrame(recyclerView, emittedNanos);
+                    }
+                });
+
+                // First notes are on screen - logs "Fully drawn" with time since app start (cold start to first rendered note)
+                if (!reportedFullyDrawn) {
+                    reportedFullyDrawn = true;
+                    reportFullyDrawn();
+                }
             }
         });
 
@@ -101,8 +138,17 @@ public class MainActivity extends AppCompatActivity {
             public void onSwiped(@NonNull RecyclerView.ViewHolder viewHolder, int direction) {
 
                 // viewHolder.getAdapterPosition() - tells which item you swiped, position
-                noteViewModel.delete(adapter.getNoteAt(viewHolder.getAdapterPosition()));
-                Toasty.success(MainActivity.this, "Note Deleted !", Toasty.LENGTH_SHORT).show();
+                final int id = adapter.getNoteAt(viewHolder.getAdapterPosition()).getId();
+                noteViewModel.deleteById(id);
+                // Deleted notes can be restored for NoteRepository.UNDO_WINDOW_MS - longer than the Snackbar is shown
+                Snackbar.make(recyclerView, "Note Deleted !", Snackbar.LENGTH_LONG)
+                        .setAction("Undo", new View.OnClickListener() {
+                            @Override
+                            public void onClick(View view) {
+                                noteViewModel.undoDelete(id);
+                            }
+                        })
+                        .show();
             }
         }).attachToRecyclerView(recyclerView);
 
@@ -110,15 +156,11 @@ public class MainActivity extends AppCompatActivity {
         // Implementing Interface
         adapter.setOnItemClickListener(new NoteAdapter.OnItemClickListener() {
             @Override
-            public void onItemClick(Note note) {
-                // Here note obj is the one which is being passed from ViewHolder
+            public void onItemClick(NoteSummary noteSummary) {
+                // Here noteSummary obj is the one which is being passed from ViewHolder. Only its id is passed to AddEditNoteActivity,
+                // which loads the full note itself - a long description doesn't have to go through Intent extras.
                 Intent intent = new Intent(MainActivity.this, AddEditNoteActivity.class);
-                // we actually don't need ID in AddEditNoteActivity, bcz we do update operation in MainActivity only, but we still have to pass
-                // it there to get back from AddEditNoteActivity in onActivityResult and do update Operation in MainActivity.
-                intent.putExtra(AddEditNoteActivity.EXTRA_ID, note.getId());
-                intent.putExtra(AddEditNoteActivity.EXTRA_TITLE, note.getTitle());
-                intent.putExtra(AddEditNoteActivity.EXTRA_DESCRIPTION, note.getDescription());
-                intent.putExtra(AddEditNoteActivity.EXTRA_PRIORITY, note.getPriority());
+                intent.putExtra(AddEditNoteActivity.EXTRA_ID, noteSummary.getId());
                 startActivityForResult(intent, EDIT_NOTE_REQUEST);
             }
         });
@@ -126,44 +168,63 @@ public class MainActivity extends AppCompatActivity {
 
     }
 
+    /*
+    * Emission to render latency of the note list - from the new PagedList reaching the activity until the frame showing it is drawn.
+    * Choreographer runs frame callbacks before the frame is laid out and drawn, a Runnable posted from there runs right after it.
+    * */
+    private void recordRenderedAfterNextFrame(final RecyclerView recyclerView, final long emittedNanos) {
+        final NoteMetrics metrics = noteViewModel.getMetrics();
+        Choreographer.getInstance().postFrameCallback(new Choreographer.FrameCallback() {
+            @Override
+            public void doFrame(long frameTimeNanos) {
+                recyclerView.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        metrics.recordNanos(NoteMetrics.LIST_EMISSION_TO_RENDER, System.nanoTime() - emittedNanos);
+                    }
+                });
+            }
+        });
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        // Debug builds log data layer timings collected so far whenever the app goes to background, and keep them as JSON in
+        // the app's external files dir (adb pull /sdcard/Android/data/com.example.notesmvvm/files/note-metrics.json)
+        NoteMetrics metrics = noteViewModel.getMetrics();
+        if (BuildConfig.DEBUG && metrics instanceof InMemoryNoteMetrics) {
+            final InMemoryNoteMetrics inMemoryMetrics = (InMemoryNoteMetrics) metrics;
+            NoteMetricsExporter.toLogcat(inMemoryMetrics);
+            final File metricsDir = getExternalFilesDir(null);
+            if (metricsDir != null) {
+                NoteDatabase.getConfig().getQueryExecutor().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            NoteMetricsExporter.writeJsonTo(inMemoryMetrics, new File(metricsDir, METRICS_FILE_NAME));
+                        } catch (IOException e) {
+                            Log.w(TAG, "Metrics were not written", e);
+                        }
+                    }
+                });
+            }
+        }
+    }
+
     @Override
     protected void onActivityResult(int requestCode, int resultCode, @Nullable Intent data) {
         super.onActivityResult(requestCode, resultCode, data);
 
-        // checking if we get RESULT_OK from ADD_NOTE_REQUEST Activity, then it contains data
+        // checking if we get RESULT_OK from ADD_NOTE_REQUEST Activity - note is already saved by AddEditNoteActivity
         if (requestCode == ADD_NOTE_REQUEST && resultCode == RESULT_OK) {
 
-            String title = data.getStringExtra(AddEditNoteActivity.EXTRA_TITLE);
-            String description = data.getStringExtra(AddEditNoteActivity.EXTRA_DESCRIPTION);
-            int priority = data.getIntExtra(AddEditNoteActivity.EXTRA_PRIORITY, 1);
-
-            Note note = new Note(title, description, priority);
-            noteViewModel.insert(note);
-
             Toasty.success(this, "Note Saved", Toasty.LENGTH_LONG).show();
 
         } else if (requestCode == EDIT_NOTE_REQUEST && resultCode == RESULT_OK) {
 
-            int id = data.getIntExtra(AddEditNoteActivity.EXTRA_ID,-1);
-
-            if(id == -1){
-                Toasty.error(this,"Note can't be updated !",Toasty.LENGTH_SHORT).show();
-                return;
-            }
-
-            String title = data.getStringExtra(AddEditNoteActivity.EXTRA_TITLE);
-            String description = data.getStringExtra(AddEditNoteActivity.EXTRA_DESCRIPTION);
-            int priority = data.getIntExtra(AddEditNoteActivity.EXTRA_PRIORITY, 1);
-
-            Note note = new Note(title,description,priority);
-            note.setId(id); // So that we can perform update operation on same note
-
-            noteViewModel.update(note);
             Toasty.success(this,"Note updated",Toasty.LENGTH_SHORT).show();
 
-
-
-
         } else {
             // If resultCode == RESULT_CANCEL, user pressed back in AddNoteActivity
             Toasty.warning(this, "Note not saved !", Toasty.LENGTH_SHORT).show();
@@ -183,7 +244,14 @@ public class MainActivity extends AppCompatActivity {
         switch (item.getItemId()) {
             case R.id.delete_all_notes:
                 noteViewModel.deleteAllNotes();
-                Toasty.success(MainActivity.this, "All notes deleted", Toasty.LENGTH_SHORT).show();
+                Snackbar.make(findViewById(R.id.recycler_view), "All notes deleted", Snackbar.LENGTH_LONG)
+                        .setAction("Undo", new View.OnClickListener() {
+                            @Override
+                            public void onClick(View view) {
+                                noteViewModel.undoDeleteAllNotes();
+                            }
+                        })
+                        .show();
                 return true;
 
             default:
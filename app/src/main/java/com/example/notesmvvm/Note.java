@@ -2,6 +2,7 @@ package com.example.notesmvvm;
 
 import androidx.room.ColumnInfo;
 import androidx.room.Entity;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
 /*
@@ -12,7 +13,15 @@ import androidx.room.PrimaryKey;
 * */
 
 
-@Entity(tableName = "note_table") // By def table name = "Note", it helps to use custom name for table.
+/*
+* indices - index on (priority, id) is the sort key of the note list (ORDER BY priority DESC, id DESC).
+* SQLite reads the index backwards in that order, so the list query doesn't have to sort the whole table (temp B-tree) every time it runs,
+* and a page (LIMIT/OFFSET) only touches the rows it returns. id makes the order stable between notes with same priority.
+* generation and deleted_at are indexed for the purge of deleted notes, which looks for them in batches. The queries of the app
+* don't use these two (NoteDao.NOT_DELETED) - they would make SQLite sort the list again.
+* */
+@Entity(tableName = "note_table", // By def table name = "Note", it helps to use custom name for table.
+        indices = {@Index(value = {"priority", "id"}), @Index(value = {"generation"}), @Index(value = {"deleted_at"})})
 public class Note {
 
     @PrimaryKey(autoGenerate = true)
@@ -24,6 +33,39 @@ public class Note {
     //@ColumnInfo(name = "priority_column") -  for custom column name in table
     private int priority;
 
+    /*
+    * Changes whenever title, description or priority of the note changes - so "did this note change?" is one number comparison
+    * (NoteAdapter's DiffUtil) instead of comparing the strings.
+    * - Set to current time (ms) by NoteRepository when the note is inserted.
+    * - Incremented by the note_table_version_bump trigger (NoteDatabase) on every update of those columns, whichever write did it.
+    * */
+    @ColumnInfo(defaultValue = "0")
+    private long version;
+
+    /*
+    * Whole description, compressed or as name of a NoteBlobStore file - only one of them is set, and only for long descriptions,
+    * which then keep just their beginning in description (see NoteDescriptionCodec). null for all other notes.
+    * */
+    @ColumnInfo(name = "description_blob")
+    private byte[] descriptionBlob;
+
+    @ColumnInfo(name = "description_ref")
+    private String descriptionRef;
+
+    /*
+    * A note is deleted in two steps - first only marked as deleted (so the list updates at once and it can still be restored),
+    * the row is removed later by NoteRepository's purge -
+    * - generation: generation of note_state when the note was inserted. Notes below note_state.visible_generation are deleted
+    *   ("delete all" - see NoteState).
+    * - deletedAt: time (ms) the note was deleted on its own (swipe), 0 while it isn't.
+    * Queries which return notes to the app only return notes which are not deleted in either way (NoteDao.NOT_DELETED).
+    * */
+    @ColumnInfo(defaultValue = "0")
+    private long generation;
+
+    @ColumnInfo(name = "deleted_at", defaultValue = "0")
+    private long deletedAt;
+
     public Note(String title, String description, int priority) { // Id will be auto-maticaally generated, not set by us
         this.title = title;
         this.description = description;
@@ -46,7 +88,64 @@ public class Note {
         return description;
     }
 
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
     public int getPriority() {
         return priority;
     }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setDescriptionBlob(byte[] descriptionBlob) {
+        this.descriptionBlob = descriptionBlob;
+    }
+
+    public byte[] getDescriptionBlob() {
+        return descriptionBlob;
+    }
+
+    public void setDescriptionRef(String descriptionRef) {
+        this.descriptionRef = descriptionRef;
+    }
+
+    public String getDescriptionRef() {
+        return descriptionRef;
+    }
+
+    public void setGeneration(long generation) {
+        this.generation = generation;
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    public void setDeletedAt(long deletedAt) {
+        this.deletedAt = deletedAt;
+    }
+
+    public long getDeletedAt() {
+        return deletedAt;
+    }
+
+    public boolean isDescriptionCompressed() {
+        return descriptionBlob != null;
+    }
+
+    public boolean isDescriptionExternal() {
+        return descriptionRef != null;
+    }
+
+    // false if description holds only the beginning of the text - full text is loaded by NoteRepository.getNote()
+    public boolean hasFullDescription() {
+        return descriptionBlob == null && descriptionRef == null;
+    }
 }
@@ -1,46 +1,96 @@
 package com.example.notesmvvm;
 
+import android.text.TextUtils;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.asynclayoutinflater.view.AsyncLayoutInflater;
+import androidx.paging.PagedList;
+import androidx.paging.PagedListAdapter;
 import androidx.recyclerview.widget.DiffUtil;
-import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
 
-public class NoteAdapter extends ListAdapter<Note,NoteAdapter.NoteHolder> {
+/*
+* NoteAdapter is a PagedListAdapter - same DiffUtil based updates as ListAdapter, but the list it gets is a PagedList which only holds
+* the pages loaded so far. Binding items near the end of loaded data (getItem) tells PagedList to load the next page.
+* Items are NoteSummary - only what a card shows (title, priority, description preview).
+* */
+public class NoteAdapter extends PagedListAdapter<NoteSummary,NoteAdapter.NoteHolder> {
 
 
     // Imp to set it to New ArrayList<>(), else it will be null before we get first LiveDataUpdate and we don't want
     // to pass null list to adapter.
     //private List<Note> notes = new ArrayList<>(); // 10. Instead of keeping list in noteAdapter, we'll pass the list to superclass to ListAdapter
     private OnItemClickListener listener;
+    private BindTimingListener bindTimingListener;
+    private NoteTextPrecomputer textPrecomputer = new NoteTextPrecomputer();
+
+    // NoteHolders whose card was inflated in background by preinflate() - used by onCreateViewHolder() before inflating a new one
+    private ArrayDeque<NoteHolder> preinflatedHolders = new ArrayDeque<>();
+
+    // Only one type of item - a note card (RecyclerView's default view type). Used to size the RecycledViewPool (NoteListConfig).
+    public static final int VIEW_TYPE_NOTE = 0;
+
+    // Payloads of a changed item - tell onBindViewHolder() which views have to be bound again (bit flags, can be combined)
+    static final int PAYLOAD_TITLE = 1;
+    static final int PAYLOAD_DESCRIPTION = 1 << 1;
+    static final int PAYLOAD_PRIORITY = 1 << 2;
 
     public NoteAdapter() {
         super(DIFF_CALLBACK);
+
+        // Every item has a unique, unchanging id (Note id) - lets RecyclerView keep track of items across changes of the list,
+        // e.g. reuse the same card when a note moves instead of rebinding two positions.
+        setHasStableIds(true);
     }
 
-    private static final DiffUtil.ItemCallback<Note> DIFF_CALLBACK = new DiffUtil.ItemCallback<Note>() {
+    @Override
+    public long getItemId(int position) {
+        NoteSummary note = getItem(position);
+        return note != null ? note.getId() : RecyclerView.NO_ID;
+    }
+
+    // Package-private for NoteAdapterTest and NoteAdapterDiffBenchmark
+    static final DiffUtil.ItemCallback<NoteSummary> DIFF_CALLBACK = new DiffUtil.ItemCallback<NoteSummary>() {
 
         // Do the comparison Logic
 
         @Override
-        public boolean areItemsTheSame(@NonNull Note oldItem, @NonNull Note newItem) {
+        public boolean areItemsTheSame(@NonNull NoteSummary oldItem, @NonNull NoteSummary newItem) {
             // Two Note item are same if there ID are same - uniquely identify each entry
             return oldItem.getId() == newItem.getId();
         }
 
         @Override
-        public boolean areContentsTheSame(@NonNull Note oldItem, @NonNull Note newItem) {
-            // Same content means title, description and priority are same.
-            return oldItem.getTitle().equals(newItem.getTitle()) &&
-                    oldItem.getDescription().equals(newItem.getDescription()) &&
-                    oldItem.getPriority() == newItem.getPriority();
+        public boolean areContentsTheSame(@NonNull NoteSummary oldItem, @NonNull NoteSummary newItem) {
+            // Same content means title, description and priority are same - version changes with every change of them,
+            // so comparing it is enough (O(1) instead of comparing the strings).
+            return oldItem.getVersion() == newItem.getVersion();
+        }
+
+        // Only called for items whose content changed - finds which fields changed, so only their views are bound again
+        // (TextUtils.equals() - title and preview are null for a note saved without them)
+        @Override
+        public Object getChangePayload(@NonNull NoteSummary oldItem, @NonNull NoteSummary newItem) {
+            int payload = 0;
+            if (!TextUtils.equals(oldItem.getTitle(), newItem.getTitle())) {
+                payload |= PAYLOAD_TITLE;
+            }
+            if (!TextUtils.equals(oldItem.getPreview(), newItem.getPreview())) {
+                payload |= PAYLOAD_DESCRIPTION;
+            }
+            if (oldItem.getPriority() != newItem.getPriority()) {
+                payload |= PAYLOAD_PRIORITY;
+            }
+            return payload;
         }
     };
 
@@ -48,18 +98,102 @@ public class NoteAdapter extends ListAdapter<Note,NoteAdapter.NoteHolder> {
     @NonNull
     @Override
     public NoteHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        NoteHolder preinflatedHolder = preinflatedHolders.poll();
+        if (preinflatedHolder != null) {
+            return preinflatedHolder;
+        }
+
+        // None left (or not inflated yet) - inflate on main thread
         View itemView = LayoutInflater.from(parent.getContext()).inflate(R.layout.note_item, parent, false);
         return new NoteHolder(itemView);
     }
 
+    /*
+    * Inflates count note cards on a background thread (AsyncLayoutInflater) and keeps them ready for onCreateViewHolder().
+    * Call it right after setting the adapter - cards are inflated while the first page of notes is loading, so the first
+    * frame of the list only binds them. Callbacks of AsyncLayoutInflater run on main thread, same as onCreateViewHolder().
+    * */
+    public void preinflate(RecyclerView recyclerView, int count) {
+        AsyncLayoutInflater inflater = new AsyncLayoutInflater(recyclerView.getContext());
+        for (int i = 0; i < count; i++) {
+            inflater.inflate(R.layout.note_item, recyclerView, new AsyncLayoutInflater.OnInflateFinishedListener() {
+                @Override
+                public void onInflateFinished(@NonNull View view, int resid, @Nullable ViewGroup parent) {
+                    preinflatedHolders.add(new NoteHolder(view));
+                }
+            });
+        }
+    }
+
     @Override
     public void onBindViewHolder(@NonNull NoteHolder holder, int position) {
         //Note currentNote = notes.get(position); - used in RecyclerView.Adapter
-        Note currentNote = getItem(position); //accessing list from superclass
+        NoteSummary currentNote = getItem(position); //accessing list from superclass
+
+        // PagedList can return null for an item which is not loaded yet (only with placeholders enabled)
+        if (currentNote == null) {
+            return;
+        }
 
         holder.textViewTitle.setText(currentNote.getTitle());
-        holder.textViewDescription.setText(currentNote.getDescription());
+        textPrecomputer.bind(holder.textViewDescription, currentNote); // description layout is measured in background if possible
         holder.textViewPriority.setText(String.valueOf(currentNote.getPriority()));
+
+        prefetchText(position);
+    }
+
+    // Precomputes description of the next notes which are already loaded - they are the ones bound next while scrolling down
+    private void prefetchText(int position) {
+        PagedList<NoteSummary> notes = getCurrentList();
+        if (notes == null) {
+            return;
+        }
+        int end = Math.min(notes.size(), position + 1 + NoteTextPrecomputer.PREFETCH_AHEAD);
+        List<NoteSummary> upcoming = new ArrayList<>(NoteTextPrecomputer.PREFETCH_AHEAD);
+        for (int i = position + 1; i < end; i++) {
+            NoteSummary note = notes.get(i); // PagedList.get() doesn't trigger loading of pages, only getItem() does
+            if (note != null) {
+                upcoming.add(note);
+            }
+        }
+        textPrecomputer.prefetch(upcoming);
+    }
+
+    // Called instead of onBindViewHolder(holder, position) - with payloads from getChangePayload() if only some fields of the item changed
+    @Override
+    public void onBindViewHolder(@NonNull NoteHolder holder, int position, @NonNull List<Object> payloads) {
+        long bindStart = System.nanoTime();
+
+        if (payloads.isEmpty()) {
+            onBindViewHolder(holder, position); // full bind
+        } else {
+            bindPayloads(holder, position, payloads);
+        }
+
+        if (bindTimingListener != null) {
+            bindTimingListener.onBind(System.nanoTime() - bindStart);
+        }
+    }
+
+    private void bindPayloads(@NonNull NoteHolder holder, int position, @NonNull List<Object> payloads) {
+        NoteSummary currentNote = getItem(position);
+        if (currentNote == null) {
+            return;
+        }
+
+        int changed = 0;
+        for (Object payload : payloads) {
+            changed |= (Integer) payload;
+        }
+        if ((changed & PAYLOAD_TITLE) != 0) {
+            holder.textViewTitle.setText(currentNote.getTitle());
+        }
+        if ((changed & PAYLOAD_DESCRIPTION) != 0) {
+            textPrecomputer.bind(holder.textViewDescription, currentNote);
+        }
+        if ((changed & PAYLOAD_PRIORITY) != 0) {
+            holder.textViewPriority.setText(String.valueOf(currentNote.getPriority()));
+        }
     }
 
     // Done by List Adapter now
@@ -91,7 +225,7 @@ public class NoteAdapter extends ListAdapter<Note,NoteAdapter.NoteHolder> {
     //}
 
 
-    public Note getNoteAt(int position) {
+    public NoteSummary getNoteAt(int position) {
         return getItem(position);
     }
 
@@ -124,7 +258,10 @@ public class NoteAdapter extends ListAdapter<Note,NoteAdapter.NoteHolder> {
                     // RecyclerView.NO_POSITION - Constant for -1, so that we don't click item at Invalid position (safety measure)
                     if (listener != null && position != RecyclerView.NO_POSITION) {
                         //listener.onItemClick(notes.get(position)); - used in RecyclerView.Adapter
-                        listener.onItemClick(getItem(position)); // getting data from superclass
+                        NoteSummary note = getItem(position); // getting data from superclass
+                        if (note != null) {
+                            listener.onItemClick(note);
+                        }
                     }
                 }
             });
@@ -137,7 +274,7 @@ public class NoteAdapter extends ListAdapter<Note,NoteAdapter.NoteHolder> {
 
         // In interface, we only declare method, not give implementation
         // Whatever class later implements this interface, also has to implement this method
-        void onItemClick(Note note);
+        void onItemClick(NoteSummary note);
     }
 
     // To call methods from adapter onto OnItemClickListener, we need a reference of OnItemClickListener
@@ -147,4 +284,13 @@ public class NoteAdapter extends ListAdapter<Note,NoteAdapter.NoteHolder> {
     public void setOnItemClickListener(OnItemClickListener listener) {
         this.listener = listener;
     }
+
+    // Instrumentation hook - gets duration of every bind (see NoteListPerformanceMonitor)
+    public interface BindTimingListener {
+        void onBind(long durationNanos);
+    }
+
+    public void setBindTimingListener(BindTimingListener bindTimingListener) {
+        this.bindTimingListener = bindTimingListener;
+    }
 }
@@ -0,0 +1,383 @@
+package com.example.notesmvvm;
+
+/*
+*  File format of note backups (NoteRepository.exportNotes()/importNotes(File, ...)/restoreNotes()) - compact, length prefixed binary, big endian.
+*
+*  [MAGIC (int)][FORMAT_VERSION (int)]
+*  for every note: [record length (int, > 0)][id (int)][priority (int)][version (long)][title][description]
+*  [0 (int) - end marker][number of notes (int)]
+*
+*  Strings are [UTF-8 length (int), -1 for null][UTF-8 bytes]. Descriptions are always the full text, whatever their stored form on
+*  the exporting device (NoteDescriptionCodec), so a backup can be imported by any version which reads this format.
+*  A file without the end marker (export or copy interrupted) is rejected when the reader gets to its end.
+*
+*  Writer and Reader go through a FileChannel with one fixed size buffer - memory use doesn't depend on the number of notes,
+*  only on the largest note.
+*  Checkpoint remembers how far an import got, in a small file next to the backup, so an interrupted import continues from there.
+* */
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+public class NoteBackup {
+
+    private static final int MAGIC = 0x4E4F5442; // "NOTB"
+    private static final int FORMAT_VERSION = 1;
+    private static final int END_MARKER = 0;
+    static final int HEADER_SIZE = 8;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int FIXED_RECORD_SIZE = 4 + 4 + 8; // id, priority, version
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private NoteBackup() {
+    }
+
+    public static class Writer implements Closeable {
+
+        private final FileOutputStream output;
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private int noteCount;
+
+        public Writer(@NonNull File file) throws IOException {
+            output = new FileOutputStream(file);
+            channel = output.getChannel();
+            buffer.putInt(MAGIC).putInt(FORMAT_VERSION);
+        }
+
+        // note must have its full description (see NoteDescriptionCodec.decode())
+        public void write(@NonNull Note note) throws IOException {
+            byte[] title = encode(note.getTitle());
+            byte[] description = encode(note.getDescription());
+            int recordLength = FIXED_RECORD_SIZE + stringSize(title) + stringSize(description);
+
+            ByteBuffer target = buffer;
+            if (4 + recordLength > buffer.remaining()) {
+                flush();
+                if (4 + recordLength > buffer.capacity()) {
+                    target = ByteBuffer.allocate(4 + recordLength); // only for a note larger than the buffer
+                }
+            }
+            target.putInt(recordLength).putInt(note.getId()).putInt(note.getPriority()).putLong(note.getVersion());
+            putString(target, title);
+            putString(target, description);
+            if (target != buffer) {
+                target.flip();
+                writeFully(target);
+            }
+            noteCount++;
+        }
+
+        /*
+        * Same record as write(note), with the description copied from a stored description file (NoteBlobStore.openStream()) instead
+        * of a String - the text goes from file to file through the channels, so a description of any size is never held in memory.
+        * */
+        public void write(@NonNull Note note, @NonNull FileChannel description) throws IOException {
+            byte[] title = encode(note.getTitle());
+            long descriptionSize = description.size();
+            long recordLength = FIXED_RECORD_SIZE + stringSize(title) + 4 + descriptionSize;
+            if (recordLength > Integer.MAX_VALUE) {
+                throw new IOException("Note " + note.getId() + " is too large for a backup");
+            }
+
+            int headerLength = 4 + FIXED_RECORD_SIZE + stringSize(title) + 4; // everything before the bytes of the description
+            ByteBuffer target = buffer;
+            if (headerLength > buffer.remaining()) {
+                flush();
+                if (headerLength > buffer.capacity()) {
+                    target = ByteBuffer.allocate(headerLength);
+                }
+            }
+            target.putInt((int) recordLength).putInt(note.getId()).putInt(note.getPriority()).putLong(note.getVersion());
+            putString(target, title);
+            target.putInt((int) descriptionSize);
+            if (target == buffer) {
+                flush();
+            } else {
+                target.flip();
+                writeFully(target);
+            }
+            long position = 0;
+            while (position < descriptionSize) {
+                long transferred = description.transferTo(position, descriptionSize - position, channel);
+                if (transferred <= 0) {
+                    throw new IOException("Description of note " + note.getId() + " ended early");
+                }
+                position += transferred;
+            }
+            noteCount++;
+        }
+
+        public int getNoteCount() {
+            return noteCount;
+        }
+
+        // Writes the end marker and syncs the file - a backup is only complete after finish() returned
+        public void finish() throws IOException {
+            if (buffer.remaining() < 8) {
+                flush();
+            }
+            buffer.putInt(END_MARKER).putInt(noteCount);
+            flush();
+            channel.force(true);
+        }
+
+        @Override
+        public void close() throws IOException {
+            output.close();
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            writeFully(buffer);
+            buffer.clear();
+        }
+
+        private void writeFully(ByteBuffer source) throws IOException {
+            while (source.hasRemaining()) {
+                channel.write(source);
+            }
+        }
+
+        private static byte[] encode(String value) {
+            return value != null ? value.getBytes(UTF_8) : null;
+        }
+
+        private static int stringSize(byte[] value) {
+            return 4 + (value != null ? value.length : 0);
+        }
+
+        private static void putString(ByteBuffer target, byte[] value) {
+            if (value == null) {
+                target.putInt(-1);
+            } else {
+                target.putInt(value.length).put(value);
+            }
+        }
+    }
+
+    /*
+    * Checks that the file ends with the end marker, without reading its notes - an import calls it first, so a backup which was cut off
+    * is rejected before any of its notes is imported. (Reader.read() still checks the number of notes when it gets to the end)
+    * */
+    static void checkComplete(@NonNull File file) throws IOException {
+        FileInputStream input = new FileInputStream(file);
+        try {
+            FileChannel channel = input.getChannel();
+            ByteBuffer trailer = ByteBuffer.allocate(8); // end marker, number of notes
+            long start = channel.size() - trailer.capacity();
+            if (start < HEADER_SIZE) {
+                throw new IOException("Backup is truncated");
+            }
+            while (trailer.hasRemaining()) {
+                if (channel.read(trailer, start + trailer.position()) < 0) {
+                    throw new IOException("Backup is truncated");
+                }
+            }
+            trailer.flip();
+            if (trailer.getInt() != END_MARKER || trailer.getInt() < 0) {
+                throw new IOException("Backup is truncated");
+            }
+        } finally {
+            input.close();
+        }
+    }
+
+    /*
+    * Reads notes one by one. Can start in the middle of a file - at a position returned by getPosition() after some note
+    * (that is how an interrupted import resumes), given the number of notes read before it.
+    * */
+    public static class Reader implements Closeable {
+
+        private final FileInputStream input;
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private long position;
+        private int noteCount;
+
+        public Reader(@NonNull File file, long startPosition, int notesBefore) throws IOException {
+            input = new FileInputStream(file);
+            channel = input.getChannel();
+            buffer.limit(0);
+            try {
+                require(HEADER_SIZE);
+                if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                    throw new IOException(file + " is not a note backup of a known version");
+                }
+                if (startPosition > HEADER_SIZE) {
+                    channel.position(startPosition);
+                    buffer.limit(0);
+                }
+                position = Math.max(startPosition, HEADER_SIZE);
+                noteCount = notesBefore;
+            } catch (IOException e) {
+                input.close();
+                throw e;
+            }
+        }
+
+        // Next note, null at the end of the backup
+        @Nullable
+        public Note read() throws IOException {
+            require(4);
+            int recordLength = buffer.getInt();
+            if (recordLength == END_MARKER) {
+                require(4);
+                int expectedCount = buffer.getInt();
+                if (expectedCount != noteCount) {
+                    throw new IOException("Backup has " + expectedCount + " notes, but " + noteCount + " were read");
+                }
+                return null;
+            }
+            if (recordLength < FIXED_RECORD_SIZE + 8) {
+                throw new IOException("Backup is corrupted at " + position);
+            }
+
+            ByteBuffer record = buffer;
+            if (recordLength > buffer.capacity()) {
+                record = ByteBuffer.allocate(recordLength); // only for a note larger than the buffer
+                record.put(buffer);
+                while (record.hasRemaining()) {
+                    if (channel.read(record) < 0) {
+                        throw new IOException("Backup is truncated");
+                    }
+                }
+                record.flip();
+                buffer.limit(0);
+            } else {
+                require(recordLength);
+            }
+
+            int id = record.getInt();
+            int priority = record.getInt();
+            long version = record.getLong();
+            String title = getString(record);
+            String description = getString(record);
+
+            Note note = new Note(title, description, priority);
+            note.setId(id);
+            note.setVersion(version);
+            position += 4 + recordLength;
+            noteCount++;
+            return note;
+        }
+
+        // Offset in the file right after the last note read - where a new Reader continues
+        public long getPosition() {
+            return position;
+        }
+
+        public int getNoteCount() {
+            return noteCount;
+        }
+
+        @Override
+        public void close() throws IOException {
+            input.close();
+        }
+
+        // Makes at least count bytes available in buffer (count <= BUFFER_SIZE)
+        private void require(int count) throws IOException {
+            if (buffer.remaining() >= count) {
+                return;
+            }
+            buffer.compact();
+            while (buffer.position() < count) {
+                if (channel.read(buffer) < 0) {
+                    throw new IOException("Backup is truncated");
+                }
+            }
+            buffer.flip();
+        }
+
+        private static String getString(ByteBuffer source) throws IOException {
+            int length = source.getInt();
+            if (length == -1) {
+                return null;
+            }
+            if (length < 0 || length > source.remaining()) {
+                throw new IOException("Backup is corrupted");
+            }
+            String value = new String(source.array(), source.arrayOffset() + source.position(), length, UTF_8);
+            source.position(source.position() + length);
+            return value;
+        }
+    }
+
+    /*
+    * Position after the last committed chunk of an import, stored in <backup>.progress. It also keeps size and modification time of
+    * the backup, so a checkpoint of a different (or changed) backup with the same name is not used.
+    * Committing a chunk and writing its checkpoint are not atomic - after a crash between them, the chunk is imported again. A restore
+    * (NoteRepository.restoreNotes()) just replaces those notes by id, an import adds that one chunk a second time.
+    * */
+    static class Checkpoint {
+
+        private static final String SUFFIX = ".progress";
+
+        final long position;
+        final int noteCount;
+
+        private Checkpoint(long position, int noteCount) {
+            this.position = position;
+            this.noteCount = noteCount;
+        }
+
+        // Checkpoint of an earlier, interrupted import of this backup - or start of the backup if there is none
+        static Checkpoint read(@NonNull File backup) {
+            File file = fileOf(backup);
+            if (file.exists()) {
+                try {
+                    DataInputStream input = new DataInputStream(new FileInputStream(file));
+                    try {
+                        if (input.readLong() == backup.length() && input.readLong() == backup.lastModified()) {
+                            return new Checkpoint(input.readLong(), input.readInt());
+                        }
+                    } finally {
+                        input.close();
+                    }
+                } catch (IOException e) {
+                    // unreadable checkpoint - import from the start, see above why that is safe
+                }
+            }
+            return new Checkpoint(HEADER_SIZE, 0);
+        }
+
+        // Written to a temp file and renamed, so a crash while writing it leaves the previous checkpoint
+        static void write(@NonNull File backup, long position, int noteCount) throws IOException {
+            File file = fileOf(backup);
+            File tempFile = new File(file.getPath() + ".tmp");
+            DataOutputStream output = new DataOutputStream(new FileOutputStream(tempFile));
+            try {
+                output.writeLong(backup.length());
+                output.writeLong(backup.lastModified());
+                output.writeLong(position);
+                output.writeInt(noteCount);
+            } finally {
+                output.close();
+            }
+            if (!tempFile.renameTo(file)) {
+                throw new IOException("Can't rename " + tempFile + " to " + file);
+            }
+        }
+
+        static void delete(@NonNull File backup) {
+            fileOf(backup).delete();
+        }
+
+        private static File fileOf(File backup) {
+            return new File(backup.getPath() + SUFFIX);
+        }
+    }
+}
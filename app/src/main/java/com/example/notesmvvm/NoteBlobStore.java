@@ -0,0 +1,211 @@
+package com.example.notesmvvm;
+
+/*
+*  Files for very long note descriptions (longer than SPILL_THRESHOLD chars), in <filesDir>/note_blobs.
+*
+*  - Content addressed: a file is named by the SHA-256 of its content and never changes once written. Same text saved twice (or a
+*    note saved without changing its description) reuses the file, and a row can never point to a half written one.
+*  - put() writes to a temp file, syncs it, renames it to its final name and syncs the directory - only then NoteRepository commits
+*    the row referencing it. A crash before the commit leaves a file nobody references (removed by collectGarbage()), never a row
+*    referencing a missing file.
+*  - Files are never deleted when a note is deleted or its description replaced - collectGarbage() removes every file which no row
+*    references. It runs on the writer thread (NoteRepository.collectOrphanBlobs()), so no put() of a row being written can be
+*    running at the same time.
+*  - Readers (getNote(), export) run on the query pool and read the row before its file - between the two, the row may be changed and
+*    its file become unreferenced. So collectGarbage() first only moves an unreferenced file to <name>.trash, get() falls back to that
+*    name, and a trash file is deleted only once it has been there for GRACE_PERIOD_MS (its mtime is set when it's moved) - much
+*    longer than any reader takes from reading a row to opening its file. put() of the same text moves it back.
+*  - get() memory maps the file - the text is decoded straight from the page cache, without copying the file into a byte[] first.
+*    openStream() gives the file itself (UTF-8 bytes of the text) to readers which only copy it - export never decodes it at all.
+* */
+
+import android.content.Context;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Set;
+
+public class NoteBlobStore {
+
+    static final int SPILL_THRESHOLD = 256 * 1024;
+
+    private static final String DIRECTORY_NAME = "note_blobs";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String TRASH_SUFFIX = ".trash";
+
+    // How long an unreferenced file is kept (as trash) before it is deleted - see top of this class
+    static final long GRACE_PERIOD_MS = 10 * 60 * 1000;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File directory;
+
+    public NoteBlobStore(@NonNull File directory) {
+        this.directory = directory;
+    }
+
+    public static NoteBlobStore forContext(Context context) {
+        return new NoteBlobStore(new File(context.getFilesDir(), DIRECTORY_NAME));
+    }
+
+    // Stores the text and returns its reference (file name). Blocking.
+    public String put(@NonNull String text) throws IOException {
+        byte[] bytes = text.getBytes(UTF_8);
+        String ref = sha256(bytes);
+        File file = new File(directory, ref);
+        if (file.exists()) {
+            return ref; // same text is already stored
+        }
+        File trashFile = new File(directory, ref + TRASH_SUFFIX);
+        if (trashFile.exists() && trashFile.renameTo(file)) {
+            syncDirectory();
+            return ref; // same text was stored before and is still in trash
+        }
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can't create " + directory);
+        }
+        File tempFile = File.createTempFile(ref, TEMP_SUFFIX, directory);
+        try {
+            FileOutputStream output = new FileOutputStream(tempFile);
+            try {
+                FileChannel channel = output.getChannel();
+                ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true); // content is on disk before the rename makes it visible under its name
+            } finally {
+                output.close();
+            }
+            if (!tempFile.renameTo(file)) {
+                throw new IOException("Can't rename " + tempFile + " to " + file);
+            }
+            syncDirectory(); // the rename itself is on disk before the row referencing the file is committed
+        } finally {
+            if (tempFile.exists()) {
+                tempFile.delete();
+            }
+        }
+        return ref;
+    }
+
+    // Whole text of a stored description. Blocking.
+    public String get(@NonNull String ref) throws IOException {
+        FileInputStream input = open(ref);
+        try {
+            MappedByteBuffer buffer = map(input.getChannel());
+            return UTF_8.newDecoder().decode(buffer).toString();
+        } finally {
+            input.close(); // the mapping stays valid after the channel is closed (and after the file is deleted)
+        }
+    }
+
+    /*
+    * Stored description as a stream of its UTF-8 bytes - for readers which don't need the text in memory (export copies the file into
+    * the backup through its channel). Close the stream when done. Blocking.
+    * */
+    public FileInputStream openStream(@NonNull String ref) throws IOException {
+        return open(ref);
+    }
+
+    /*
+    * The file may have been moved to trash by collectGarbage() after the caller read its row, or moved back by put() of the same text
+    * in the meantime - so both names are tried, the first one twice.
+    * */
+    private FileInputStream open(String ref) throws IOException {
+        File file = new File(directory, ref);
+        File trashFile = new File(directory, ref + TRASH_SUFFIX);
+        try {
+            return new FileInputStream(file);
+        } catch (FileNotFoundException e) {
+            try {
+                return new FileInputStream(trashFile);
+            } catch (FileNotFoundException trashMissing) {
+                return new FileInputStream(file);
+            }
+        }
+    }
+
+    /*
+    * Moves every file which isn't in referencedRefs (refs of all rows) to trash, moves referenced ones back from it, and deletes trash
+    * and temp files (left by a crash during put()) older than GRACE_PERIOD_MS.
+    * Must not run at the same time as a write which calls put() - see top of this class. Returns number of deleted files.
+    * */
+    public int collectGarbage(@NonNull Set<String> referencedRefs) {
+        return collectGarbage(referencedRefs, System.currentTimeMillis());
+    }
+
+    int collectGarbage(@NonNull Set<String> referencedRefs, long now) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return 0;
+        }
+        int deleted = 0;
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(TRASH_SUFFIX)) {
+                String ref = name.substring(0, name.length() - TRASH_SUFFIX.length());
+                if (referencedRefs.contains(ref)) {
+                    file.renameTo(new File(directory, ref)); // only possible if a crash hit put() between rename and commit
+                } else if (now - file.lastModified() > GRACE_PERIOD_MS && file.delete()) {
+                    deleted++;
+                }
+            } else if (name.endsWith(TEMP_SUFFIX)) {
+                if (now - file.lastModified() > GRACE_PERIOD_MS && file.delete()) {
+                    deleted++;
+                }
+            } else if (!referencedRefs.contains(name)) {
+                // mtime first - if a crash comes before the rename, the file is just moved again by the next run
+                file.setLastModified(now);
+                file.renameTo(new File(directory, name + TRASH_SUFFIX));
+            }
+        }
+        return deleted;
+    }
+
+    private static MappedByteBuffer map(FileChannel channel) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+
+    // A rename is a change of the directory - without syncing it, it could be lost on power loss even though the file was synced
+    private void syncDirectory() throws IOException {
+        try {
+            FileDescriptor fd = Os.open(directory.getPath(), OsConstants.O_RDONLY, 0);
+            try {
+                Os.fsync(fd);
+            } finally {
+                Os.close(fd);
+            }
+        } catch (ErrnoException e) {
+            throw new IOException("Can't sync " + directory, e);
+        }
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // every Android device has SHA-256
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.notesmvvm;
+
+/*
+*  In-memory LRU cache of full notes, keyed by note id - used by NoteRepository.getNote(), so opening the same note again doesn't
+*  read it from SQLite again.
+*
+*  - Size is counted in (estimated) bytes, not entries, because one note with a long description can be as big as thousands of
+*    short ones. When maxBytes is exceeded, least recently used notes are evicted.
+*  - Every write to a note must call invalidate()/invalidateAll() after it is committed (NoteRepository does it from the write queue).
+*  - generation protects against a race between a read and a write: a note which was loaded from database before a write committed
+*    is only put into the cache if no invalidation happened in between (putIfUnchanged), so an old version can't get back in.
+* */
+
+import android.util.LruCache;
+
+import androidx.annotation.Nullable;
+
+public class NoteCache {
+
+    // Rough memory of a Note object without its strings
+    private static final int NOTE_OVERHEAD_BYTES = 64;
+
+    private final LruCache<Integer, Note> cache;
+
+    // Guarded by this
+    private long generation;
+
+    public NoteCache(int maxBytes) {
+        cache = new LruCache<Integer, Note>(maxBytes) {
+            @Override
+            protected int sizeOf(Integer id, Note note) {
+                return estimateSize(note);
+            }
+        };
+    }
+
+    // null if note is not in cache (counted as a miss)
+    @Nullable
+    public Note get(int id) {
+        return cache.get(id);
+    }
+
+    // Read before loading a note from database, pass it to putIfUnchanged() with the loaded note
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    public synchronized void putIfUnchanged(Note note, long generationAtLoad) {
+        if (generation == generationAtLoad) {
+            cache.put(note.getId(), note);
+        }
+    }
+
+    public synchronized void invalidate(int id) {
+        generation++;
+        cache.remove(id);
+    }
+
+    public synchronized void invalidateAll() {
+        generation++;
+        cache.evictAll();
+    }
+
+    public int hitCount() {
+        return cache.hitCount();
+    }
+
+    public int missCount() {
+        return cache.missCount();
+    }
+
+    public int evictionCount() {
+        return cache.evictionCount();
+    }
+
+    public int sizeInBytes() {
+        return cache.size();
+    }
+
+    public int maxSizeInBytes() {
+        return cache.maxSize();
+    }
+
+    // 2 bytes per char of title and description
+    private static int estimateSize(Note note) {
+        int chars = 0;
+        if (note.getTitle() != null) {
+            chars += note.getTitle().length();
+        }
+        if (note.getDescription() != null) {
+            chars += note.getDescription().length();
+        }
+        return NOTE_OVERHEAD_BYTES + 2 * chars;
+    }
+}
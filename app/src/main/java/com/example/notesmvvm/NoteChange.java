@@ -0,0 +1,48 @@
+package com.example.notesmvvm;
+
+/*
+*  One change of note_table, published by NoteRepository after the write is committed (see NoteRepository.addChangeListener()).
+*
+*  It tells only what happened to which notes (ids), not their new content - so a screen which holds a snapshot of notes can patch
+*  it (e.g. drop deleted notes) instead of reloading everything.
+* */
+
+import java.util.Collections;
+import java.util.List;
+
+public class NoteChange {
+
+    public enum Type {
+        INSERTED,
+        UPDATED,
+        DELETED,
+        ALL_DELETED, // every note is deleted, ids is empty
+        RESTORED // deleted notes are back (undo) - ids of restored notes, empty if all notes deleted by "delete all" are back
+    }
+
+    // Delivered on main thread, in the order the writes were committed
+    public interface Listener {
+        void onNoteChange(NoteChange change);
+    }
+
+    private final Type type;
+
+    private final List<Integer> ids;
+
+    public NoteChange(Type type, List<Integer> ids) {
+        this.type = type;
+        this.ids = Collections.unmodifiableList(ids);
+    }
+
+    public static NoteChange of(Type type, int id) {
+        return new NoteChange(type, Collections.singletonList(id));
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public List<Integer> getIds() {
+        return ids;
+    }
+}
@@ -10,9 +10,10 @@ package com.example.notesmvvm;
 * */
 
 import androidx.lifecycle.LiveData;
+import androidx.paging.DataSource;
 import androidx.room.Dao;
-import androidx.room.Delete;
 import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
 import androidx.room.Update;
 
@@ -21,15 +22,61 @@ import java.util.List;
 @Dao // Signifying this interface is a dao
 public interface NoteDao {
 
+    /*
+    * Condition of every query which returns notes to the app - skips notes which are deleted but not purged yet (see Note.generation).
+    * Because it reads note_state, Room also re-runs observed queries (note list) when note_state changes, e.g. on "delete all".
+    * Unary + in front of the columns tells SQLite not to use their indices for this condition - almost every note passes it, so the
+    * list query must keep walking index (priority, id) in its sort order instead of picking the deleted_at index and sorting all rows
+    * in a temp B-tree. (the deleted_at/generation indices are only for the purge queries below)
+    * */
+    String NOT_DELETED = "+deleted_at = 0 AND +generation >= (SELECT visible_generation FROM note_state WHERE id = " + NoteState.ID + ")";
+
     @Insert   // Signifying this method is used for Insertion
-    void Insert(Note note); // we can have 1 note, multiple notes, list of notes or varargs of notes(Note ...note) in argument,
+    long Insert(Note note); // we can have 1 note, multiple notes, list of notes or varargs of notes(Note ...note) in argument,
                             // -  we only want to deal with one note here, so only one argument
+                            // returns rowid (= id) of the inserted note
 
     @Update   // Signifying this method is used for Updating data
-    void Update(Note note);
+    void Update(Note note); // rewrites every column of the note
+
+    /*
+    * Partial updates - only one column of the note is written, rest of the row (e.g. a long description) is left as it is.
+    * Used when user edited only some fields of a note (see NoteRepository.updateChangedFields()).
+    * */
 
-    @Delete   // Signifying this method is used for Deletion
-    void Delete(Note note);
+    @Query("UPDATE note_table SET title = :title WHERE id = :id")
+    void UpdateTitle(int id, String title);
+
+    // descriptionBlob/descriptionRef - where the whole description of a long note is, null otherwise (see NoteDescriptionCodec)
+    @Query("UPDATE note_table SET description = :description, description_blob = :descriptionBlob, description_ref = :descriptionRef "
+            + "WHERE id = :id")
+    void UpdateDescription(int id, String description, byte[] descriptionBlob, String descriptionRef);
+
+    @Query("UPDATE note_table SET priority = :priority WHERE id = :id")
+    void UpdatePriority(int id, int priority);
+
+    /*
+    * Bulk versions of Insert/Update - used when many notes are written at once (first run population, import).
+    * For a list argument Room generates code which runs the whole list inside ONE transaction (same as @Transaction) and
+    * binds every note to the same compiled statement, instead of one statement + one transaction per note.
+    *
+    * onConflict - what to do when a note with same primary key already exists:
+    *  - ABORT (default) - whole call fails and is rolled back.
+    *  - REPLACE - existing row is replaced by new note (restore of a backup, which keeps the ids of the notes).
+    *  - IGNORE - existing row is kept, new note is skipped.
+    * */
+
+    @Insert
+    long[] Insert(List<Note> notes); // ids of inserted notes, in same order
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    long[] InsertOrReplace(List<Note> notes);
+
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    long[] InsertOrIgnore(List<Note> notes); // -1 for every skipped note
+
+    @Update
+    void Update(List<Note> notes);
 
     /*
     * Room doesn't have annotation for all database operation.
@@ -37,8 +84,40 @@ public interface NoteDao {
     * */
 
 
-    @Query("DELETE FROM note_table") // Custom query for deleting all rows from table - any typo will lead to compile time error
-    void DeleteAllNotes();            // which was not case in SQLite OpenHelper class, we can still open app - leading to crash
+    /*
+    * Logical deletes - the rows stay until they are purged, so these only change one small row and restoring is just as cheap.
+    * ("delete all" is NoteStateDao.AdvanceVisibleGeneration())
+    * */
+
+    @Query("UPDATE note_table SET deleted_at = :deletedAt WHERE id = :id AND deleted_at = 0") // any typo in query will lead to compile time error
+    void MarkDeleted(int id, long deletedAt);
+
+    // Undo - only if the note was deleted after deletedAfter (still within undo window). Returns 1 if restored.
+    @Query("UPDATE note_table SET deleted_at = 0 WHERE id = :id AND deleted_at > :deletedAfter")
+    int RestoreDeleted(int id, long deletedAfter);
+
+    /*
+    * Edit of a note - makes it a note which is not deleted, in the current generation (what update() writes with the whole row).
+    * So an edit saved after the note was deleted (or "delete all" ran) while the editor was open restores it.
+    * Returns 0 if the note is already purged.
+    * */
+    @Query("UPDATE note_table SET generation = :generation, deleted_at = 0 WHERE id = :id")
+    int RestoreEdited(int id, long generation);
+
+    /*
+    * Purge - physically removes at most limit deleted rows per call (each call is a short transaction on its own).
+    * Returns number of removed rows - less than limit means there is nothing more to remove.
+    * */
+
+    @Query("DELETE FROM note_table WHERE id IN (SELECT id FROM note_table WHERE generation < :belowGeneration LIMIT :limit)")
+    int PurgeGenerationsBelow(long belowGeneration, int limit);
+
+    @Query("DELETE FROM note_table WHERE id IN (SELECT id FROM note_table WHERE deleted_at > 0 AND deleted_at < :deletedBefore LIMIT :limit)")
+    int PurgeDeletedBefore(long deletedBefore, int limit);
+
+    // When the oldest note deleted by MarkDeleted() was deleted, null if there is none
+    @Query("SELECT MIN(deleted_at) FROM note_table WHERE deleted_at > 0")
+    Long getOldestDeletedAt();
 
 
 
@@ -48,8 +127,78 @@ public interface NoteDao {
     * - Room takes care of updating LiveData Object
     * */
 
-    @Query("SELECT * FROM note_table ORDER BY priority DESC") // Custom query for getting all rows from table in desc order of their priority
+    @Query("SELECT * FROM note_table WHERE " + NOT_DELETED + " ORDER BY priority DESC, id DESC") // Custom query for getting all rows from table in desc order of their priority
     LiveData<List<Note>> getAllNotes(); // Room also check if columns of note_table fit to Note java obj during compile time, if table has column
                             //   not present in Note class, we get compile time error.
+                            // Notes are in stored form - long descriptions are still encoded (NoteDescriptionCodec)
+
+
+    /*
+    * Note list - same order as getAllNotes(), but Room returns a DataSource.Factory instead of the whole list.
+    * - The DataSource created by it only reads a window of rows (LIMIT/OFFSET) around what the RecyclerView is showing.
+    * - When note_table changes, Room invalidates the current DataSource and the factory creates a new one, which reloads only that window.
+    * - Only the columns the list shows are read (NoteSummary) - description is cut to a short preview by substr() inside SQLite.
+    * */
+
+    String NOTE_SUMMARIES_QUERY = "SELECT id, title, priority, substr(description, 1, " + NoteSummary.PREVIEW_LENGTH + ") AS preview, "
+            + "version FROM note_table WHERE " + NOT_DELETED + " ORDER BY priority DESC, id DESC";
+
+    @Query(NOTE_SUMMARIES_QUERY) // (NoteQueryPlanTest checks SQLite reads it along index (priority, id), without a temp B-tree sort)
+    DataSource.Factory<Integer, NoteSummary> getNoteSummariesPaged();
+
+    // Full note (with whole description) - loaded only when a note is opened. null if there is no note with this id.
+    @Query("SELECT * FROM note_table WHERE id = :id AND " + NOT_DELETED)
+    Note getNoteById(int id);
+
+
+    /*
+    * Full text search - MATCH uses the FTS index of note_fts instead of scanning every note, ranked and limited here in SQL.
+    * Returns ids of the best `limit` matching notes, best first - NoteRepository loads those notes with getNotesByIds().
+    * Rank: notes having every word in the title (titleQuery, e.g. "title:meet*") first, then the newest (highest id) first.
+    * Both are read from the index in docid order (ORDER BY docid DESC), so SQLite stops after `limit` hits of each part
+    * instead of reading and sorting every hit - a word half of the notes contain costs the same as a rare one.
+    * Deleted notes are dropped in each part, before the limit - otherwise they could take every place of the best hits.
+    * (every hit is looked up in note_table by its primary key, the MATCH still drives the query)
+    * query is in FTS syntax, e.g. "meet* notes*"
+    * */
+
+    String SEARCH_QUERY = "SELECT id FROM ("
+            + "SELECT * FROM (SELECT note_fts.docid AS id, 1 AS title_hit FROM note_fts JOIN note_table ON note_table.id = note_fts.docid "
+            + "WHERE note_fts MATCH :titleQuery AND " + NOT_DELETED + " ORDER BY note_fts.docid DESC LIMIT :limit) "
+            + "UNION ALL "
+            + "SELECT * FROM (SELECT note_fts.docid AS id, 0 AS title_hit FROM note_fts JOIN note_table ON note_table.id = note_fts.docid "
+            + "WHERE note_fts MATCH :query AND " + NOT_DELETED + " ORDER BY note_fts.docid DESC LIMIT :limit)"
+            + ") GROUP BY id ORDER BY MAX(title_hit) DESC, id DESC LIMIT :limit";
+
+    @Query(SEARCH_QUERY)
+    List<Integer> searchNotes(String titleQuery, String query, int limit);
+
+    @Query("SELECT * FROM note_table WHERE id IN (:ids) AND " + NOT_DELETED)
+    List<Note> getNotesByIds(List<Integer> ids);
+
+    /*
+    * Keyset paging in id order (used by export) - every page starts right after the last id of the previous one, using the primary key.
+    * Unlike one Cursor over the whole table, no read transaction stays open between pages, and unlike OFFSET, no page has to skip
+    * over the rows before it.
+    * description_blob is not read - a compressed description can be hundreds of KB, so a page of them could be ~100 MB. A note which
+    * has one gets an empty blob instead (still isDescriptionCompressed()), and the export loads the real one with getDescriptionBlob(),
+    * one note at a time. (an empty blob is never stored - NoteDescriptionCodec only keeps a blob for descriptions over 4096 chars)
+    * */
+    @Query("SELECT id, title, description, priority, version, "
+            + "CASE WHEN description_blob IS NULL THEN NULL ELSE zeroblob(0) END AS description_blob, description_ref, generation, deleted_at "
+            + "FROM note_table WHERE id > :afterId AND " + NOT_DELETED + " ORDER BY id LIMIT :limit")
+    List<Note> getNotesWithoutBlobAfterId(int afterId, int limit);
+
+    // null if the note doesn't exist anymore or its description isn't compressed (anymore)
+    @Query("SELECT description_blob FROM note_table WHERE id = :id")
+    byte[] getDescriptionBlob(int id);
+
+    // Rows in note_table, deleted notes which aren't purged yet included - a backup is only restored by id into an empty table
+    @Query("SELECT COUNT(*) FROM note_table")
+    int getRowCount();
+
+    // Files of NoteBlobStore which are still in use - every other file can be deleted (deleted but not purged notes still use theirs)
+    @Query("SELECT description_ref FROM note_table WHERE description_ref IS NOT NULL")
+    List<String> getDescriptionRefs();
 
 }
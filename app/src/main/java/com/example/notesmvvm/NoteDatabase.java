@@ -1,13 +1,24 @@
 package com.example.notesmvvm;
 
 import android.content.Context;
+import android.database.Cursor;
 import android.os.AsyncTask;
+import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
 import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
+import androidx.room.migration.Migration;
 import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteStatement;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /*
 *  3. We have our Note Entity and Note Dao, we create another class - NoteDatabase which will connect both of them and
@@ -24,35 +35,294 @@ import androidx.sqlite.db.SupportSQLiteDatabase;
 * This class is going to be a Singleton class - can't create multiple instance of NoteDatabase class - use same instance everywhere
 * */
 
-@Database(entities = {Note.class}, version = 1)
+@Database(entities = {Note.class, NoteFts.class, NoteState.class}, version = 9, exportSchema = true)
 public abstract class NoteDatabase extends RoomDatabase {
 
-    private static NoteDatabase instance;
+    static final String DATABASE_NAME = "note_database";
+
+    private static final String TAG = "NoteDatabase";
+
+    private static volatile NoteDatabase instance;
+    private static NoteDatabaseConfig config = new NoteDatabaseConfig();
 
     // Used to access database operations(INSERT,DELETE,UPDATE) defined in NoteDao - Code automatically added by Room
     public abstract NoteDao noteDao();
 
+    public abstract NoteStateDao noteStateDao();
+
+    public abstract NoteFtsDao noteFtsDao();
+
     /*
-    *  synchronized - means that only one thread can access it at one time, so that we don't create multiple instance of class when two diff
-    *  thread try to access it at same time.(can happen in multi-thread android environment)
+    *  Double-checked locking - instance is volatile, so once it is created getInstance() just reads it without taking any lock
+    *  (every repository/ViewModel calls it). Only the very first calls, while instance is still null, synchronize on the class,
+    *  so that we don't create multiple instance of class when two diff thread try to access it at same time.
+    *  NotesApplication calls it first on a background thread, so the database is usually ready before any activity needs it.
+    *
+    *  addMigrations - When we increment Version No of DB, we need to tell Room how to migrate to new schema. If we don't tell it,
+    *  and try to increase version no, our app will crash due to "illegalStateException". Every version bump has a Migration (see below)
+    *  which changes the existing database in place, so notes of the user are kept. (fallbackToDestructiveMigration would instead delete
+    *  old database and create a new one from scratch - losing all notes.)
     *
-    *  fallbackToDestructiveMigration - When we increment Version No of DB, we need to tell Room how to migrate to new schema. If we don't tell it,
-    *  and try to increase version no, our app will crash due to "illegalStateException". fallbackToDestructiveMigration prevents it by creating
-    *  a deleting all old database and tables and creating a new database and table from scratch.
+    *  setJournalMode/setQueryExecutor/setTransactionExecutor/openHelperFactory - taken from NoteDatabaseConfig (WAL, own query pool,
+    *  own write thread, framework SQLite with every query timed).
+    * */
+    public static NoteDatabase getInstance(Context context){
+        NoteDatabase result = instance;
+        if(result == null){
+            synchronized (NoteDatabase.class){
+                result = instance;
+                // only create instance when we don't have one
+                if(result == null){
+                    result = Room.databaseBuilder(context.getApplicationContext(),  // Notice- NoteDatabase instance = new NoteDatabase(...) is not used
+                            NoteDatabase.class, DATABASE_NAME)               // as this class is abstract, so can't create its object.
+                            .addMigrations(getMigrations(NoteBlobStore.forContext(context)))
+                            .setJournalMode(config.getJournalMode())
+                            .setQueryExecutor(config.getQueryExecutor())
+                            .setTransactionExecutor(config.getWriteExecutor())
+                            .openHelperFactory(config.getOpenHelperFactory())  // TimingOpenHelperFactory by default
+                            .addCallback(roomCallback)  // Attaching Callback to our database.
+                            .build();
+                    instance = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /*
+    *  Opens the database (creates/migrates it if needed) and runs the first queries of the app once, so SQLite has the schema parsed,
+    *  the note pages cached and the statements prepared before the note list asks for them. Blocking - call it on a background thread.
     * */
-    public static synchronized NoteDatabase getInstance(Context context){
+    public static void warmUp(Context context){
+        NoteDatabase database = getInstance(context);
+        database.getOpenHelper().getWritableDatabase();
+        database.noteDao().getNoteById(0); // no note has id 0 - only prepares the statement and loads the table's first pages
 
-        // only create instance when we don't have one
-        if(instance == null){
-            instance = Room.databaseBuilder(context.getApplicationContext(),  // Notice- NoteDatabase instance = new NoteDatabase(...) is not used
-                    NoteDatabase.class,"note_database")               // as this class is abstract, so can't create its object.
-                    .fallbackToDestructiveMigration()
-                    .addCallback(roomCallback)  // Attaching Callback to our database.
-                    .build();
+        // Size on disk (database + WAL) - shows how much long descriptions cost, and what compressing them saves
+        File databaseFile = context.getDatabasePath(DATABASE_NAME);
+        File walFile = new File(databaseFile.getPath() + "-wal");
+        getConfig().getMetrics().recordValue(NoteMetrics.DATABASE_FILE_BYTES, databaseFile.length() + walFile.length());
+    }
+
+    // Must be called before the first getInstance() - the database is built only once, later changes have no effect.
+    public static synchronized void setConfig(NoteDatabaseConfig newConfig){
+        if(instance != null){
+            throw new IllegalStateException("NoteDatabase is already created, setConfig() must be called before getInstance()");
         }
-        return instance;
+        config = newConfig;
+    }
+
+    public static synchronized NoteDatabaseConfig getConfig(){
+        return config;
     }
 
+    // Tests only - closes the database and forgets it and its config, so next test can set its own config and get a new database
+    @VisibleForTesting
+    static synchronized void destroyInstance(){
+        if(instance != null){
+            instance.close();
+            instance = null;
+        }
+        config = new NoteDatabaseConfig();
+    }
+
+
+    /*
+    * MIGRATIONS - tell Room how to change an existing database from one version to next one without losing the notes.
+    *
+    * 1 -> 2 : Full text search. Creates the note_fts table (same SQL Room generated for NoteFts at version 2) and the triggers which keep it in sync
+    *          with note_table, then 'rebuild' fills the index from the notes which already exist.
+    * */
+    static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `note_fts` USING FTS4(`title` TEXT, `description` TEXT, content=`note_table`)");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_note_fts_BEFORE_UPDATE BEFORE UPDATE ON `note_table` "
+                    + "BEGIN DELETE FROM `note_fts` WHERE `docid`=OLD.`rowid`; END");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_note_fts_BEFORE_DELETE BEFORE DELETE ON `note_table` "
+                    + "BEGIN DELETE FROM `note_fts` WHERE `docid`=OLD.`rowid`; END");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_note_fts_AFTER_UPDATE AFTER UPDATE ON `note_table` "
+                    + "BEGIN INSERT INTO `note_fts`(`docid`, `title`, `description`) VALUES (NEW.`rowid`, NEW.`title`, NEW.`description`); END");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_note_fts_AFTER_INSERT AFTER INSERT ON `note_table` "
+                    + "BEGIN INSERT INTO `note_fts`(`docid`, `title`, `description`) VALUES (NEW.`rowid`, NEW.`title`, NEW.`description`); END");
+            database.execSQL("INSERT INTO `note_fts`(`note_fts`) VALUES ('rebuild')");
+        }
+    };
+
+    /*
+    * 2 -> 3 : Index on (priority, id) - the sort key of the note list, so it is no longer sorted on every read.
+    * */
+    static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_note_table_priority_id` ON `note_table` (`priority`, `id`)");
+        }
+    };
+
+    /*
+    * 3 -> 4 : version column of Note, and the trigger which increments it on every update of title/description/priority.
+    *          Existing notes start at version 0.
+    * */
+    static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE `note_table` ADD COLUMN `version` INTEGER NOT NULL DEFAULT 0");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS note_table_version_bump "
+                    + "AFTER UPDATE OF `title`, `description`, `priority` ON `note_table` "
+                    + "BEGIN UPDATE `note_table` SET `version` = OLD.`version` + 1 WHERE `id` = NEW.`id`; END");
+        }
+    };
+
+    /*
+    * 4 -> 5 : description_blob column for compressed long descriptions (NoteDescriptionCodec). The version trigger is created again
+    *          with description_blob in its columns - a new compressed text may start with the same prefix as the old one.
+    *          Existing notes stay plain text, a long one is compressed the next time it is saved.
+    * */
+    static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE `note_table` ADD COLUMN `description_blob` BLOB");
+            database.execSQL("DROP TRIGGER IF EXISTS note_table_version_bump");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS note_table_version_bump "
+                    + "AFTER UPDATE OF `title`, `description`, `description_blob`, `priority` ON `note_table` "
+                    + "BEGIN UPDATE `note_table` SET `version` = OLD.`version` + 1 WHERE `id` = NEW.`id`; END");
+        }
+    };
+
+    /*
+    * 5 -> 6 : description_ref column - name of the NoteBlobStore file holding a very long description. Version trigger is created
+    *          again with description_ref in its columns.
+    * */
+    static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE `note_table` ADD COLUMN `description_ref` TEXT");
+            database.execSQL("DROP TRIGGER IF EXISTS note_table_version_bump");
+            database.execSQL(CREATE_VERSION_TRIGGER);
+        }
+    };
+
+    /*
+    * 6 -> 7 : Logical deletes - generation and deleted_at columns (with indices for the purge) and the note_state table with its only
+    *          row. Existing notes get generation 0 = visible_generation, so they all stay visible.
+    * */
+    static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE `note_table` ADD COLUMN `generation` INTEGER NOT NULL DEFAULT 0");
+            database.execSQL("ALTER TABLE `note_table` ADD COLUMN `deleted_at` INTEGER NOT NULL DEFAULT 0");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_note_table_generation` ON `note_table` (`generation`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_note_table_deleted_at` ON `note_table` (`deleted_at`)");
+            database.execSQL("CREATE TABLE IF NOT EXISTS `note_state` (`id` INTEGER NOT NULL, `visible_generation` INTEGER NOT NULL, "
+                    + "`previous_visible_generation` INTEGER NOT NULL, `current_generation` INTEGER NOT NULL, "
+                    + "`visible_generation_changed_at` INTEGER NOT NULL, PRIMARY KEY(`id`))");
+            database.execSQL(INSERT_NOTE_STATE);
+        }
+    };
+
+    /*
+    * 7 -> 8 : note_fts keeps its own copy of the text (see NoteFts) instead of indexing note_table, which has only the beginning of long
+    *          descriptions. Old table and its sync triggers are dropped, plain notes are copied into the new one by one INSERT ... SELECT,
+    *          and only long notes are decoded one by one (NoteDescriptionCodec) - so it needs the NoteBlobStore of the app.
+    * */
+    static class Migration7To8 extends Migration {
+
+        private final NoteBlobStore blobStore;
+
+        Migration7To8(NoteBlobStore blobStore) {
+            super(7, 8);
+            this.blobStore = blobStore;
+        }
+
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("DROP TRIGGER IF EXISTS room_fts_content_sync_note_fts_BEFORE_UPDATE");
+            database.execSQL("DROP TRIGGER IF EXISTS room_fts_content_sync_note_fts_BEFORE_DELETE");
+            database.execSQL("DROP TRIGGER IF EXISTS room_fts_content_sync_note_fts_AFTER_UPDATE");
+            database.execSQL("DROP TRIGGER IF EXISTS room_fts_content_sync_note_fts_AFTER_INSERT");
+            database.execSQL("DROP TABLE IF EXISTS `note_fts`");
+            database.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `note_fts` USING FTS4(`title` TEXT, `description` TEXT)");
+            database.execSQL(CREATE_FTS_DELETE_TRIGGER);
+            database.execSQL("INSERT INTO `note_fts`(`docid`, `title`, `description`) SELECT `id`, `title`, `description` FROM `note_table` "
+                    + "WHERE `description_blob` IS NULL AND `description_ref` IS NULL");
+
+            SupportSQLiteStatement insert = database.compileStatement(
+                    "INSERT INTO `note_fts`(`docid`, `title`, `description`) VALUES (?, ?, ?)");
+            Cursor cursor = database.query("SELECT `id`, `title`, `description`, `description_blob`, `description_ref` FROM `note_table` "
+                    + "WHERE `description_blob` IS NOT NULL OR `description_ref` IS NOT NULL");
+            try {
+                while (cursor.moveToNext()) {
+                    Note note = new Note(cursor.getString(1), cursor.getString(2), 0);
+                    note.setDescriptionBlob(cursor.getBlob(3));
+                    note.setDescriptionRef(cursor.getString(4));
+                    try {
+                        NoteDescriptionCodec.decode(note, blobStore);
+                    } catch (IOException e) {
+                        Log.e(TAG, "Description of note " + cursor.getInt(0) + " can't be read, only its beginning is indexed", e);
+                    }
+                    insert.bindLong(1, cursor.getInt(0));
+                    bindString(insert, 2, note.getTitle());
+                    bindString(insert, 3, note.getDescription());
+                    insert.executeInsert();
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+
+        private static void bindString(SupportSQLiteStatement statement, int index, String value) {
+            if (value == null) {
+                statement.bindNull(index);
+            } else {
+                statement.bindString(index, value);
+            }
+        }
+    }
+
+    /*
+    * 8 -> 9 : Prefix index of note_fts (see NoteFts). FTS options can't be changed in place, so the text is copied into a new table with
+    *          the option, which then takes the name of the old one. The delete trigger names note_fts, so it is dropped while the table
+    *          doesn't exist and created again after.
+    * */
+    static final Migration MIGRATION_8_9 = new Migration(8, 9) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("DROP TRIGGER IF EXISTS note_fts_delete");
+            database.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `note_fts_new` USING FTS4(`title` TEXT, `description` TEXT, prefix=`2,3`)");
+            database.execSQL("INSERT INTO `note_fts_new`(`docid`, `title`, `description`) SELECT `docid`, `title`, `description` FROM `note_fts`");
+            database.execSQL("DROP TABLE `note_fts`");
+            database.execSQL("ALTER TABLE `note_fts_new` RENAME TO `note_fts`");
+            database.execSQL(CREATE_FTS_DELETE_TRIGGER);
+        }
+    };
+
+    // Every migration, in version order - when version is bumped, add the new Migration here (also used by migration tests).
+    static Migration[] getMigrations(NoteBlobStore blobStore) {
+        return new Migration[]{MIGRATION_1_2, MIGRATION_2_3, MIGRATION_3_4, MIGRATION_4_5, MIGRATION_5_6, MIGRATION_6_7,
+                new Migration7To8(blobStore), MIGRATION_8_9};
+    }
+
+    // The only row of note_state (see NoteState) - without it no note would be visible
+    static final String INSERT_NOTE_STATE = "INSERT OR IGNORE INTO `note_state` (`id`, `visible_generation`, "
+            + "`previous_visible_generation`, `current_generation`, `visible_generation_changed_at`) VALUES (" + NoteState.ID + ", 0, 0, 0, 0)";
+
+    /*
+    * Room can't declare triggers on an Entity, so this one is created by us - in onCreate() for a new database and in MIGRATION_5_6
+    * (MIGRATION_3_4 and MIGRATION_4_5 created its older versions, with fewer columns).
+    * It uses OLD.version, so even a write of a whole Note object with an old version number (NoteDao.Update) gets a new version.
+    * (the inner UPDATE doesn't set any of the watched columns, so it doesn't fire the trigger again)
+    * */
+    static final String CREATE_VERSION_TRIGGER = "CREATE TRIGGER IF NOT EXISTS note_table_version_bump "
+            + "AFTER UPDATE OF `title`, `description`, `description_blob`, `description_ref`, `priority` ON `note_table` "
+            + "BEGIN UPDATE `note_table` SET `version` = OLD.`version` + 1 WHERE `id` = NEW.`id`; END";
+
+    /*
+    * Removes the note_fts row of a removed note (purge). Inserts and updates of note_fts are written by NoteRepository, which has the
+    * full text - this one doesn't need the text, so it can be a trigger and no delete of a note can forget it.
+    * */
+    static final String CREATE_FTS_DELETE_TRIGGER = "CREATE TRIGGER IF NOT EXISTS note_fts_delete AFTER DELETE ON `note_table` "
+            + "BEGIN DELETE FROM `note_fts` WHERE `docid` = OLD.`id`; END";
+
 
     /*
     * HOW TO POPULATE DATA IN BEGINNING BEFORE MANUAL INSERTION
@@ -73,26 +343,51 @@ public abstract class NoteDatabase extends RoomDatabase {
         public void onCreate(@NonNull SupportSQLiteDatabase db) {
             super.onCreate(db);
 
+            createTriggersAndState(db);
+
             // instance - NoteDatabase
             new PopulateDbAsyncTask(instance).execute();
         }
     };
 
+    // What a new database needs besides the tables Room creates - also used by tests for their in-memory databases
+    static void createTriggersAndState(SupportSQLiteDatabase db){
+        db.execSQL(CREATE_VERSION_TRIGGER);
+        db.execSQL(CREATE_FTS_DELETE_TRIGGER);
+        db.execSQL(INSERT_NOTE_STATE);
+    }
+
     private static class PopulateDbAsyncTask extends AsyncTask<Void,Void,Void>{
 
+        private NoteDatabase noteDatabase;
         private NoteDao noteDao;
+        private NoteFtsDao noteFtsDao;
 
         private PopulateDbAsyncTask(NoteDatabase noteDatabase){ // Since, we don't have noteDao member variable in this class, we pass NoteDatabase
+            this.noteDatabase = noteDatabase;
             noteDao = noteDatabase.noteDao(); // onCreate is called after DB is created, so we can access noteDao from NoteDatabase without any error
+            noteFtsDao = noteDatabase.noteFtsDao();
         }
 
         @Override
         protected Void doInBackground(Void... voids) {
 
-            // Insert Notes
-            noteDao.Insert(new Note("Title 1","Description 1",1));
-            noteDao.Insert(new Note("Title 2","Description 2",2));
-            noteDao.Insert(new Note("Title 3","Description 3",3));
+            // Insert Notes - all three in one statement/transaction, together with their search index rows (see NoteFts)
+            noteDatabase.runInTransaction(new Runnable() {
+                @Override
+                public void run() {
+                    List<Note> notes = Arrays.asList(
+                            new Note("Title 1","Description 1",1),
+                            new Note("Title 2","Description 2",2),
+                            new Note("Title 3","Description 3",3));
+                    long[] ids = noteDao.Insert(notes);
+                    List<NoteFts> noteFts = new ArrayList<>(notes.size());
+                    for (int i = 0; i < notes.size(); i++) {
+                        noteFts.add(new NoteFts((int) ids[i], notes.get(i).getTitle(), notes.get(i).getDescription()));
+                    }
+                    noteFtsDao.Insert(noteFts);
+                }
+            });
 
             return null;
         }
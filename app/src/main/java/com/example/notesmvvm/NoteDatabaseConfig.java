@@ -0,0 +1,143 @@
+package com.example.notesmvvm;
+
+/*
+*  Settings NoteDatabase is built with (journal mode, the threads queries/writes run on and where data layer metrics are reported),
+*  and the memory NoteRepository may use for its NoteCache.
+*
+*  Defaults are meant for production -
+*  - WRITE_AHEAD_LOGGING: writers append to the WAL file instead of locking the database, so reads (e.g. the note list loading a page)
+*    are not blocked while a long write (import) is running. Room would pick it automatically on most devices, we make it explicit.
+*  - Query executor: a small bounded pool only for note queries (LiveData/PagedList loads, getNote, search) - they don't wait behind
+*    other work on the shared arch IO pool, and at most QUERY_THREADS of them run at same time (one SQLite reader connection each).
+*  - Write executor: a single thread for all writes - used as Room's transaction executor and by NoteWriteQueue, so writes never
+*    compete with each other for the write lock and never take a thread away from queries.
+*  - Metrics: InMemoryNoteMetrics, recording costs a few synchronized array increments so it is on in release builds as well.
+*  - Note cache: 2 MB of notes - a few hundred typical notes, or a couple of long ones. Lower it on low memory devices.
+*  - Open helper factory: TimingOpenHelperFactory around the framework SQLite, so every query Room runs (note list pages included)
+*    is timed into the metrics. Tests replace it, e.g. to count the queries Room runs.
+*
+*  To change them, call NoteDatabase.setConfig() before first NoteDatabase.getInstance().
+* */
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.room.RoomDatabase;
+import androidx.sqlite.db.SupportSQLiteOpenHelper;
+import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class NoteDatabaseConfig {
+
+    private static final int QUERY_THREADS = 4;
+    private static final long QUERY_THREAD_KEEP_ALIVE_SECONDS = 30;
+    private static final int NOTE_CACHE_MAX_BYTES = 2 * 1024 * 1024;
+
+    private RoomDatabase.JournalMode journalMode = RoomDatabase.JournalMode.WRITE_AHEAD_LOGGING;
+    private Executor queryExecutor;
+    private ScheduledExecutorService writeExecutor;
+    private NoteMetrics metrics;
+    private SupportSQLiteOpenHelper.Factory openHelperFactory;
+    private int noteCacheMaxBytes = NOTE_CACHE_MAX_BYTES;
+    private boolean openHelperFactorySet;
+
+    public NoteDatabaseConfig setJournalMode(@NonNull RoomDatabase.JournalMode journalMode) {
+        this.journalMode = journalMode;
+        return this;
+    }
+
+    public NoteDatabaseConfig setQueryExecutor(@NonNull Executor queryExecutor) {
+        this.queryExecutor = queryExecutor;
+        return this;
+    }
+
+    public NoteDatabaseConfig setWriteExecutor(@NonNull ScheduledExecutorService writeExecutor) {
+        this.writeExecutor = writeExecutor;
+        return this;
+    }
+
+    public NoteDatabaseConfig setMetrics(@NonNull NoteMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    // null - Room's default (framework SQLite), with no query timing
+    public NoteDatabaseConfig setOpenHelperFactory(@Nullable SupportSQLiteOpenHelper.Factory openHelperFactory) {
+        this.openHelperFactory = openHelperFactory;
+        openHelperFactorySet = true;
+        return this;
+    }
+
+    // Estimated bytes of notes NoteCache keeps (see NoteCache.estimateSize()), must be > 0
+    public NoteDatabaseConfig setNoteCacheMaxBytes(int noteCacheMaxBytes) {
+        this.noteCacheMaxBytes = noteCacheMaxBytes;
+        return this;
+    }
+
+    public RoomDatabase.JournalMode getJournalMode() {
+        return journalMode;
+    }
+
+    // Executors are created only when first asked for, so a config which replaces them doesn't start unused threads
+    public synchronized Executor getQueryExecutor() {
+        if (queryExecutor == null) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(QUERY_THREADS, QUERY_THREADS,
+                    QUERY_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory("note-query"));
+            executor.allowCoreThreadTimeOut(true); // no idle threads when app isn't doing anything
+            queryExecutor = executor;
+        }
+        return queryExecutor;
+    }
+
+    public synchronized ScheduledExecutorService getWriteExecutor() {
+        if (writeExecutor == null) {
+            writeExecutor = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("note-write"));
+        }
+        return writeExecutor;
+    }
+
+    public synchronized NoteMetrics getMetrics() {
+        if (metrics == null) {
+            metrics = new InMemoryNoteMetrics();
+        }
+        return metrics;
+    }
+
+    // Created on first call, so it reports to the metrics this config ends up with
+    @Nullable
+    public synchronized SupportSQLiteOpenHelper.Factory getOpenHelperFactory() {
+        if (!openHelperFactorySet) {
+            openHelperFactory = new TimingOpenHelperFactory(new FrameworkSQLiteOpenHelperFactory(), getMetrics());
+            openHelperFactorySet = true;
+        }
+        return openHelperFactory;
+    }
+
+    public int getNoteCacheMaxBytes() {
+        return noteCacheMaxBytes;
+    }
+
+    // Names the threads, so they can be told apart in traces and ANR reports
+    private static class NamedThreadFactory implements ThreadFactory {
+
+        private final String prefix;
+        private final AtomicInteger count = new AtomicInteger();
+
+        private NamedThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(@NonNull Runnable runnable) {
+            return new Thread(runnable, prefix + "-" + count.incrementAndGet());
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.notesmvvm;
+
+/*
+*  Storage format of long descriptions (pasted logs, meeting transcripts).
+*
+*  A description longer than COMPRESSION_THRESHOLD chars is stored in two parts -
+*  - description: its first STORED_PREFIX_LENGTH chars as plain text. The note list preview (substr() in NoteDao) reads this column,
+*    so it keeps working without reading the rest. (the full text index gets the whole text from NoteRepository - see NoteFts)
+*  - the whole description, either
+*    - description_blob: compressed into the row - [codec tag (1 byte)][UTF-8 length (4 bytes)][raw deflate data], or
+*    - description_ref: if it is longer than NoteBlobStore.SPILL_THRESHOLD, in a file of NoteBlobStore (plain UTF-8, so it can be
+*      memory mapped and streamed) - the row keeps only the file's name. Even compressed, a multi-MB row would be slow to read and
+*      could not fit into one 2MB CursorWindow.
+*  Shorter descriptions (and ones which don't compress well) are stored as before, plain text with both columns null.
+*
+*  NoteRepository encodes every note it writes and decodes a note only when its full text is needed (getNote()), so the rest of the
+*  app never sees the stored form. Notes from other reads (getAllNotes(), search results) may still be encoded - see
+*  Note.hasFullDescription().
+* */
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+public class NoteDescriptionCodec {
+
+    static final int COMPRESSION_THRESHOLD = 4 * 1024;
+    static final int STORED_PREFIX_LENGTH = 1024;
+
+    private static final byte CODEC_DEFLATE = 1;
+    private static final int HEADER_SIZE = 5;
+    // Compressed form is only kept if it is at most this part of the plain UTF-8 size - else the plain text is stored
+    private static final double MAX_COMPRESSED_RATIO = 0.75;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private NoteDescriptionCodec() {
+    }
+
+    /*
+    * Returns the note as it should be written - the same object if its description is stored as it is, else a copy with the
+    * prefix and the compressed blob or file reference. Never changes the given note (it may still be used by the caller, e.g. the
+    * edit screen). Blocking (compresses, may write a file) - call it on the writer thread.
+    * A file is written and synced before this returns, so it is always on disk before the row referencing it is committed.
+    * */
+    public static Note encode(Note note, NoteBlobStore blobStore) throws IOException {
+        String description = note.getDescription();
+        if (!note.hasFullDescription() || description == null || description.length() <= COMPRESSION_THRESHOLD) {
+            return note;
+        }
+
+        byte[] blob = null;
+        String ref = null;
+        if (description.length() > NoteBlobStore.SPILL_THRESHOLD) {
+            ref = blobStore.put(description);
+        } else {
+            blob = compress(description);
+            if (blob == null) {
+                return note;
+            }
+        }
+
+        Note encoded = new Note(note.getTitle(), prefixOf(description), note.getPriority());
+        encoded.setId(note.getId());
+        encoded.setVersion(note.getVersion());
+        encoded.setGeneration(note.getGeneration());
+        encoded.setDeletedAt(note.getDeletedAt());
+        encoded.setDescriptionBlob(blob);
+        encoded.setDescriptionRef(ref);
+        return encoded;
+    }
+
+    /*
+    * Restores full description of a note loaded from database, in place. Notes which aren't encoded are returned unchanged.
+    * Blocking (decompresses or reads a file) - call it on a background thread.
+    * */
+    public static Note decode(Note note, NoteBlobStore blobStore) throws IOException {
+        if (note.isDescriptionCompressed()) {
+            note.setDescription(decompress(note.getDescriptionBlob()));
+            note.setDescriptionBlob(null);
+        } else if (note.isDescriptionExternal()) {
+            note.setDescription(blobStore.get(note.getDescriptionRef()));
+            note.setDescriptionRef(null);
+        }
+        return note;
+    }
+
+    // Cut before STORED_PREFIX_LENGTH, but never between the two chars of a surrogate pair (e.g. an emoji)
+    private static String prefixOf(String description) {
+        int end = STORED_PREFIX_LENGTH;
+        if (Character.isHighSurrogate(description.charAt(end - 1))) {
+            end--;
+        }
+        return description.substring(0, end);
+    }
+
+    // null if compressing doesn't save enough to be worth decompressing on every read
+    private static byte[] compress(String text) {
+        byte[] plain = text.getBytes(UTF_8);
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(plain);
+            deflater.finish();
+
+            ByteArrayOutputStream output = new ByteArrayOutputStream(plain.length / 2);
+            output.write(CODEC_DEFLATE);
+            output.write(ByteBuffer.allocate(4).putInt(plain.length).array(), 0, 4);
+            byte[] buffer = new byte[8 * 1024];
+            while (!deflater.finished()) {
+                output.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return output.size() <= plain.length * MAX_COMPRESSED_RATIO ? output.toByteArray() : null;
+        } finally {
+            deflater.end(); // frees the native zlib memory now instead of when the Deflater is finalized
+        }
+    }
+
+    private static String decompress(byte[] blob) throws IOException {
+        ByteBuffer header = ByteBuffer.wrap(blob, 0, HEADER_SIZE);
+        byte codec = header.get();
+        if (codec != CODEC_DEFLATE) {
+            throw new IOException("Unknown description codec " + codec);
+        }
+        byte[] plain = new byte[header.getInt()];
+
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(blob, HEADER_SIZE, blob.length - HEADER_SIZE);
+            int length = 0;
+            while (length < plain.length && !inflater.finished()) {
+                int inflated = inflater.inflate(plain, length, plain.length - length);
+                if (inflated == 0 && inflater.needsInput()) {
+                    break;
+                }
+                length += inflated;
+            }
+            if (length != plain.length) {
+                throw new IOException("Compressed description is truncated");
+            }
+            return new String(plain, UTF_8);
+        } catch (DataFormatException e) {
+            throw new IOException("Compressed description is corrupted", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.notesmvvm;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Fts4;
+import androidx.room.PrimaryKey;
+
+/*
+*  Full text search index over title and description of notes.
+*
+*  - @Fts4 creates a virtual table (note_fts) which keeps an inverted index of words -> notes, so a search for a word doesn't have to
+*    scan every note in note_table.
+*  - It keeps its own copy of the text instead of reading note_table (external content) - note_table holds only the beginning of a long
+*    description (NoteDescriptionCodec), so it couldn't give the index the whole text. NoteRepository writes a note's row here in the
+*    same write as the note itself, with the full description (NoteFtsDao). When a note row is removed (purge), the note_fts_delete
+*    trigger (NoteDatabase) removes its row here.
+*  - docid (rowid) of a row in note_fts is the id of the note it belongs to.
+*  - prefix - FTS4 also indexes the first 2 and 3 letters of every word, so a prefix search while typing ("me*", "mee*") reads one
+*    entry of the index instead of merging the entries of every word starting with it.
+* */
+
+@Fts4(prefix = {2, 3})
+@Entity(tableName = "note_fts")
+public class NoteFts {
+
+    @PrimaryKey
+    @ColumnInfo(name = "rowid")
+    private int id;
+
+    private String title;
+
+    private String description;
+
+    public NoteFts(int id, String title, String description) {
+        this.id = id;
+        this.title = title;
+        this.description = description;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.notesmvvm;
+
+/*
+*  DAO of note_fts (see NoteFts) - written only together with the note it indexes, in the same transaction (NoteRepository, first run
+*  population in NoteDatabase).
+*  Searching is NoteDao.searchNotes() - it also reads note_table, to skip deleted notes.
+* */
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+
+import java.util.List;
+
+@Dao
+public interface NoteFtsDao {
+
+    // REPLACE - the row of a note which is already indexed is written again with its new text
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void Insert(NoteFts noteFts);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void Insert(List<NoteFts> noteFts);
+}
@@ -0,0 +1,79 @@
+package com.example.notesmvvm;
+
+/*
+*  Tuning of the notes RecyclerView - applied by MainActivity.
+*
+*  - initialPrefetchItemCount: how many items LinearLayoutManager creates/binds ahead during idle time of a frame (GapWorker) when a
+*    nested or fast scrolled list is about to show them.
+*  - itemViewCacheSize: views of items just scrolled off screen which are kept bound - scrolling back to them needs no bind at all.
+*  - recycledViewPoolSize: unbound note cards kept for reuse - must be at least the number of cards visible at once, else a fling
+*    inflates new cards while old ones are thrown away.
+*  - preinflateItemCount: note cards inflated in background (AsyncLayoutInflater) while the first page of notes is loading - about
+*    one screen full, so the first frame of the list doesn't have to inflate them on the main thread.
+*  - monitorFrames: attach NoteListPerformanceMonitor (bind time per item and dropped frames while scrolling, logged to logcat).
+*
+*  Defaults fit a phone screen showing 5-8 cards; low-end devices can lower the cache sizes to save memory.
+* */
+
+import androidx.recyclerview.widget.RecyclerView;
+
+public class NoteListConfig {
+
+    private int initialPrefetchItemCount = 4;
+    private int itemViewCacheSize = 4;
+    private int recycledViewPoolSize = 12;
+    private int preinflateItemCount = 8;
+    private boolean monitorFrames = BuildConfig.DEBUG;
+
+    public NoteListConfig setInitialPrefetchItemCount(int initialPrefetchItemCount) {
+        this.initialPrefetchItemCount = initialPrefetchItemCount;
+        return this;
+    }
+
+    public NoteListConfig setItemViewCacheSize(int itemViewCacheSize) {
+        this.itemViewCacheSize = itemViewCacheSize;
+        return this;
+    }
+
+    public NoteListConfig setRecycledViewPoolSize(int recycledViewPoolSize) {
+        this.recycledViewPoolSize = recycledViewPoolSize;
+        return this;
+    }
+
+    public NoteListConfig setPreinflateItemCount(int preinflateItemCount) {
+        this.preinflateItemCount = preinflateItemCount;
+        return this;
+    }
+
+    public NoteListConfig setMonitorFrames(boolean monitorFrames) {
+        this.monitorFrames = monitorFrames;
+        return this;
+    }
+
+    public int getInitialPrefetchItemCount() {
+        return initialPrefetchItemCount;
+    }
+
+    public int getItemViewCacheSize() {
+        return itemViewCacheSize;
+    }
+
+    public int getRecycledViewPoolSize() {
+        return recycledViewPoolSize;
+    }
+
+    public int getPreinflateItemCount() {
+        return preinflateItemCount;
+    }
+
+    public boolean isMonitorFrames() {
+        return monitorFrames;
+    }
+
+    // Pool for note cards - can be shared by every RecyclerView of the activity which shows NoteAdapter cards
+    public RecyclerView.RecycledViewPool createRecycledViewPool() {
+        RecyclerView.RecycledViewPool pool = new RecyclerView.RecycledViewPool();
+        pool.setMaxRecycledViews(NoteAdapter.VIEW_TYPE_NOTE, recycledViewPoolSize);
+        return pool;
+    }
+}
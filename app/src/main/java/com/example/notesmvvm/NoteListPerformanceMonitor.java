@@ -0,0 +1,105 @@
+package com.example.notesmvvm;
+
+/*
+*  Measures how smooth the note list is on the device it runs on -
+*  - bind time: how long every NoteAdapter.onBindViewHolder() takes (NoteAdapter.BindTimingListener).
+*  - dropped frames: while the list is scrolling (drag or fling), a Choreographer callback checks the time between frames -
+*    every frame interval longer than one refresh period means frames were skipped.
+*  When scrolling stops, numbers of that scroll are logged (tag "NoteListPerf") and reset. Bind times are also recorded into NoteMetrics
+*  (NoteMetrics.LIST_BIND), so their distribution over the whole session is exported with the data layer metrics.
+* */
+
+import android.util.Log;
+import android.view.Choreographer;
+import android.view.Display;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+public class NoteListPerformanceMonitor extends RecyclerView.OnScrollListener
+        implements NoteAdapter.BindTimingListener, Choreographer.FrameCallback {
+
+    private static final String TAG = "NoteListPerf";
+    private static final float DEFAULT_REFRESH_RATE = 60f;
+
+    private final RecyclerView recyclerView;
+    private final NoteMetrics metrics;
+    private long frameIntervalNanos;
+
+    private boolean scrolling;
+    private long lastFrameTimeNanos;
+    private int frames;
+    private int droppedFrames;
+
+    private int binds;
+    private long totalBindNanos;
+    private long maxBindNanos;
+
+    public NoteListPerformanceMonitor(@NonNull RecyclerView recyclerView, @NonNull NoteMetrics metrics) {
+        this.recyclerView = recyclerView;
+        this.metrics = metrics;
+    }
+
+    // Attaches the monitor to the list and its adapter
+    public static NoteListPerformanceMonitor attach(RecyclerView recyclerView, NoteAdapter adapter, NoteMetrics metrics) {
+        NoteListPerformanceMonitor monitor = new NoteListPerformanceMonitor(recyclerView, metrics);
+        recyclerView.addOnScrollListener(monitor);
+        adapter.setBindTimingListener(monitor);
+        return monitor;
+    }
+
+    @Override
+    public void onBind(long durationNanos) {
+        binds++;
+        totalBindNanos += durationNanos;
+        maxBindNanos = Math.max(maxBindNanos, durationNanos);
+        metrics.recordNanos(NoteMetrics.LIST_BIND, durationNanos);
+    }
+
+    @Override
+    public void onScrollStateChanged(@NonNull RecyclerView recyclerView, int newState) {
+        if (newState != RecyclerView.SCROLL_STATE_IDLE && !scrolling) {
+            scrolling = true;
+            lastFrameTimeNanos = 0;
+            // Read on every scroll start - display (and its refresh rate) is only known once the list is attached to a window
+            Display display = this.recyclerView.getDisplay();
+            float refreshRate = display != null ? display.getRefreshRate() : DEFAULT_REFRESH_RATE;
+            frameIntervalNanos = (long) (1_000_000_000L / refreshRate);
+            Choreographer.getInstance().postFrameCallback(this);
+        } else if (newState == RecyclerView.SCROLL_STATE_IDLE && scrolling) {
+            scrolling = false;
+            Choreographer.getInstance().removeFrameCallback(this);
+            logAndReset();
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!scrolling) {
+            return;
+        }
+        if (lastFrameTimeNanos != 0) {
+            long interval = frameTimeNanos - lastFrameTimeNanos;
+            frames++;
+            // e.g. interval of 3 refresh periods = 2 frames which were never drawn (small tolerance for vsync jitter)
+            long skipped = (interval + frameIntervalNanos / 2) / frameIntervalNanos - 1;
+            if (skipped > 0) {
+                droppedFrames += skipped;
+            }
+        }
+        lastFrameTimeNanos = frameTimeNanos;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    private void logAndReset() {
+        long averageBindMicros = binds > 0 ? totalBindNanos / binds / 1000 : 0;
+        Log.d(TAG, "scroll: frames=" + frames + " dropped=" + droppedFrames
+                + " binds=" + binds + " avgBind=" + averageBindMicros + "us maxBind=" + maxBindNanos / 1000 + "us");
+
+        frames = 0;
+        droppedFrames = 0;
+        binds = 0;
+        totalBindNanos = 0;
+        maxBindNanos = 0;
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.notesmvvm;
+
+/*
+*  Performance metrics of the data layer - where NoteRepository, NoteWriteQueue and the note list report how long things take.
+*
+*  It is an interface so the app can plug in its own backend (NoteDatabaseConfig.setMetrics()), the default one keeps histograms in
+*  memory (InMemoryNoteMetrics) which NoteMetricsExporter can dump to logcat or a file.
+*  Implementations are called from many threads (query pool, write thread, main) and must be thread safe and cheap.
+* */
+
+public interface NoteMetrics {
+
+    // Latencies, recorded with recordNanos()
+    String QUERY_NOTE_BY_ID = "query.noteById";
+    String QUERY_SEARCH = "query.search";
+    String QUERY_SQL = "query.sql";                     // one SQL query run by Room, until its cursor is closed (TimingOpenHelperFactory)
+    String QUERY_PAGE = "query.page";                   // one page load of a PagedList DataSource, timed the same way
+    String WRITE_QUEUE_WAIT = "write.queueWait";        // from enqueue until its batch starts
+    String WRITE_BATCH = "write.batch";                 // one batch transaction, begin to commit
+    String WRITE_BULK = "write.bulk";                   // one bulk write (import)
+    String LIST_BIND = "list.bind";                     // one NoteAdapter.onBindViewHolder() (only while NoteListPerformanceMonitor is attached)
+    String LIST_EMISSION_TO_RENDER = "list.emissionToRender"; // new PagedList from NoteViewModel until the frame showing it
+
+    // Values, recorded with recordValue()
+    String WRITE_QUEUE_DEPTH = "write.queueDepth";      // writes waiting in the queue, sampled on every enqueue
+    String WRITE_BATCH_SIZE = "write.batchSize";        // writes committed by one batch
+    String DATABASE_FILE_BYTES = "db.fileBytes";        // database + WAL file size, sampled when the database is warmed up
+
+    void recordNanos(String name, long nanos);
+
+    void recordValue(String name, long value);
+}
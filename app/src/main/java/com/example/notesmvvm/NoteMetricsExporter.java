@@ -0,0 +1,112 @@
+package com.example.notesmvvm;
+
+/*
+*  Dumps InMemoryNoteMetrics as one line per metric -
+*  name, count, min, p50, p90, p99, max (latencies in microseconds, values as recorded).
+*
+*  toLogcat() is for looking at a debug build (adb logcat -s NoteMetrics), writeTo() for collecting the numbers off a device -
+*  it writes tab separated values with a header row, which open directly in a spreadsheet.
+*  writeJsonTo() writes the same numbers (unrounded - nanoseconds for latencies) together with device and build, for scripts which
+*  compare runs of different builds to catch regressions.
+* */
+
+import android.os.Build;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Locale;
+import java.util.Map;
+
+public class NoteMetricsExporter {
+
+    private static final String TAG = "NoteMetrics";
+    private static final String HEADER = "metric\tcount\tmin\tp50\tp90\tp99\tmax\tunit";
+
+    private NoteMetricsExporter() {
+    }
+
+    public static void toLogcat(@NonNull InMemoryNoteMetrics metrics) {
+        for (Map.Entry<String, LogLinearHistogram> entry : metrics.getHistograms().entrySet()) {
+            if (entry.getValue().getTotalCount() > 0) {
+                Log.i(TAG, formatLine(entry.getKey(), entry.getValue(), metrics.isLatency(entry.getKey())));
+            }
+        }
+    }
+
+    public static void writeTo(@NonNull InMemoryNoteMetrics metrics, @NonNull File file) throws IOException {
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), Charset.forName("UTF-8"));
+        try {
+            writer.write(HEADER);
+            writer.write('\n');
+            for (Map.Entry<String, LogLinearHistogram> entry : metrics.getHistograms().entrySet()) {
+                writer.write(formatLine(entry.getKey(), entry.getValue(), metrics.isLatency(entry.getKey())));
+                writer.write('\n');
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    /*
+    * {"timestamp": ..., "device": ..., "sdk": ..., "versionName": ..., "metrics": [{"name": "write.batch", "unit": "ns",
+    *  "count": ..., "min": ..., "mean": ..., "p50": ..., "p90": ..., "p99": ..., "p999": ..., "max": ...}, ...]}
+    * */
+    public static void writeJsonTo(@NonNull InMemoryNoteMetrics metrics, @NonNull File file) throws IOException {
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), Charset.forName("UTF-8"));
+        try {
+            writer.write(toJson(metrics).toString(2));
+        } catch (JSONException e) {
+            throw new IOException("Metrics can't be written as JSON", e);
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static JSONObject toJson(InMemoryNoteMetrics metrics) throws JSONException {
+        JSONArray results = new JSONArray();
+        for (Map.Entry<String, LogLinearHistogram> entry : metrics.getHistograms().entrySet()) {
+            LogLinearHistogram histogram = entry.getValue();
+            results.put(new JSONObject()
+                    .put("name", entry.getKey())
+                    .put("unit", metrics.isLatency(entry.getKey()) ? "ns" : "value")
+                    .put("count", histogram.getTotalCount())
+                    .put("min", histogram.getMin())
+                    .put("mean", histogram.getMean())
+                    .put("p50", histogram.getValueAtPercentile(50))
+                    .put("p90", histogram.getValueAtPercentile(90))
+                    .put("p99", histogram.getValueAtPercentile(99))
+                    .put("p999", histogram.getValueAtPercentile(99.9))
+                    .put("max", histogram.getMax()));
+        }
+        return new JSONObject()
+                .put("timestamp", System.currentTimeMillis())
+                .put("device", Build.MANUFACTURER + " " + Build.MODEL)
+                .put("sdk", Build.VERSION.SDK_INT)
+                .put("versionName", BuildConfig.VERSION_NAME)
+                .put("metrics", results);
+    }
+
+    private static String formatLine(String name, LogLinearHistogram histogram, boolean latency) {
+        long divisor = latency ? 1000 : 1;
+        return String.format(Locale.US, "%s\t%d\t%d\t%d\t%d\t%d\t%d\t%s",
+                name,
+                histogram.getTotalCount(),
+                histogram.getMin() / divisor,
+                histogram.getValueAtPercentile(50) / divisor,
+                histogram.getValueAtPercentile(90) / divisor,
+                histogram.getValueAtPercentile(99) / divisor,
+                histogram.getMax() / divisor,
+                latency ? "us" : "value");
+    }
+}
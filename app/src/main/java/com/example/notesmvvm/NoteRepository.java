@@ -15,26 +15,151 @@ package com.example.notesmvvm;
 * */
 
 import android.app.Application;
-import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.TextUtils;
+import android.util.Log;
 
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 import androidx.lifecycle.LiveData;
-
+import androidx.paging.LivePagedListBuilder;
+import androidx.paging.PagedList;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class NoteRepository {
 
+    private static final String TAG = "NoteRepository";
+
+    // Number of notes inserted per transaction by importNotes()
+    private static final int IMPORT_CHUNK_SIZE = 500;
+
+    // Number of notes read per query by exportNotes() - with long descriptions decoded one at a time, this bounds its memory use
+    private static final int EXPORT_PAGE_SIZE = 200;
+
+    // Only this many best ranked notes are loaded for a search
+    private static final int SEARCH_RESULT_LIMIT = 200;
+
+    /*
+    * Deleted notes can be restored (undoDelete()/undoDeleteAllNotes()) for this long - until then their rows are kept.
+    * After that the purge removes them, PURGE_BATCH_SIZE rows per short transaction with PURGE_INTERVAL_MS between batches, so it
+    * never holds the write lock for long and other writes (and the note list reloading after each batch) run in between.
+    * */
+    public static final long UNDO_WINDOW_MS = 10 * 1000;
+    private static final int PURGE_BATCH_SIZE = 500;
+    private static final long PURGE_INTERVAL_MS = 200;
+    private static final long PURGE_DELAY_MARGIN_MS = 1000; // so the purge doesn't wake up a moment before notes are old enough
+
+    // Result of searchNotes(), delivered on main thread
+    public interface SearchCallback {
+        void onResult(List<Note> notes);
+    }
+
+    // Result of getNote(), delivered on main thread
+    public interface NoteCallback {
+        void onResult(@Nullable Note note);
+    }
+
+    // Result of exportNotes()/importNotes(File, ...), delivered on main thread - noteCount is the number of notes in the backup
+    public interface BackupCallback {
+        void onComplete(boolean success, int noteCount);
+    }
+
+    /*
+    * Paging config for the note list -
+    *  - pageSize: rows loaded by the DataSource per query.
+    *  - prefetchDistance: how far from the edge of loaded data we start loading next page.
+    *  - initialLoadSize: first load - enough to fill the screen plus prefetch in both directions.
+    *  - placeholders are disabled, so adapter never gets null items.
+    * */
+    private static final int PAGE_SIZE = 30;
+    static final PagedList.Config PAGED_LIST_CONFIG = new PagedList.Config.Builder()
+            .setPageSize(PAGE_SIZE)
+            .setPrefetchDistance(PAGE_SIZE)
+            .setInitialLoadSizeHint(PAGE_SIZE * 3)
+            .setEnablePlaceholders(false)
+            .build();
+
+    /*
+    * One repository for the whole process (like NoteDatabase) - every ViewModel gets this same instance from getInstance().
+    * So the LiveData below exist only once: Room runs one query per invalidation of note_table and hands the result to all observers,
+    * instead of every ViewModel/screen running its own copy of the same query.
+    * */
+    private static volatile NoteRepository instance;
+
+    private NoteDatabase database;
     private NoteDao noteDao;
+    private NoteStateDao noteStateDao;
+    private NoteFtsDao noteFtsDao;
+    private NoteWriteQueue writeQueue;
+    private ScheduledExecutorService writeExecutor;
+    private AtomicBoolean purgeScheduled = new AtomicBoolean();
+    private int purgedSinceBlobCollection; // only used on the writer thread
+    private Executor queryExecutor;
+    private NoteMetrics metrics;
+    private NoteBlobStore blobStore;
+    private NoteCache noteCache;
+    private Handler mainHandler = new Handler(Looper.getMainLooper());
+    private List<NoteChange.Listener> changeListeners = new CopyOnWriteArrayList<>();
     private LiveData<List<Note>> allNotes;
+    private LiveData<PagedList<NoteSummary>> noteSummariesPaged;
+
+    // Double-checked locking, same as NoteDatabase.getInstance()
+    public static NoteRepository getInstance(Application application){
+        NoteRepository result = instance;
+        if(result == null){
+            synchronized (NoteRepository.class){
+                result = instance;
+                if(result == null){
+                    result = new NoteRepository(application);
+                    instance = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    // Tests only - together with NoteDatabase.destroyInstance()
+    @VisibleForTesting
+    static synchronized void destroyInstance(){
+        instance = null;
+    }
 
     // Application is a subclass of Context - used as context to create database instance
-    public NoteRepository(Application application){
-        NoteDatabase database = NoteDatabase.getInstance(application);
+    private NoteRepository(Application application){
+        database = NoteDatabase.getInstance(application);
         /*
         *  noteDao is a abstract class in NoteDatabase. Normally, we can't call abstract method bcz they don't have body.
         *  Since we built NoteDatabase instance using Room.databaseBuilder()- Room auto generates code for NoteDao (Room Subclasses our abstract class)
         * */
         noteDao = database.noteDao();
+        noteStateDao = database.noteStateDao();
+        noteFtsDao = database.noteFtsDao();
+        writeQueue = NoteWriteQueue.getInstance(database);
+        writeExecutor = NoteDatabase.getConfig().getWriteExecutor();
+        blobStore = NoteBlobStore.forContext(application);
+        queryExecutor = database.getQueryExecutor();
+        metrics = NoteDatabase.getConfig().getMetrics();
+        noteCache = new NoteCache(NoteDatabase.getConfig().getNoteCacheMaxBytes());
         allNotes = noteDao.getAllNotes();
+        noteSummariesPaged = new LivePagedListBuilder<>(noteDao.getNoteSummariesPaged(), PAGED_LIST_CONFIG)
+                .setFetchExecutor(queryExecutor) // pages load on the database's query pool instead of the shared arch IO pool
+                .build();
     }
 
 
@@ -45,101 +170,716 @@ public class NoteRepository {
 
 
     public void insert(Note note){
-        // create instance of InsertNoteAsyncTask and pass note to it. Need to perform it on background thread.
-        new InsertNoteAsyncTask(noteDao).execute(note);
+        insert(note, null);
+    }
+
+    public void insert(final Note note, @Nullable NoteWriteQueue.WriteCallback callback){
+        // Queued on the single writer thread - batched with other writes issued at the same time.
+        writeQueue.enqueue(new NoteWriteQueue.Write() {
+            private int insertedId;
+
+            @Override
+            public void apply(NoteDao noteDao) {
+                note.setVersion(System.currentTimeMillis()); // see Note.version
+                note.setGeneration(noteStateDao.getState().getCurrentGeneration()); // see NoteState
+                insertedId = (int) noteDao.Insert(encode(note)); // long description is compressed/stored in a file here, on writer thread
+                noteFtsDao.Insert(new NoteFts(insertedId, note.getTitle(), fullDescription(note))); // search index gets the full text
+            }
+
+            @Override
+            public void onCommitted() {
+                publishChange(NoteChange.of(NoteChange.Type.INSERTED, insertedId));
+            }
+        }, callback);
     }
 
     public void update(Note note){
-        new UpdateNoteAsyncTask(noteDao).execute(note);
+        update(note, null);
+    }
+
+    // Writes the whole note - as a note which is not deleted, so saving a note which was deleted meanwhile restores it
+    public void update(final Note note, @Nullable NoteWriteQueue.WriteCallback callback){
+        writeQueue.enqueue(new NoteWriteQueue.Write() {
+            @Override
+            public void apply(NoteDao noteDao) {
+                note.setGeneration(noteStateDao.getState().getCurrentGeneration());
+                note.setDeletedAt(0);
+                noteDao.Update(encode(note));
+                noteFtsDao.Insert(new NoteFts(note.getId(), note.getTitle(), fullDescription(note)));
+            }
+
+            @Override
+            public void onCommitted() {
+                noteCache.invalidate(note.getId());
+                publishChange(NoteChange.of(NoteChange.Type.UPDATED, note.getId()));
+            }
+        }, callback);
+    }
+
+    /*
+    * Update for an edited note - compares it with the note as it was loaded and writes only the columns which changed
+    * (all of them in same transaction). If nothing changed, nothing is written and no query is invalidated.
+    * Like update(), saving a note which was deleted meanwhile restores it - if it is purged already, the write fails (callback gets false).
+    * Returns true if a write was queued.
+    * */
+    public boolean updateChangedFields(Note original, final Note edited, @Nullable NoteWriteQueue.WriteCallback callback){
+        final int id = original.getId();
+        final String title = TextUtils.equals(original.getTitle(), edited.getTitle()) ? null : edited.getTitle();
+        final String description = TextUtils.equals(original.getDescription(), edited.getDescription()) ? null : edited.getDescription();
+        final boolean priorityChanged = original.getPriority() != edited.getPriority();
+        final int priority = edited.getPriority();
+
+        if (title == null && description == null && !priorityChanged) {
+            return false;
+        }
+
+        writeQueue.enqueue(new NoteWriteQueue.Write() {
+            @Override
+            public void apply(NoteDao noteDao) {
+                if (noteDao.RestoreEdited(id, noteStateDao.getState().getCurrentGeneration()) == 0) {
+                    throw new IllegalStateException("Note " + id + " no longer exists"); // only this write fails, see NoteWriteQueue
+                }
+                if (title != null) {
+                    noteDao.UpdateTitle(id, title);
+                }
+                if (description != null) {
+                    Note stored = encode(edited); // only its description columns are written
+                    noteDao.UpdateDescription(id, stored.getDescription(), stored.getDescriptionBlob(), stored.getDescriptionRef());
+                }
+                if (priorityChanged) {
+                    noteDao.UpdatePriority(id, priority);
+                }
+                if (title != null || description != null) {
+                    noteFtsDao.Insert(new NoteFts(id, edited.getTitle(), edited.getDescription()));
+                }
+            }
+
+            @Override
+            public void onCommitted() {
+                noteCache.invalidate(id);
+                publishChange(NoteChange.of(NoteChange.Type.UPDATED, id));
+            }
+        }, callback);
+        return true;
     }
 
     public void delete(Note note){
-        new DeleteNoteAsyncTask(noteDao).execute(note);
+        delete(note, null);
     }
 
-    public void deleteAllNotes(){
-        new DeleteAllNotesAsyncTask(noteDao).execute();
+    public void delete(Note note, @Nullable NoteWriteQueue.WriteCallback callback){
+        deleteById(note.getId(), callback);
     }
 
     /*
-    * Room will automatically execute database operations that returns LiveData on Background Thread.(No need to taken care by us)
-    * But on other DB operations (insert/update/delete/deleteAllNNotes), we have to do it our self, bcz Room doesn't allow DB operations
-    * on Main Thread (Since it could freeze the app). we'll use Async Task for performing these operations on background thread.
+    * Deletes are logical - the note is only marked as deleted (one small update, the list drops it at once) and can be restored
+    * with undoDelete() for UNDO_WINDOW_MS. Its row is removed by the purge after that.
+    * Used by the note list - it only has NoteSummary, not a full Note
     * */
-    public LiveData<List<Note>> getAllNotes() {
-        return allNotes;
+    public void deleteById(final int id, @Nullable NoteWriteQueue.WriteCallback callback){
+        writeQueue.enqueue(new NoteWriteQueue.Write() {
+            @Override
+            public void apply(NoteDao noteDao) {
+                noteDao.MarkDeleted(id, System.currentTimeMillis());
+            }
+
+            @Override
+            public void onCommitted() {
+                noteCache.invalidate(id);
+                publishChange(NoteChange.of(NoteChange.Type.DELETED, id));
+                schedulePurge(UNDO_WINDOW_MS + PURGE_DELAY_MARGIN_MS);
+            }
+        }, callback);
+    }
+
+    // Restores a note deleted by deleteById() - if it is still within UNDO_WINDOW_MS, else nothing happens.
+    public void undoDelete(final int id, @Nullable NoteWriteQueue.WriteCallback callback){
+        writeQueue.enqueue(new NoteWriteQueue.Write() {
+            private boolean restored;
+
+            @Override
+            public void apply(NoteDao noteDao) {
+                restored = noteDao.RestoreDeleted(id, System.currentTimeMillis() - UNDO_WINDOW_MS) > 0;
+            }
+
+            @Override
+            public void onCommitted() {
+                if (restored) {
+                    publishChange(NoteChange.of(NoteChange.Type.RESTORED, id));
+                }
+            }
+        }, callback);
+    }
+
+    public void deleteAllNotes(){
+        deleteAllNotes(null);
     }
 
     /*
-    * Three things needed by AsyncTask<_,_,_> =
-    * 1. What you need to pass
-    * 2. Progress updates - if not needed = Void
-    * 3. Return result - if not needing anything back = Void
-    *
-    * AsyncTask is declared static so that it doesn't have a reference to repository, else it could cause Memory Leaks.
-    */
-    private static class InsertNoteAsyncTask extends AsyncTask<Note,Void,Void>{
+    * Instant "delete all" - instead of deleting every row (one long transaction holding the write lock, while swipe deletes and other
+    * writes wait behind it), only the generation in note_state is advanced, which hides all existing notes (see NoteState).
+    * Can be undone with undoDeleteAllNotes() for UNDO_WINDOW_MS, then the purge removes the rows in small batches.
+    * */
+    public void deleteAllNotes(@Nullable NoteWriteQueue.WriteCallback callback){
+        writeQueue.enqueue(new NoteWriteQueue.Write() {
+            @Override
+            public void apply(NoteDao noteDao) {
+                noteStateDao.AdvanceVisibleGeneration(System.currentTimeMillis());
+            }
+
+            @Override
+            public void onCommitted() {
+                noteCache.invalidateAll();
+                publishChange(new NoteChange(NoteChange.Type.ALL_DELETED, Collections.<Integer>emptyList()));
+                schedulePurge(UNDO_WINDOW_MS + PURGE_DELAY_MARGIN_MS);
+            }
+        }, callback);
+    }
+
+    // Restores all notes hidden by the last deleteAllNotes() - if it is still within UNDO_WINDOW_MS, else nothing happens.
+    public void undoDeleteAllNotes(@Nullable NoteWriteQueue.WriteCallback callback){
+        writeQueue.enqueue(new NoteWriteQueue.Write() {
+            private boolean restored;
+
+            @Override
+            public void apply(NoteDao noteDao) {
+                restored = noteStateDao.RestorePreviousVisibleGeneration(System.currentTimeMillis() - UNDO_WINDOW_MS) > 0;
+            }
+
+            @Override
+            public void onCommitted() {
+                if (restored) {
+                    publishChange(new NoteChange(NoteChange.Type.RESTORED, Collections.<Integer>emptyList()));
+                }
+            }
+        }, callback);
+    }
 
-        private NoteDao noteDao; // InsertNoteAsyncTask class is static, so can't access NoteDao of NoteRepository class.
+    /*
+    * Starts removing rows of deleted notes whose undo window is over - called once after app start for deletes of earlier runs,
+    * later deletes schedule it themselves.
+    * */
+    public void purgeDeletedNotes(){
+        schedulePurge(0);
+    }
 
-        // Constructor
-        private InsertNoteAsyncTask(NoteDao noteDao){
-            this.noteDao = noteDao;
+    private void schedulePurge(long delayMs){
+        if (purgeScheduled.compareAndSet(false, true)) { // one purge at a time - a running purge picks up newer deletes itself
+            writeExecutor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    writeQueue.enqueueBulk(purgeBatch, null); // behind writes which are already queued
+                }
+            }, delayMs, TimeUnit.MILLISECONDS);
         }
+    }
 
+    /*
+    * One batch of the purge, on the writer thread. Removes up to PURGE_BATCH_SIZE rows which are deleted and can't be restored
+    * anymore, then schedules the next batch - or, when there is nothing more to remove now, the time the next deleted notes leave
+    * their undo window. Once it is done, files of the removed long descriptions are deleted too.
+    * */
+    private final NoteWriteQueue.Write purgeBatch = new NoteWriteQueue.Write() {
         @Override
-        protected Void doInBackground(Note... notes) {
-            noteDao.Insert(notes[0]); // notes is varargs and we want to insert only one note - like an array list having only one item.
-            return null;
+        public void apply(NoteDao noteDao) {
+            purgeScheduled.set(false);
+            long now = System.currentTimeMillis();
+            long undoableSince = now - UNDO_WINDOW_MS;
+            NoteState state = noteStateDao.getState();
+            boolean deleteAllUndoable = state.getVisibleGenerationChangedAt() > undoableSince;
+            // While last "delete all" can be undone, only generations hidden before it are removed
+            long purgeBelowGeneration = deleteAllUndoable ? state.getPreviousVisibleGeneration() : state.getVisibleGeneration();
+
+            int purged = noteDao.PurgeGenerationsBelow(purgeBelowGeneration, PURGE_BATCH_SIZE);
+            if (purged < PURGE_BATCH_SIZE) {
+                purged += noteDao.PurgeDeletedBefore(undoableSince, PURGE_BATCH_SIZE - purged);
+            }
+            purgedSinceBlobCollection += purged;
+            if (purged == PURGE_BATCH_SIZE) {
+                schedulePurge(PURGE_INTERVAL_MS);
+                return;
+            }
+
+            if (purgedSinceBlobCollection > 0) {
+                blobStore.collectGarbage(new HashSet<>(noteDao.getDescriptionRefs()));
+                purgedSinceBlobCollection = 0;
+            }
+            long nextPurgeAt = deleteAllUndoable ? state.getVisibleGenerationChangedAt() + UNDO_WINDOW_MS : Long.MAX_VALUE;
+            Long oldestDeletedAt = noteDao.getOldestDeletedAt();
+            if (oldestDeletedAt != null) {
+                nextPurgeAt = Math.min(nextPurgeAt, oldestDeletedAt + UNDO_WINDOW_MS);
+            }
+            if (nextPurgeAt != Long.MAX_VALUE) {
+                schedulePurge(Math.max(0, nextPurgeAt - now) + PURGE_DELAY_MARGIN_MS);
+            }
         }
+    };
+
+    /*
+    * Imports many notes at once (e.g. migration from another app).
+    * The Iterable is read on the writer thread, IMPORT_CHUNK_SIZE notes at a time - each chunk is inserted by one bulk DAO call, so
+    * it is one transaction reusing one compiled INSERT statement, and only one chunk of notes is held in memory.
+    * Imported notes are added as new notes - their ids are ignored, so an id which is already used here can't overwrite a note.
+    * */
+    public void importNotes(final Iterable<Note> notes, @Nullable NoteWriteQueue.WriteCallback callback){
+        writeQueue.enqueueBulk(new NoteWriteQueue.Write() {
+            @Override
+            public void apply(NoteDao noteDao) {
+                List<Note> chunk = new ArrayList<>(IMPORT_CHUNK_SIZE);
+                for (Note note : notes) {
+                    chunk.add(note);
+                    if (chunk.size() == IMPORT_CHUNK_SIZE) {
+                        importChunk(noteDao, chunk, false);
+                        chunk.clear();
+                    }
+                }
+                if (!chunk.isEmpty()) {
+                    importChunk(noteDao, chunk, false);
+                }
+            }
+        }, callback);
     }
 
-    private static class UpdateNoteAsyncTask extends AsyncTask<Note,Void,Void>{
+    /*
+    * Imports a backup written by exportNotes(), streaming it IMPORT_CHUNK_SIZE notes (one transaction) at a time.
+    * After every committed chunk, its position is saved as NoteBackup.Checkpoint - if the import is interrupted (crash, app killed),
+    * calling importNotes() with the same file again continues after the last committed chunk instead of starting over.
+    * Notes of the backup are added as new notes (like importNotes(Iterable)) - the notes already here are kept, whatever their ids.
+    * */
+    public void importNotes(final File backup, @Nullable final BackupCallback callback){
+        importBackup(backup, false, callback);
+    }
+
+    /*
+    * Restores a backup of this device - notes keep the ids they had in the backup (replacing a note with the same id).
+    * Only allowed into an empty note_table (no notes, not even deleted ones waiting for the purge), or to continue an interrupted
+    * restore of the same backup, so it can't overwrite any note. Fails (success = false) otherwise - use importNotes() then.
+    * */
+    public void restoreNotes(final File backup, @Nullable final BackupCallback callback){
+        importBackup(backup, true, callback);
+    }
 
-        private NoteDao noteDao; // InsertNoteAsyncTask class is static, so can't access NoteDao of NoteRepository class.
+    private void importBackup(final File backup, final boolean keepIds, @Nullable final BackupCallback callback){
+        final int[] noteCount = new int[1]; // set on the writer thread, read in the callback (posted after the write finished)
+        writeQueue.enqueueBulk(new NoteWriteQueue.Write() {
+            @Override
+            public void apply(NoteDao noteDao) {
+                try {
+                    noteCount[0] = importBackup(noteDao, backup, keepIds);
+                } catch (IOException e) {
+                    throw new IllegalStateException("Backup " + backup + " can't be imported", e); // fails the write
+                }
+            }
+        }, new NoteWriteQueue.WriteCallback() {
+            @Override
+            public void onComplete(boolean success) {
+                if (callback != null) {
+                    callback.onComplete(success, noteCount[0]);
+                }
+            }
+        });
+    }
 
-        // Constructor
-        private UpdateNoteAsyncTask(NoteDao noteDao){
-            this.noteDao = noteDao;
+    private int importBackup(NoteDao noteDao, File backup, boolean keepIds) throws IOException {
+        long startNanos = System.nanoTime();
+        NoteBackup.checkComplete(backup); // a cut off backup would import its first chunks and then fail
+        NoteBackup.Checkpoint checkpoint = NoteBackup.Checkpoint.read(backup);
+        if (keepIds && checkpoint.noteCount == 0 && noteDao.getRowCount() > 0) {
+            throw new IllegalStateException("Backup " + backup + " can only be restored into an empty database"); // fails the write
+        }
+        NoteBackup.Reader reader = new NoteBackup.Reader(backup, checkpoint.position, checkpoint.noteCount);
+        try {
+            List<Note> chunk = new ArrayList<>(IMPORT_CHUNK_SIZE);
+            Note note;
+            while ((note = reader.read()) != null) {
+                chunk.add(note);
+                if (chunk.size() == IMPORT_CHUNK_SIZE) {
+                    importChunk(noteDao, chunk, keepIds);
+                    chunk.clear();
+                    NoteBackup.Checkpoint.write(backup, reader.getPosition(), reader.getNoteCount());
+                }
+            }
+            if (!chunk.isEmpty()) {
+                importChunk(noteDao, chunk, keepIds);
+            }
+        } finally {
+            reader.close();
         }
+        NoteBackup.Checkpoint.delete(backup);
 
-        @Override
-        protected Void doInBackground(Note... notes) {
-            noteDao.Update(notes[0]); // notes is varargs and we want to update only one note - like an array list having only one item.
-            return null;
+        int imported = reader.getNoteCount() - checkpoint.noteCount;
+        Log.i(TAG, (keepIds ? "Restored " : "Imported ") + imported + " notes " + throughput(imported, startNanos)
+                + (checkpoint.noteCount > 0 ? " (resumed after " + checkpoint.noteCount + ")" : ""));
+        return reader.getNoteCount();
+    }
+
+    /*
+    * Writes all notes, in id order and with full descriptions, to a backup file (format in NoteBackup) - runs on the query executor,
+    * so the note list keeps loading and writes are not blocked. Notes are read EXPORT_PAGE_SIZE at a time without their compressed
+    * descriptions (NoteDao.getNotesWithoutBlobAfterId()), which are then loaded one note at a time, and descriptions in files
+    * (NoteBlobStore) are streamed from their file into the backup - so at most one page of short notes and one compressed description
+    * are in memory, never the whole table or a very long description. Notes written while the export runs may or may not be in it.
+    * The backup is written to a temp file which replaces backup only once it is complete.
+    * */
+    public void exportNotes(final File backup, @Nullable final BackupCallback callback){
+        queryExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                int noteCount = -1;
+                try {
+                    noteCount = exportBackup(backup);
+                } catch (IOException e) {
+                    Log.e(TAG, "Notes can't be exported to " + backup, e);
+                }
+                final int result = noteCount;
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (callback != null) {
+                            callback.onComplete(result >= 0, Math.max(result, 0));
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private int exportBackup(File backup) throws IOException {
+        long startNanos = System.nanoTime();
+        File tempFile = new File(backup.getPath() + ".tmp");
+        NoteBackup.Writer writer = new NoteBackup.Writer(tempFile);
+        boolean complete = false;
+        try {
+            int lastId = Integer.MIN_VALUE;
+            List<Note> page;
+            do {
+                page = noteDao.getNotesWithoutBlobAfterId(lastId, EXPORT_PAGE_SIZE);
+                for (int i = 0; i < page.size(); i++) {
+                    Note note = page.get(i);
+                    page.set(i, null); // its full description is only needed until it is written
+                    lastId = note.getId();
+                    if (note.isDescriptionExternal()) {
+                        writeStoredDescription(writer, note);
+                        continue;
+                    }
+                    if (note.isDescriptionCompressed()) {
+                        note = withDescriptionBlob(note);
+                        if (note == null) {
+                            continue; // deleted since the page was read
+                        }
+                    }
+                    writer.write(NoteDescriptionCodec.decode(note, blobStore));
+                }
+            } while (page.size() == EXPORT_PAGE_SIZE);
+            writer.finish();
+            complete = true;
+        } finally {
+            writer.close();
+            if (!complete) {
+                tempFile.delete();
+            }
+        }
+        if (!tempFile.renameTo(backup)) {
+            tempFile.delete();
+            throw new IOException("Can't rename " + tempFile + " to " + backup);
         }
+
+        Log.i(TAG, "Exported " + writer.getNoteCount() + " notes " + throughput(writer.getNoteCount(), startNanos));
+        return writer.getNoteCount();
     }
 
+    /*
+    * Replaces the empty blob of a note read by getNotesWithoutBlobAfterId() with its compressed description. If the note changed in the
+    * meantime so that it has no blob anymore, the whole note is read again - its description column holds only the beginning of the
+    * old text. null if the note was deleted.
+    * */
+    @Nullable
+    private Note withDescriptionBlob(Note note){
+        byte[] descriptionBlob = noteDao.getDescriptionBlob(note.getId());
+        if (descriptionBlob == null) {
+            return noteDao.getNoteById(note.getId());
+        }
+        note.setDescriptionBlob(descriptionBlob);
+        return note;
+    }
 
-    private static class DeleteNoteAsyncTask extends AsyncTask<Note,Void,Void>{
+    // A description in a file (NoteBlobStore) is copied from it into the backup as it is - never decoded into memory
+    private void writeStoredDescription(NoteBackup.Writer writer, Note note) throws IOException {
+        FileInputStream input = blobStore.openStream(note.getDescriptionRef());
+        try {
+            writer.write(note, input.getChannel());
+        } finally {
+            input.close();
+        }
+    }
 
-        private NoteDao noteDao; // InsertNoteAsyncTask class is static, so can't access NoteDao of NoteRepository class.
+    private static String throughput(int noteCount, long startNanos){
+        long millis = Math.max(1, (System.nanoTime() - startNanos) / 1000000);
+        return "in " + millis + " ms (" + noteCount * 1000L / millis + " notes/s)";
+    }
 
-        private DeleteNoteAsyncTask(NoteDao noteDao){
-            this.noteDao = noteDao;
+    /*
+    * Inserts one chunk of an import (and its search index rows) in its own transaction - once it returns, the chunk is committed.
+    * keepIds - only for restoreNotes(): notes keep their ids and replace a note with the same id. Otherwise every note gets a new id.
+    * */
+    private void importChunk(final NoteDao noteDao, final List<Note> chunk, final boolean keepIds){
+        // A replaced note must not keep version of the note it replaces, else the list would think nothing changed (see Note.version)
+        long version = System.currentTimeMillis();
+        long generation = noteStateDao.getState().getCurrentGeneration(); // imported notes are not deleted, even if they replace one
+        final List<Note> encodedChunk = new ArrayList<>(chunk.size());
+        final List<String> descriptions = new ArrayList<>(chunk.size()); // full text for the search index
+        for (Note note : chunk) {
+            if (!keepIds) {
+                note.setId(0); // 0 = not set, Room lets SQLite give the note a new id
+            }
+            note.setVersion(version);
+            note.setGeneration(generation);
+            note.setDeletedAt(0);
+            encodedChunk.add(encode(note));
+            descriptions.add(fullDescription(note));
         }
+        long[] ids = database.runInTransaction(new Callable<long[]>() {
+            @Override
+            public long[] call() {
+                long[] ids = keepIds ? noteDao.InsertOrReplace(encodedChunk) : noteDao.Insert(encodedChunk);
+                List<NoteFts> noteFts = new ArrayList<>(chunk.size());
+                for (int i = 0; i < chunk.size(); i++) {
+                    noteFts.add(new NoteFts((int) ids[i], chunk.get(i).getTitle(), descriptions.get(i)));
+                }
+                noteFtsDao.Insert(noteFts);
+                return ids;
+            }
+        });
+        noteCache.invalidateAll(); // the chunk may have replaced cached notes
+
+        // REPLACE of an existing id is reported as an insert too - rows were deleted and inserted again
+        List<Integer> insertedIds = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            insertedIds.add((int) id);
+        }
+        publishChange(new NoteChange(NoteChange.Type.INSERTED, insertedIds));
+    }
 
-        @Override
-        protected Void doInBackground(Note... notes) {
-            noteDao.Delete(notes[0]); // notes is varargs and we want to delete only one note - like an array list having only one item.
+    /*
+    * Deletes files of NoteBlobStore which no note references anymore (the note was deleted, or its description replaced) and leftovers
+    * of writes interrupted by a crash - after NoteBlobStore.GRACE_PERIOD_MS in trash, so a reader which just read the old row can still
+    * open the file. Runs on the writer thread like a write, so it never sees a file whose row isn't committed yet.
+    * */
+    public void collectOrphanBlobs(@Nullable NoteWriteQueue.WriteCallback callback){
+        writeQueue.enqueueBulk(new NoteWriteQueue.Write() {
+            @Override
+            public void apply(NoteDao noteDao) {
+                int deleted = blobStore.collectGarbage(new HashSet<>(noteDao.getDescriptionRefs()));
+                if (deleted > 0) {
+                    Log.i(TAG, "Deleted " + deleted + " unused description files");
+                }
+            }
+        }, callback);
+    }
+
+    // Stored form of a note (see NoteDescriptionCodec) - called on the writer thread, inside the write
+    private Note encode(Note note){
+        try {
+            return NoteDescriptionCodec.encode(note, blobStore);
+        } catch (IOException e) {
+            throw new IllegalStateException("Description of note " + note.getId() + " can't be stored", e); // fails the write
+        }
+    }
+
+    /*
+    * Whole description of a note being written, for its note_fts row - a note may be given in stored form (e.g. a note loaded with only
+    * the beginning of its description, saved again), then it is decoded from a copy, so the caller's note stays as it was.
+    * Called on the writer thread, inside the write - a description which can't be read fails the write rather than index a part of it.
+    * */
+    private String fullDescription(Note note){
+        if (note.hasFullDescription()) {
+            return note.getDescription();
+        }
+        Note copy = new Note(note.getTitle(), note.getDescription(), note.getPriority());
+        copy.setId(note.getId());
+        copy.setDescriptionBlob(note.getDescriptionBlob());
+        copy.setDescriptionRef(note.getDescriptionRef());
+        try {
+            return NoteDescriptionCodec.decode(copy, blobStore).getDescription();
+        } catch (IOException e) {
+            throw new IllegalStateException("Description of note " + note.getId() + " can't be read", e); // fails the write
+        }
+    }
+
+    // Note with its full description, null if there is no note or its description can't be read (then it must not be edited)
+    @Nullable
+    private Note decode(@Nullable Note storedNote){
+        if (storedNote == null) {
+            return null;
+        }
+        try {
+            return NoteDescriptionCodec.decode(storedNote, blobStore);
+        } catch (IOException e) {
+            Log.e(TAG, "Description of note " + storedNote.getId() + " can't be read", e);
             return null;
         }
     }
 
-    // No need to pass any Note to it. so - Void as 1st parameter.
-    private static class DeleteAllNotesAsyncTask extends AsyncTask<Void,Void,Void>{
+    /*
+    * Change feed - listeners get a NoteChange (what happened to which note ids) on main thread after every committed write.
+    * Repository lives as long as the process, so a listener must be removed when its owner is destroyed (e.g. ViewModel.onCleared()).
+    * */
+    public void addChangeListener(NoteChange.Listener listener){
+        changeListeners.add(listener);
+    }
 
-        private NoteDao noteDao; // InsertNoteAsyncTask class is static, so can't access NoteDao of NoteRepository class.
+    public void removeChangeListener(NoteChange.Listener listener){
+        changeListeners.remove(listener);
+    }
 
-        private DeleteAllNotesAsyncTask(NoteDao noteDao){
-            this.noteDao = noteDao;
+    // Called on the writer thread once a write is committed
+    private void publishChange(final NoteChange change){
+        if (changeListeners.isEmpty()) {
+            return;
         }
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                for (NoteChange.Listener listener : changeListeners) {
+                    listener.onNoteChange(change);
+                }
+            }
+        });
+    }
 
-        @Override
-        protected Void doInBackground(Void... voids) {
-            noteDao.DeleteAllNotes();
+    /*
+    * Searches title and description of all notes using the FTS index (note_fts), best matches first.
+    * Runs on Room's query executor - SQLite ranks the hits and returns the ids of the top SEARCH_RESULT_LIMIT (NoteDao.searchNotes()),
+    * then only those notes are loaded.
+    * Results are not decompressed - a long description has only its beginning (enough to show a result), getNote() loads full text.
+    * */
+    public void searchNotes(final String query, final SearchCallback callback){
+        queryExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                long startNanos = System.nanoTime();
+                final List<Note> notes = searchNotesSync(query);
+                metrics.recordNanos(NoteMetrics.QUERY_SEARCH, System.nanoTime() - startNanos);
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onResult(notes);
+                    }
+                });
+            }
+        });
+    }
+
+    private List<Note> searchNotesSync(String query){
+        String matchQuery = toMatchQuery(query);
+        if (matchQuery == null) {
+            return Collections.emptyList();
+        }
+
+        List<Integer> ids = noteDao.searchNotes(toTitleMatchQuery(matchQuery), matchQuery, SEARCH_RESULT_LIMIT);
+
+        // getNotesByIds() doesn't keep order of ids, so put the notes back in rank order
+        Map<Integer, Note> notesById = new HashMap<>();
+        for (Note note : noteDao.getNotesByIds(ids)) {
+            notesById.put(note.getId(), note);
+        }
+        List<Note> notes = new ArrayList<>(ids.size());
+        for (Integer id : ids) {
+            Note note = notesById.get(id);
+            if (note != null) {
+                notes.add(note);
+            }
+        }
+        return notes;
+    }
+
+    /*
+    * Converts what user typed into a FTS query - every word becomes a prefix term ("meet" -> "meet*") and all of them must match.
+    * Characters which have a meaning in FTS syntax (quotes, -, :, ...) are dropped, so user input can't make an invalid query.
+    * Returns null if nothing searchable is left.
+    * */
+    private static String toMatchQuery(String query){
+        if (query == null) {
             return null;
         }
+        StringBuilder matchQuery = new StringBuilder();
+        for (String word : query.trim().split("\\s+")) {
+            String term = word.replaceAll("[^\\p{L}\\p{N}]", "");
+            if (!term.isEmpty()) {
+                if (matchQuery.length() > 0) {
+                    matchQuery.append(' ');
+                }
+                matchQuery.append(term).append('*');
+            }
+        }
+        return matchQuery.length() > 0 ? matchQuery.toString() : null;
+    }
+
+    // Same terms, each restricted to the title column ("meet* notes*" -> "title:meet* title:notes*") - notes matching it rank first
+    private static String toTitleMatchQuery(String matchQuery){
+        return "title:" + matchQuery.replace(" ", " title:");
+    }
+
+    /*
+    * Room will automatically execute database operations that returns LiveData on Background Thread.(No need to taken care by us)
+    * But on other DB operations (insert/update/delete/deleteAllNNotes), we have to do it our self, bcz Room doesn't allow DB operations
+    * on Main Thread (Since it could freeze the app). we use NoteWriteQueue for performing these operations on its background thread.
+    * */
+    public LiveData<List<Note>> getAllNotes() {
+        return allNotes;
+    }
+
+    // Paged version of getAllNotes() - LivePagedListBuilder loads pages in background, so only the visible window
+    // plus prefetch is ever read from the table. Items are NoteSummary (no full description), full note is loaded by getNote().
+    public LiveData<PagedList<NoteSummary>> getNoteSummariesPaged() {
+        return noteSummariesPaged;
+    }
+
+    // Where the data layer reports its timings - also used by the note list for emission to render latency
+    public NoteMetrics getMetrics() {
+        return metrics;
+    }
+
+    // Hit/miss/eviction counters and size of the note cache
+    public NoteCache getNoteCache() {
+        return noteCache;
+    }
+
+    /*
+    * Loads full note with given id, result (null if note doesn't exist anymore, or its description can't be read) is delivered on main thread.
+    * From noteCache if it is there, else from database on Room's query executor (and then put into noteCache).
+    * */
+    public void getNote(final int id, final NoteCallback callback) {
+        final Note cachedNote = noteCache.get(id);
+        if (cachedNote != null) {
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    callback.onResult(cachedNote);
+                }
+            });
+            return;
+        }
+
+        final long cacheGeneration = noteCache.getGeneration(); // before the read - see NoteCache
+        queryExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                long startNanos = System.nanoTime();
+                // Full text is needed here (note is opened) - only place where a long description is decompressed/read from its file
+                final Note note = decode(noteDao.getNoteById(id));
+                metrics.recordNanos(NoteMetrics.QUERY_NOTE_BY_ID, System.nanoTime() - startNanos); // cache hits are not counted
+                if (note != null) {
+                    noteCache.putIfUnchanged(note, cacheGeneration);
+                }
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onResult(note);
+                    }
+                });
+            }
+        });
     }
 
 }
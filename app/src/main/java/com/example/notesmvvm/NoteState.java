@@ -0,0 +1,74 @@
+package com.example.notesmvvm;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/*
+*  Single row table (id = 0) with the generations of note_table - what makes "delete all" instant.
+*
+*  Every note has the generation which was current when it was inserted. Notes with a generation below visibleGeneration are deleted -
+*  so deleting all notes is one update of this row (visibleGeneration = ++currentGeneration) instead of deleting every note row.
+*  The deleted rows are removed later, in small batches, by NoteRepository's purge.
+*
+*  - currentGeneration: generation of newly inserted notes.
+*  - previousVisibleGeneration/visibleGenerationChangedAt: what visibleGeneration was before the last "delete all", and when that
+*    happened (ms, 0 if it can't be undone) - undo of "delete all" restores it, if it is still within NoteRepository.UNDO_WINDOW_MS.
+* */
+@Entity(tableName = "note_state")
+public class NoteState {
+
+    public static final int ID = 0;
+
+    @PrimaryKey
+    private int id;
+
+    @ColumnInfo(name = "visible_generation")
+    private long visibleGeneration;
+
+    @ColumnInfo(name = "previous_visible_generation")
+    private long previousVisibleGeneration;
+
+    @ColumnInfo(name = "current_generation")
+    private long currentGeneration;
+
+    @ColumnInfo(name = "visible_generation_changed_at")
+    private long visibleGenerationChangedAt;
+
+    public NoteState(int id, long visibleGeneration, long previousVisibleGeneration, long currentGeneration,
+                     long visibleGenerationChangedAt) {
+        this.id = id;
+        this.visibleGeneration = visibleGeneration;
+        this.previousVisibleGeneration = previousVisibleGeneration;
+        this.currentGeneration = currentGeneration;
+        this.visibleGenerationChangedAt = visibleGenerationChangedAt;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public long getVisibleGeneration() {
+        return visibleGeneration;
+    }
+
+    public long getPreviousVisibleGeneration() {
+        return previousVisibleGeneration;
+    }
+
+    public long getCurrentGeneration() {
+        return currentGeneration;
+    }
+
+    public long getVisibleGenerationChangedAt() {
+        return visibleGenerationChangedAt;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "NoteState{visible=" + visibleGeneration + ", previous=" + previousVisibleGeneration
+                + ", current=" + currentGeneration + ", changedAt=" + visibleGenerationChangedAt + "}";
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.notesmvvm;
+
+/*
+*  DAO of note_state (see NoteState) - its only row is created with the database (NoteDatabase.INSERT_NOTE_STATE).
+* */
+
+import androidx.room.Dao;
+import androidx.room.Query;
+
+@Dao
+public interface NoteStateDao {
+
+    @Query("SELECT * FROM note_state WHERE id = " + NoteState.ID)
+    NoteState getState();
+
+    /*
+    * "Delete all" - every note inserted until now (generation <= current_generation) is below the new visible_generation.
+    * (right side of every SET uses the old values of the row, so visible_generation = old current_generation + 1 = new current_generation)
+    * */
+    @Query("UPDATE note_state SET previous_visible_generation = visible_generation, current_generation = current_generation + 1, "
+            + "visible_generation = current_generation + 1, visible_generation_changed_at = :now WHERE id = " + NoteState.ID)
+    void AdvanceVisibleGeneration(long now);
+
+    // Undo of "delete all" - only if it happened after changedAfter. Returns 1 if notes were restored, 0 if it was too late.
+    @Query("UPDATE note_state SET visible_generation = previous_visible_generation, visible_generation_changed_at = 0 "
+            + "WHERE id = " + NoteState.ID + " AND visible_generation_changed_at > :changedAfter")
+    int RestorePreviousVisibleGeneration(long changedAfter);
+}
@@ -0,0 +1,53 @@
+package com.example.notesmvvm;
+
+/*
+*  Lightweight version of Note for the note list - not an Entity, just a POJO that Room fills from NoteDao.getNoteSummariesPaged().
+*
+*  The list only shows title, priority and the start of the description, so instead of loading every full description (they can be
+*  very long) it only holds a preview - first PREVIEW_LENGTH characters, cut by substr() in SQL so the rest is never read into the Cursor.
+*  The full Note is loaded by id (NoteDao.getNoteById()) only when it is opened for editing.
+* */
+
+public class NoteSummary {
+
+    // Used by substr() in NoteDao.getNoteSummariesPaged()
+    public static final int PREVIEW_LENGTH = 200;
+
+    private int id;
+
+    private String title;
+
+    private int priority;
+
+    private String preview;
+
+    private long version; // Note.getVersion() - changes with every change of title/description/priority
+
+    public NoteSummary(int id, String title, int priority, String preview, long version) {
+        this.id = id;
+        this.title = title;
+        this.priority = priority;
+        this.preview = preview;
+        this.version = version;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public String getPreview() {
+        return preview;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.notesmvvm;
+
+/*
+*  Precomputes text layout of note descriptions on a background thread, so binding a card doesn't have to measure the text on the
+*  main thread while the list is scrolling.
+*
+*  - NoteAdapter asks for the next PREFETCH_AHEAD notes every time it binds one - their description is measured (PrecomputedTextCompat)
+*    in background and cached by note id together with the note version, so a changed note is measured again.
+*  - bind() uses the cached result if there is one - TextView only attaches it, no measuring. Otherwise (e.g. first cards on screen,
+*    or a jump far into the list) it falls back to plain setText().
+*  - Text must be measured with the same paint/params as the TextView which shows it, so nothing is precomputed before the first
+*    card is bound and params are known.
+* */
+
+import android.util.LruCache;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.core.text.PrecomputedTextCompat;
+import androidx.core.widget.TextViewCompat;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+public class NoteTextPrecomputer {
+
+    // Notes after the bound one which are precomputed
+    public static final int PREFETCH_AHEAD = 6;
+
+    private static final int MAX_CACHED_NOTES = 100;
+
+    private final LruCache<Integer, Entry> cache = new LruCache<>(MAX_CACHED_NOTES);
+    private final Set<Integer> pending = new HashSet<>(); // guarded by itself
+    /*
+    * One thread for all adapters - a new adapter is created on every rotation, so a thread per instance would leak one each time.
+    * The thread stops after being idle for IDLE_TIMEOUT_SECONDS and is started again by the next precompute().
+    * */
+    private static final long IDLE_TIMEOUT_SECONDS = 5;
+    private static final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, IDLE_TIMEOUT_SECONDS, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+        @Override
+        public Thread newThread(@NonNull Runnable runnable) {
+            Thread thread = new Thread(runnable, "note-text-precompute");
+            thread.setPriority(Thread.MIN_PRIORITY); // never compete with the main/render thread
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    static {
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    private volatile PrecomputedTextCompat.Params params;
+
+    // Main thread - shows description of the note in textView, precomputed if possible
+    public void bind(TextView textView, NoteSummary note) {
+        if (params == null) {
+            params = TextViewCompat.getTextMetricsParams(textView);
+        }
+
+        Entry entry = cache.get(note.getId());
+        if (entry != null && entry.version == note.getVersion()
+                && entry.text.getParams().equals(TextViewCompat.getTextMetricsParams(textView))) {
+            TextViewCompat.setPrecomputedText(textView, entry.text);
+        } else {
+            textView.setText(note.getPreview());
+            precompute(note);
+        }
+    }
+
+    // Main thread - starts precomputing notes which will be bound soon
+    public void prefetch(List<NoteSummary> notes) {
+        if (params == null) {
+            return;
+        }
+        for (NoteSummary note : notes) {
+            Entry entry = cache.get(note.getId());
+            if (entry == null || entry.version != note.getVersion()) {
+                precompute(note);
+            }
+        }
+    }
+
+    private void precompute(final NoteSummary note) {
+        final PrecomputedTextCompat.Params currentParams = params;
+        if (currentParams == null || note.getPreview() == null) {
+            return; // note without description - bind() shows it with setText(), there is nothing to measure
+        }
+        synchronized (pending) {
+            if (!pending.add(note.getId())) {
+                return; // already queued
+            }
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    PrecomputedTextCompat text = PrecomputedTextCompat.create(note.getPreview(), currentParams);
+                    cache.put(note.getId(), new Entry(note.getVersion(), text));
+                } finally {
+                    synchronized (pending) {
+                        pending.remove(note.getId());
+                    }
+                }
+            }
+        });
+    }
+
+    private static class Entry {
+
+        private final long version;
+        private final PrecomputedTextCompat text;
+
+        private Entry(long version, PrecomputedTextCompat text) {
+            this.version = version;
+            this.text = text;
+        }
+    }
+}
@@ -15,11 +15,17 @@ package com.example.notesmvvm;
 
 
 import android.app.Application;
+import android.os.Handler;
+import android.os.Looper;
 
 import androidx.annotation.NonNull;
 import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+import androidx.paging.PagedList;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public class NoteViewModel extends AndroidViewModel {
@@ -32,16 +38,26 @@ public class NoteViewModel extends AndroidViewModel {
     *   can be passed further to database.
     * */
 
+    // Search only runs after user stopped typing for this long, so we don't query the index on every key stroke
+    private static final long SEARCH_DEBOUNCE_MS = 300;
+
     private NoteRepository repository;
     private LiveData<List<Note>> allNotes;
+    private LiveData<PagedList<NoteSummary>> noteSummariesPaged;
+
+    private Handler searchHandler = new Handler(Looper.getMainLooper());
+    private MutableLiveData<List<Note>> searchResults = new MutableLiveData<>();
+    private String searchQuery = "";
 
 
 
     public NoteViewModel(@NonNull Application application) {
         super(application);
 
-        repository = new NoteRepository(application);
+        repository = NoteRepository.getInstance(application); // shared by all ViewModels
         allNotes = repository.getAllNotes();
+        noteSummariesPaged = repository.getNoteSummariesPaged();
+        repository.addChangeListener(noteChangeListener);
     }
 
     /*
@@ -61,11 +77,102 @@ public class NoteViewModel extends AndroidViewModel {
         repository.delete(note);
     }
 
+    public void deleteById(int id){
+        repository.deleteById(id, null);
+    }
+
+    public void undoDelete(int id){
+        repository.undoDelete(id, null);
+    }
+
     public  void deleteAllNotes(){
         repository.deleteAllNotes();
     }
 
+    public void undoDeleteAllNotes(){
+        repository.undoDeleteAllNotes(null);
+    }
+
     public LiveData<List<Note>> getAllNotes() {
         return allNotes;
     }
+
+    public LiveData<PagedList<NoteSummary>> getNoteSummariesPaged() {
+        return noteSummariesPaged;
+    }
+
+    public NoteMetrics getMetrics() {
+        return repository.getMetrics();
+    }
+
+    /*
+    * Search - called with every change of search text. The previous pending search is cancelled and a new one is posted after
+    * SEARCH_DEBOUNCE_MS. Results of a search which is no longer the current query (user kept typing) are dropped.
+    * */
+    public void setSearchQuery(final String query) {
+        searchQuery = query;
+        searchHandler.removeCallbacksAndMessages(null);
+        searchHandler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                repository.searchNotes(query, new NoteRepository.SearchCallback() {
+                    @Override
+                    public void onResult(List<Note> notes) {
+                        if (query.equals(searchQuery)) {
+                            searchResults.setValue(notes);
+                        }
+                    }
+                });
+            }
+        }, SEARCH_DEBOUNCE_MS);
+    }
+
+    public LiveData<List<Note>> getSearchResults() {
+        return searchResults;
+    }
+
+    /*
+    * Keeps search results up to date with writes, using the change feed of repository instead of searching again after every write -
+    * deleted notes are just removed from the results we already have. Inserted/updated notes can change which notes match (and their
+    * rank), so only then the current query runs again.
+    * (The note list itself is a PagedList - on a change it reloads only the pages around what is on screen, not the whole table.)
+    * */
+    private NoteChange.Listener noteChangeListener = new NoteChange.Listener() {
+        @Override
+        public void onNoteChange(NoteChange change) {
+            List<Note> currentResults = searchResults.getValue();
+            if (searchQuery.trim().isEmpty() || currentResults == null) {
+                return; // no search is shown
+            }
+
+            switch (change.getType()) {
+                case DELETED:
+                    List<Note> remaining = new ArrayList<>(currentResults.size());
+                    for (Note note : currentResults) {
+                        if (!change.getIds().contains(note.getId())) {
+                            remaining.add(note);
+                        }
+                    }
+                    if (remaining.size() != currentResults.size()) {
+                        searchResults.setValue(remaining);
+                    }
+                    break;
+
+                case ALL_DELETED:
+                    searchResults.setValue(Collections.<Note>emptyList());
+                    break;
+
+                default:
+                    setSearchQuery(searchQuery); // debounced, so a burst of writes runs the search once
+                    break;
+            }
+        }
+    };
+
+    @Override
+    protected void onCleared() {
+        super.onCleared();
+        searchHandler.removeCallbacksAndMessages(null);
+        repository.removeChangeListener(noteChangeListener); // repository outlives this ViewModel
+    }
 }
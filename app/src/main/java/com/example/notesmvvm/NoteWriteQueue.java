@@ -0,0 +1,254 @@
+package com.example.notesmvvm;
+
+/*
+*  Single writer for note_table - used by NoteRepository instead of one AsyncTask per insert/update/delete.
+*
+*  - Every write is added to a FIFO queue and executed on one dedicated thread, so writes are applied in the order they were issued
+*    (two updates of the same note can never be reordered).
+*  - Writes issued within BATCH_WINDOW_MS of each other are run together inside one transaction. Room's InvalidationTracker is only
+*    notified when the transaction ends, so a whole batch causes one re-query of the observed note list instead of one per write.
+*  - If a batch fails, its writes are retried one by one in their own transactions, so one bad write doesn't roll back the others.
+*    A batch which is committed is never retried, even if an onCommitted() of one of its writes throws.
+*  - Bulk writes (enqueueBulk) are never batched - they run alone, outside of any batch transaction, and commit in their own chunks.
+*  - Queue depth, time spent waiting in the queue, batch size and batch duration are reported to NoteMetrics.
+* */
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class NoteWriteQueue {
+
+    private static final String TAG = "NoteWriteQueue";
+
+    // How long the writer waits for more writes before it starts a batch, and the most writes put into one transaction.
+    private static final long BATCH_WINDOW_MS = 16;
+    private static final int MAX_BATCH_SIZE = 500;
+
+    /*
+    * A single database operation, executed on the writer thread.
+    * onCommitted() is called on the writer thread right after the transaction containing the write is committed (before any callback),
+    * e.g. to invalidate cached copies of the written notes - doing that inside apply() would be too early, the change isn't visible yet.
+    * */
+    public abstract static class Write {
+
+        public abstract void apply(NoteDao noteDao);
+
+        public void onCommitted() {
+        }
+    }
+
+    // Called on the main thread once the write is committed (success = true) or has failed (success = false).
+    public interface WriteCallback {
+        void onComplete(boolean success);
+    }
+
+    // One writer per database - all repositories must share it, else writes from two of them could run in parallel and out of order.
+    private static NoteWriteQueue instance;
+
+    private final NoteDatabase database;
+    private final NoteDao noteDao;
+    private final ScheduledExecutorService executor;
+    private final NoteMetrics metrics;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Guarded by itself
+    private final ArrayDeque<PendingWrite> pending = new ArrayDeque<>();
+    private boolean drainScheduled;
+
+    private NoteWriteQueue(NoteDatabase database, ScheduledExecutorService executor, NoteMetrics metrics) {
+        this.database = database;
+        this.noteDao = database.noteDao();
+        this.executor = executor;
+        this.metrics = metrics;
+    }
+
+    public static synchronized NoteWriteQueue getInstance(NoteDatabase database) {
+        if (instance == null) {
+            // Runs on the database's write thread - same single thread Room uses as its transaction executor
+            NoteDatabaseConfig config = NoteDatabase.getConfig();
+            instance = new NoteWriteQueue(database, config.getWriteExecutor(), config.getMetrics());
+        }
+        return instance;
+    }
+
+    // Tests only - together with NoteDatabase.destroyInstance()
+    @VisibleForTesting
+    static synchronized void destroyInstance() {
+        instance = null;
+    }
+
+    public void enqueue(@NonNull Write write, @Nullable WriteCallback callback) {
+        synchronized (pending) {
+            pending.add(new PendingWrite(write, callback, false));
+            metrics.recordValue(NoteMetrics.WRITE_QUEUE_DEPTH, pending.size());
+            if (!drainScheduled) {
+                drainScheduled = true;
+                executor.schedule(drainTask, BATCH_WINDOW_MS, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /*
+    * For long running writes (imports) which open their own transactions per chunk.
+    * Putting them into a batch would make the whole import one transaction, holding the write lock until it ends.
+    * Order with other writes is still kept - the writes queued before run first, the writes queued after wait for it.
+    * */
+    public void enqueueBulk(@NonNull Write write, @Nullable WriteCallback callback) {
+        synchronized (pending) {
+            pending.add(new PendingWrite(write, callback, true));
+            metrics.recordValue(NoteMetrics.WRITE_QUEUE_DEPTH, pending.size());
+            if (!drainScheduled) {
+                drainScheduled = true;
+                executor.execute(drainTask);
+            }
+        }
+    }
+
+    private final Runnable drainTask = new Runnable() {
+        @Override
+        public void run() {
+            List<PendingWrite> batch = new ArrayList<>();
+            PendingWrite bulkWrite = null;
+            synchronized (pending) {
+                if (!pending.isEmpty() && pending.peek().bulk) {
+                    bulkWrite = pending.poll();
+                }
+                while (bulkWrite == null && !pending.isEmpty() && !pending.peek().bulk && batch.size() < MAX_BATCH_SIZE) {
+                    batch.add(pending.poll());
+                }
+                if (pending.isEmpty()) {
+                    drainScheduled = false;
+                } else {
+                    // Queue is still backed up - run next batch right after this one without waiting for the window.
+                    executor.execute(this);
+                }
+            }
+            long startNanos = System.nanoTime();
+            if (bulkWrite != null) {
+                metrics.recordNanos(NoteMetrics.WRITE_QUEUE_WAIT, startNanos - bulkWrite.enqueuedNanos);
+                runBulk(bulkWrite);
+                metrics.recordNanos(NoteMetrics.WRITE_BULK, System.nanoTime() - startNanos);
+            } else {
+                for (PendingWrite pendingWrite : batch) {
+                    metrics.recordNanos(NoteMetrics.WRITE_QUEUE_WAIT, startNanos - pendingWrite.enqueuedNanos);
+                }
+                runBatch(batch);
+                metrics.recordValue(NoteMetrics.WRITE_BATCH_SIZE, batch.size());
+                metrics.recordNanos(NoteMetrics.WRITE_BATCH, System.nanoTime() - startNanos);
+            }
+        }
+    };
+
+    private void runBulk(PendingWrite pendingWrite) {
+        boolean success;
+        try {
+            pendingWrite.write.apply(noteDao);
+            success = true;
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Bulk write failed", e);
+            success = false;
+        }
+        if (success) {
+            notifyCommitted(pendingWrite);
+        }
+        notifyComplete(pendingWrite, success);
+    }
+
+    /*
+    * Only the transaction is inside the try - once it is committed, the writes must not be applied again, so a failing
+    * onCommitted() can't send the batch to the one by one retry (see notifyCommitted()).
+    * */
+    private void runBatch(final List<PendingWrite> batch) {
+        try {
+            database.runInTransaction(new Runnable() {
+                @Override
+                public void run() {
+                    for (PendingWrite pendingWrite : batch) {
+                        pendingWrite.write.apply(noteDao);
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Batch of " + batch.size() + " writes failed, retrying them one by one", e);
+            for (PendingWrite pendingWrite : batch) {
+                runSingle(pendingWrite);
+            }
+            return;
+        }
+        for (PendingWrite pendingWrite : batch) {
+            notifyCommitted(pendingWrite);
+        }
+        for (PendingWrite pendingWrite : batch) {
+            notifyComplete(pendingWrite, true);
+        }
+    }
+
+    private void runSingle(final PendingWrite pendingWrite) {
+        boolean success;
+        try {
+            database.runInTransaction(new Runnable() {
+                @Override
+                public void run() {
+                    pendingWrite.write.apply(noteDao);
+                }
+            });
+            success = true;
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Write failed", e);
+            success = false;
+        }
+        if (success) {
+            notifyCommitted(pendingWrite);
+        }
+        notifyComplete(pendingWrite, success);
+    }
+
+    /*
+    * The write is already committed, so an exception of its onCommitted() is only logged - it doesn't make the write fail,
+    * and the hooks of the other writes of the batch still run.
+    * */
+    private void notifyCommitted(PendingWrite pendingWrite) {
+        try {
+            pendingWrite.write.onCommitted();
+        } catch (RuntimeException e) {
+            Log.e(TAG, "onCommitted() of a committed write failed", e);
+        }
+    }
+
+    private void notifyComplete(final PendingWrite pendingWrite, final boolean success) {
+        if (pendingWrite.callback == null) {
+            return;
+        }
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                pendingWrite.callback.onComplete(success);
+            }
+        });
+    }
+
+    private static class PendingWrite {
+
+        private final Write write;
+        private final WriteCallback callback;
+        private final boolean bulk;
+        private final long enqueuedNanos = System.nanoTime();
+
+        private PendingWrite(Write write, WriteCallback callback, boolean bulk) {
+            this.write = write;
+            this.callback = callback;
+            this.bulk = bulk;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.notesmvvm;
+
+/*
+*  Application class - created once when the app process starts, before any activity.
+*
+*  Opening the database (and migrating it after an update) is the slowest part of showing the first note. Instead of doing it when
+*  MainActivity first asks for notes, we start it here on a background thread, in parallel with the activity being created.
+*  Once it is open, notes deleted in earlier runs are purged and files of deleted long descriptions are cleaned up (queued behind
+*  writes, so it doesn't delay the note list).
+* */
+
+import android.app.Application;
+
+public class NotesApplication extends Application {
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+
+        NoteDatabase.getConfig().getQueryExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                NoteDatabase.warmUp(NotesApplication.this);
+                NoteRepository repository = NoteRepository.getInstance(NotesApplication.this);
+                repository.purgeDeletedNotes();
+                repository.collectOrphanBlobs(null);
+            }
+        });
+    }
+}
@@ -0,0 +1,319 @@
+package com.example.notesmvvm;
+
+/*
+*  SupportSQLiteOpenHelper.Factory which times every query run on the database and reports it to NoteMetrics - it is the default
+*  of NoteDatabaseConfig.getOpenHelperFactory(), wrapping Room's default (framework SQLite). Room runs all its reads (LiveData,
+*  PagedList DataSources, DAO methods) through SupportSQLiteDatabase.query(), so every DAO query is timed, including the ones of
+*  the note list - which have no repository method around them to time.
+*
+*  A query is timed from query() until Room closes its cursor - running the statement and reading the rows into objects.
+*  Page loads of a PagedList (Room's LimitOffsetDataSource wraps the DAO query as "SELECT * FROM (...) LIMIT ? OFFSET ?") are
+*  recorded as QUERY_PAGE, all other queries as QUERY_SQL. Everything else is passed through to the wrapped database unchanged.
+* */
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.CursorWrapper;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteTransactionListener;
+import android.os.CancellationSignal;
+import android.util.Pair;
+
+import androidx.annotation.NonNull;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteOpenHelper;
+import androidx.sqlite.db.SupportSQLiteQuery;
+import androidx.sqlite.db.SupportSQLiteStatement;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+
+public class TimingOpenHelperFactory implements SupportSQLiteOpenHelper.Factory {
+
+    private static final String PAGE_QUERY_SUFFIX = "LIMIT ? OFFSET ?";
+
+    private final SupportSQLiteOpenHelper.Factory delegate;
+    private final NoteMetrics metrics;
+
+    // delegate opens the database (e.g. FrameworkSQLiteOpenHelperFactory), its queries are timed into metrics
+    public TimingOpenHelperFactory(@NonNull SupportSQLiteOpenHelper.Factory delegate, @NonNull NoteMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public SupportSQLiteOpenHelper create(SupportSQLiteOpenHelper.Configuration configuration) {
+        return new TimingOpenHelper(delegate.create(configuration));
+    }
+
+    private class TimingOpenHelper implements SupportSQLiteOpenHelper {
+
+        private final SupportSQLiteOpenHelper helper;
+        private volatile TimingDatabase database;
+
+        private TimingOpenHelper(SupportSQLiteOpenHelper helper) {
+            this.helper = helper;
+        }
+
+        @Override
+        public String getDatabaseName() {
+            return helper.getDatabaseName();
+        }
+
+        @Override
+        public void setWriteAheadLoggingEnabled(boolean enabled) {
+            helper.setWriteAheadLoggingEnabled(enabled);
+        }
+
+        @Override
+        public SupportSQLiteDatabase getWritableDatabase() {
+            return wrap(helper.getWritableDatabase());
+        }
+
+        @Override
+        public SupportSQLiteDatabase getReadableDatabase() {
+            return wrap(helper.getReadableDatabase());
+        }
+
+        @Override
+        public void close() {
+            helper.close();
+        }
+
+        // Framework helper hands out the same database object every time - so does this one
+        private synchronized SupportSQLiteDatabase wrap(SupportSQLiteDatabase opened) {
+            if (database == null || database.db != opened) {
+                database = new TimingDatabase(opened);
+            }
+            return database;
+        }
+    }
+
+    private class TimingDatabase implements SupportSQLiteDatabase {
+
+        private final SupportSQLiteDatabase db;
+
+        private TimingDatabase(SupportSQLiteDatabase db) {
+            this.db = db;
+        }
+
+        @Override
+        public Cursor query(String query) {
+            return new TimedCursor(query, System.nanoTime(), db.query(query));
+        }
+
+        @Override
+        public Cursor query(String query, Object[] bindArgs) {
+            return new TimedCursor(query, System.nanoTime(), db.query(query, bindArgs));
+        }
+
+        @Override
+        public Cursor query(SupportSQLiteQuery query) {
+            return new TimedCursor(query.getSql(), System.nanoTime(), db.query(query));
+        }
+
+        @Override
+        public Cursor query(SupportSQLiteQuery query, CancellationSignal cancellationSignal) {
+            return new TimedCursor(query.getSql(), System.nanoTime(), db.query(query, cancellationSignal));
+        }
+
+        @Override
+        public SupportSQLiteStatement compileStatement(String sql) {
+            return db.compileStatement(sql);
+        }
+
+        @Override
+        public void beginTransaction() {
+            db.beginTransaction();
+        }
+
+        @Override
+        public void beginTransactionNonExclusive() {
+            db.beginTransactionNonExclusive();
+        }
+
+        @Override
+        public void beginTransactionWithListener(SQLiteTransactionListener transactionListener) {
+            db.beginTransactionWithListener(transactionListener);
+        }
+
+        @Override
+        public void beginTransactionWithListenerNonExclusive(SQLiteTransactionListener transactionListener) {
+            db.beginTransactionWithListenerNonExclusive(transactionListener);
+        }
+
+        @Override
+        public void endTransaction() {
+            db.endTransaction();
+        }
+
+        @Override
+        public void setTransactionSuccessful() {
+            db.setTransactionSuccessful();
+        }
+
+        @Override
+        public boolean inTransaction() {
+            return db.inTransaction();
+        }
+
+        @Override
+        public boolean isDbLockedByCurrentThread() {
+            return db.isDbLockedByCurrentThread();
+        }
+
+        @Override
+        public boolean yieldIfContendedSafely() {
+            return db.yieldIfContendedSafely();
+        }
+
+        @Override
+        public boolean yieldIfContendedSafely(long sleepAfterYieldDelay) {
+            return db.yieldIfContendedSafely(sleepAfterYieldDelay);
+        }
+
+        @Override
+        public int getVersion() {
+            return db.getVersion();
+        }
+
+        @Override
+        public void setVersion(int version) {
+            db.setVersion(version);
+        }
+
+        @Override
+        public long getMaximumSize() {
+            return db.getMaximumSize();
+        }
+
+        @Override
+        public long setMaximumSize(long numBytes) {
+            return db.setMaximumSize(numBytes);
+        }
+
+        @Override
+        public long getPageSize() {
+            return db.getPageSize();
+        }
+
+        @Override
+        public void setPageSize(long numBytes) {
+            db.setPageSize(numBytes);
+        }
+
+        @Override
+        public long insert(String table, int conflictAlgorithm, ContentValues values) throws SQLException {
+            return db.insert(table, conflictAlgorithm, values);
+        }
+
+        @Override
+        public int delete(String table, String whereClause, Object[] whereArgs) {
+            return db.delete(table, whereClause, whereArgs);
+        }
+
+        @Override
+        public int update(String table, int conflictAlgorithm, ContentValues values, String whereClause, Object[] whereArgs) {
+            return db.update(table, conflictAlgorithm, values, whereClause, whereArgs);
+        }
+
+        @Override
+        public void execSQL(String sql) throws SQLException {
+            db.execSQL(sql);
+        }
+
+        @Override
+        public void execSQL(String sql, Object[] bindArgs) throws SQLException {
+            db.execSQL(sql, bindArgs);
+        }
+
+        @Override
+        public boolean isReadOnly() {
+            return db.isReadOnly();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return db.isOpen();
+        }
+
+        @Override
+        public boolean needUpgrade(int newVersion) {
+            return db.needUpgrade(newVersion);
+        }
+
+        @Override
+        public String getPath() {
+            return db.getPath();
+        }
+
+        @Override
+        public void setLocale(Locale locale) {
+            db.setLocale(locale);
+        }
+
+        @Override
+        public void setMaxSqlCacheSize(int cacheSize) {
+            db.setMaxSqlCacheSize(cacheSize);
+        }
+
+        @Override
+        public void setForeignKeyConstraintsEnabled(boolean enable) {
+            db.setForeignKeyConstraintsEnabled(enable);
+        }
+
+        @Override
+        public boolean enableWriteAheadLogging() {
+            return db.enableWriteAheadLogging();
+        }
+
+        @Override
+        public void disableWriteAheadLogging() {
+            db.disableWriteAheadLogging();
+        }
+
+        @Override
+        public boolean isWriteAheadLoggingEnabled() {
+            return db.isWriteAheadLoggingEnabled();
+        }
+
+        @Override
+        public List<Pair<String, String>> getAttachedDbs() {
+            return db.getAttachedDbs();
+        }
+
+        @Override
+        public boolean isDatabaseIntegrityOk() {
+            return db.isDatabaseIntegrityOk();
+        }
+
+        @Override
+        public void close() throws IOException {
+            db.close();
+        }
+    }
+
+    // Records the query when it is closed - SQLite runs the statement on the first move of the cursor, not in query()
+    private class TimedCursor extends CursorWrapper {
+
+        private final String name;
+        private final long startNanos;
+        private boolean recorded;
+
+        private TimedCursor(String sql, long startNanos, Cursor cursor) {
+            super(cursor);
+            this.name = sql.endsWith(PAGE_QUERY_SUFFIX) ? NoteMetrics.QUERY_PAGE : NoteMetrics.QUERY_SQL;
+            this.startNanos = startNanos;
+        }
+
+        @Override
+        public void close() {
+            super.close();
+            if (!recorded) {
+                recorded = true;
+                metrics.recordNanos(name, System.nanoTime() - startNanos);
+            }
+        }
+    }
+}
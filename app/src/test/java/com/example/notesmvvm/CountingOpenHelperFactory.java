@@ -0,0 +1,314 @@
+package com.example.notesmvvm;
+
+/*
+*  SupportSQLiteOpenHelper.Factory which opens the database with Room's default (framework SQLite) and counts every query run on it -
+*  set it with NoteDatabaseConfig.setOpenHelperFactory(). Room runs all its reads (LiveData, PagedList DataSources, DAO methods)
+*  through SupportSQLiteDatabase.query(), so count() tells how often a DAO query really ran, whatever number of observers it has.
+*
+*  Everything else is passed through to the framework database unchanged.
+* */
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteTransactionListener;
+import android.os.CancellationSignal;
+import android.util.Pair;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteOpenHelper;
+import androidx.sqlite.db.SupportSQLiteQuery;
+import androidx.sqlite.db.SupportSQLiteStatement;
+import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class CountingOpenHelperFactory implements SupportSQLiteOpenHelper.Factory {
+
+    private final SupportSQLiteOpenHelper.Factory delegate = new FrameworkSQLiteOpenHelperFactory();
+    private final ConcurrentHashMap<String, AtomicInteger> queryCounts = new ConcurrentHashMap<>();
+
+    @Override
+    public SupportSQLiteOpenHelper create(SupportSQLiteOpenHelper.Configuration configuration) {
+        return new CountingOpenHelper(delegate.create(configuration));
+    }
+
+    // Queries run so far whose SQL contains sqlFragment
+    int count(String sqlFragment) {
+        int count = 0;
+        for (Map.Entry<String, AtomicInteger> entry : queryCounts.entrySet()) {
+            if (entry.getKey().contains(sqlFragment)) {
+                count += entry.getValue().get();
+            }
+        }
+        return count;
+    }
+
+    private void countQuery(String sql) {
+        AtomicInteger count = queryCounts.get(sql);
+        if (count == null) {
+            AtomicInteger created = new AtomicInteger();
+            count = queryCounts.putIfAbsent(sql, created);
+            if (count == null) {
+                count = created;
+            }
+        }
+        count.incrementAndGet();
+    }
+
+    private class CountingOpenHelper implements SupportSQLiteOpenHelper {
+
+        private final SupportSQLiteOpenHelper helper;
+        private volatile CountingDatabase database;
+
+        private CountingOpenHelper(SupportSQLiteOpenHelper helper) {
+            this.helper = helper;
+        }
+
+        @Override
+        public String getDatabaseName() {
+            return helper.getDatabaseName();
+        }
+
+        @Override
+        public void setWriteAheadLoggingEnabled(boolean enabled) {
+            helper.setWriteAheadLoggingEnabled(enabled);
+        }
+
+        @Override
+        public SupportSQLiteDatabase getWritableDatabase() {
+            return wrap(helper.getWritableDatabase());
+        }
+
+        @Override
+        public SupportSQLiteDatabase getReadableDatabase() {
+            return wrap(helper.getReadableDatabase());
+        }
+
+        @Override
+        public void close() {
+            helper.close();
+        }
+
+        // Framework helper hands out the same database object every time - so does this one
+        private synchronized SupportSQLiteDatabase wrap(SupportSQLiteDatabase opened) {
+            if (database == null || database.db != opened) {
+                database = new CountingDatabase(opened);
+            }
+            return database;
+        }
+    }
+
+    private class CountingDatabase implements SupportSQLiteDatabase {
+
+        private final SupportSQLiteDatabase db;
+
+        private CountingDatabase(SupportSQLiteDatabase db) {
+            this.db = db;
+        }
+
+        @Override
+        public Cursor query(String query) {
+            countQuery(query);
+            return db.query(query);
+        }
+
+        @Override
+        public Cursor query(String query, Object[] bindArgs) {
+            countQuery(query);
+            return db.query(query, bindArgs);
+        }
+
+        @Override
+        public Cursor query(SupportSQLiteQuery query) {
+            countQuery(query.getSql());
+            return db.query(query);
+        }
+
+        @Override
+        public Cursor query(SupportSQLiteQuery query, CancellationSignal cancellationSignal) {
+            countQuery(query.getSql());
+            return db.query(query, cancellationSignal);
+        }
+
+        @Override
+        public SupportSQLiteStatement compileStatement(String sql) {
+            return db.compileStatement(sql);
+        }
+
+        @Override
+        public void beginTransaction() {
+            db.beginTransaction();
+        }
+
+        @Override
+        public void beginTransactionNonExclusive() {
+            db.beginTransactionNonExclusive();
+        }
+
+        @Override
+        public void beginTransactionWithListener(SQLiteTransactionListener transactionListener) {
+            db.beginTransactionWithListener(transactionListener);
+        }
+
+        @Override
+        public void beginTransactionWithListenerNonExclusive(SQLiteTransactionListener transactionListener) {
+            db.beginTransactionWithListenerNonExclusive(transactionListener);
+        }
+
+        @Override
+        public void endTransaction() {
+            db.endTransaction();
+        }
+
+        @Override
+        public void setTransactionSuccessful() {
+            db.setTransactionSuccessful();
+        }
+
+        @Override
+        public boolean inTransaction() {
+            return db.inTransaction();
+        }
+
+        @Override
+        public boolean isDbLockedByCurrentThread() {
+            return db.isDbLockedByCurrentThread();
+        }
+
+        @Override
+        public boolean yieldIfContendedSafely() {
+            return db.yieldIfContendedSafely();
+        }
+
+        @Override
+        public boolean yieldIfContendedSafely(long sleepAfterYieldDelay) {
+            return db.yieldIfContendedSafely(sleepAfterYieldDelay);
+        }
+
+        @Override
+        public int getVersion() {
+            return db.getVersion();
+        }
+
+        @Override
+        public void setVersion(int version) {
+            db.setVersion(version);
+        }
+
+        @Override
+        public long getMaximumSize() {
+            return db.getMaximumSize();
+        }
+
+        @Override
+        public long setMaximumSize(long numBytes) {
+            return db.setMaximumSize(numBytes);
+        }
+
+        @Override
+        public long getPageSize() {
+            return db.getPageSize();
+        }
+
+        @Override
+        public void setPageSize(long numBytes) {
+            db.setPageSize(numBytes);
+        }
+
+        @Override
+        public long insert(String table, int conflictAlgorithm, ContentValues values) throws SQLException {
+            return db.insert(table, conflictAlgorithm, values);
+        }
+
+        @Override
+        public int delete(String table, String whereClause, Object[] whereArgs) {
+            return db.delete(table, whereClause, whereArgs);
+        }
+
+        @Override
+        public int update(String table, int conflictAlgorithm, ContentValues values, String whereClause, Object[] whereArgs) {
+            return db.update(table, conflictAlgorithm, values, whereClause, whereArgs);
+        }
+
+        @Override
+        public void execSQL(String sql) throws SQLException {
+            db.execSQL(sql);
+        }
+
+        @Override
+        public void execSQL(String sql, Object[] bindArgs) throws SQLException {
+            db.execSQL(sql, bindArgs);
+        }
+
+        @Override
+        public boolean isReadOnly() {
+            return db.isReadOnly();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return db.isOpen();
+        }
+
+        @Override
+        public boolean needUpgrade(int newVersion) {
+            return db.needUpgrade(newVersion);
+        }
+
+        @Override
+        public String getPath() {
+            return db.getPath();
+        }
+
+        @Override
+        public void setLocale(Locale locale) {
+            db.setLocale(locale);
+        }
+
+        @Override
+        public void setMaxSqlCacheSize(int cacheSize) {
+            db.setMaxSqlCacheSize(cacheSize);
+        }
+
+        @Override
+        public void setForeignKeyConstraintsEnabled(boolean enable) {
+            db.setForeignKeyConstraintsEnabled(enable);
+        }
+
+        @Override
+        public boolean enableWriteAheadLogging() {
+            return db.enableWriteAheadLogging();
+        }
+
+        @Override
+        public void disableWriteAheadLogging() {
+            db.disableWriteAheadLogging();
+        }
+
+        @Override
+        public boolean isWriteAheadLoggingEnabled() {
+            return db.isWriteAheadLoggingEnabled();
+        }
+
+        @Override
+        public List<Pair<String, String>> getAttachedDbs() {
+            return db.getAttachedDbs();
+        }
+
+        @Override
+        public boolean isDatabaseIntegrityOk() {
+            return db.isDatabaseIntegrityOk();
+        }
+
+        @Override
+        public void close() throws IOException {
+            db.close();
+        }
+    }
+}
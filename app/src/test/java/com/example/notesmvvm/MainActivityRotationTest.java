@@ -0,0 +1,80 @@
+package com.example.notesmvvm;
+
+/*
+*  Rotation - MainActivity is recreated, but its NoteViewModel comes from the ViewModelStore, so the new activity gets the same
+*  ViewModel and the note list it already loaded. The paged list query (counted by CountingOpenHelperFactory) runs only for the first
+*  activity, never again after a recreation.
+* */
+
+import androidx.lifecycle.ViewModelProvider;
+import androidx.recyclerview.widget.RecyclerView;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.android.controller.ActivityController;
+import org.robolectric.annotation.LooperMode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricTestRunner.class)
+@LooperMode(LooperMode.Mode.PAUSED)
+public class MainActivityRotationTest {
+
+    private static final int RECREATIONS = 2;
+
+    @Rule
+    public NoteRepositoryRule rule = new NoteRepositoryRule();
+
+    private final CountingOpenHelperFactory queries = new CountingOpenHelperFactory();
+
+    public MainActivityRotationTest() {
+        rule.getConfig().setOpenHelperFactory(queries);
+    }
+
+    @Test
+    public void recreationKeepsViewModelAndDoesNotQueryAgain() throws Exception {
+        ActivityController<MainActivity> controller = Robolectric.buildActivity(MainActivity.class).setup();
+        awaitNotesShown(controller.get());
+        NoteViewModel viewModel = getViewModel(controller.get());
+        assertEquals(1, queries.count(NoteQueryCountTest.PAGED_COUNT_SQL));
+
+        for (int i = 0; i < RECREATIONS; i++) {
+            MainActivity previous = controller.get();
+            controller.recreate();
+            assertNotSame(previous, controller.get());
+            awaitNotesShown(controller.get());
+
+            assertSame(viewModel, getViewModel(controller.get()));
+            Thread.sleep(100); // a query started by the recreation would be running now
+            TestNotes.idleMainLooper();
+            assertEquals(1, queries.count(NoteQueryCountTest.PAGED_COUNT_SQL));
+        }
+        assertEquals(0, queries.count(NoteQueryCountTest.ALL_NOTES_SQL)); // the list is paged, the whole table is never read
+        controller.pause().stop().destroy();
+    }
+
+    // ViewModel in the activity's store - the one MainActivity got, ViewModelProvider doesn't create another while it is there
+    private static NoteViewModel getViewModel(MainActivity activity) {
+        return new ViewModelProvider(activity, ViewModelProvider.AndroidViewModelFactory.getInstance(activity.getApplication()))
+                .get(NoteViewModel.class);
+    }
+
+    // Runs the main looper until the sample notes are in the list of the activity
+    private static void awaitNotesShown(MainActivity activity) throws InterruptedException {
+        RecyclerView recyclerView = activity.findViewById(R.id.recycler_view);
+        long deadline = System.currentTimeMillis() + 10000;
+        while (recyclerView.getAdapter().getItemCount() < NoteRepositoryRule.SAMPLE_NOTES) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Notes were not shown");
+            }
+            TestNotes.idleMainLooper();
+            Thread.sleep(5);
+        }
+    }
+}
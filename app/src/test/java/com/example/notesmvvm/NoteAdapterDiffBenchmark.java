@@ -0,0 +1,149 @@
+package com.example.notesmvvm;
+
+/*
+*  DiffUtil time for a list of 20k notes with 2 KB descriptions, of which 1% changed - NoteAdapter.DIFF_CALLBACK (contents compared
+*  by version) against comparing title, description and priority of every note, as the adapter did before.
+*  The new list holds new String objects with same text (like a new query result), so unchanged notes are compared char by char
+*  by the string comparison. Results go to build/benchmark-results/NoteAdapterDiffBenchmark.json.
+*
+*  Run with: ./gradlew testDebugUnitTest -Pbenchmark --tests '*NoteAdapterDiffBenchmark'
+* */
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class NoteAdapterDiffBenchmark {
+
+    private static final int[] SIZES = {20000};
+    private static final int DESCRIPTION_LENGTH = 2048;
+    private static final int CHANGED_PERCENT = 1;
+    private static final int RUNS = 20;
+    private static final int WARM_UP_RUNS = 5;
+
+    // The comparison NoteAdapter used before notes had a version
+    private static final DiffUtil.ItemCallback<Note> TEXT_DIFF_CALLBACK = new DiffUtil.ItemCallback<Note>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Note oldItem, @NonNull Note newItem) {
+            return oldItem.getId() == newItem.getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Note oldItem, @NonNull Note newItem) {
+            return oldItem.getTitle().equals(newItem.getTitle())
+                    && oldItem.getDescription().equals(newItem.getDescription())
+                    && oldItem.getPriority() == newItem.getPriority();
+        }
+    };
+
+    @Test
+    public void diffTime() throws Exception {
+        NoteBenchmarkReport report = new NoteBenchmarkReport("NoteAdapterDiffBenchmark");
+        for (int size : SIZES) {
+            Random random = new Random(size);
+            List<Note> oldNotes = new ArrayList<>(size);
+            List<Note> newNotes = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                Note note = new Note(TestNotes.words(random, 3), description(random), 1 + random.nextInt(10));
+                note.setId(i + 1);
+                note.setVersion(1);
+                oldNotes.add(note);
+
+                boolean changed = random.nextInt(100) < CHANGED_PERCENT;
+                Note copy = new Note(new String(note.getTitle() + (changed ? " (edited)" : "")), new String(note.getDescription()),
+                        note.getPriority());
+                copy.setId(note.getId());
+                copy.setVersion(changed ? 2 : 1);
+                newNotes.add(copy);
+            }
+            List<NoteSummary> oldSummaries = toSummaries(oldNotes);
+            List<NoteSummary> newSummaries = toSummaries(newNotes);
+
+            for (int i = 0; i < WARM_UP_RUNS + RUNS; i++) {
+                long startNanos = System.nanoTime();
+                DiffUtil.calculateDiff(new ListCallback<>(oldSummaries, newSummaries, NoteAdapter.DIFF_CALLBACK));
+                long versionNanos = System.nanoTime() - startNanos;
+
+                startNanos = System.nanoTime();
+                DiffUtil.calculateDiff(new ListCallback<>(oldNotes, newNotes, TEXT_DIFF_CALLBACK));
+                long textNanos = System.nanoTime() - startNanos;
+
+                if (i >= WARM_UP_RUNS) {
+                    report.recordNanos("diff.version." + size, versionNanos);
+                    report.recordNanos("diff.text." + size, textNanos);
+                }
+            }
+            long versionMedian = report.get("diff.version." + size).getValueAtPercentile(50);
+            long textMedian = report.get("diff.text." + size).getValueAtPercentile(50);
+            assertTrue("Version " + versionMedian + " ns, text " + textMedian + " ns", versionMedian < textMedian);
+        }
+        report.write();
+    }
+
+    private static String description(Random random) {
+        StringBuilder description = new StringBuilder(DESCRIPTION_LENGTH + 16);
+        while (description.length() < DESCRIPTION_LENGTH) {
+            description.append(TestNotes.WORDS[random.nextInt(TestNotes.WORDS.length)]).append(' ');
+        }
+        description.setLength(DESCRIPTION_LENGTH);
+        return description.toString();
+    }
+
+    private static List<NoteSummary> toSummaries(List<Note> notes) {
+        List<NoteSummary> summaries = new ArrayList<>(notes.size());
+        for (Note note : notes) {
+            summaries.add(new NoteSummary(note.getId(), note.getTitle(), note.getPriority(),
+                    note.getDescription().substring(0, NoteSummary.PREVIEW_LENGTH), note.getVersion()));
+        }
+        return summaries;
+    }
+
+    // Same calls PagedListAdapter's differ makes, on two plain lists
+    private static class ListCallback<T> extends DiffUtil.Callback {
+
+        private final List<T> oldList;
+        private final List<T> newList;
+        private final DiffUtil.ItemCallback<T> itemCallback;
+
+        ListCallback(List<T> oldList, List<T> newList, DiffUtil.ItemCallback<T> itemCallback) {
+            this.oldList = oldList;
+            this.newList = newList;
+            this.itemCallback = itemCallback;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return oldList.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return newList.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return itemCallback.areItemsTheSame(oldList.get(oldItemPosition), newList.get(newItemPosition));
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            return itemCallback.areContentsTheSame(oldList.get(oldItemPosition), newList.get(newItemPosition));
+        }
+
+        @Override
+        public Object getChangePayload(int oldItemPosition, int newItemPosition) {
+            return itemCallback.getChangePayload(oldList.get(oldItemPosition), newList.get(newItemPosition));
+        }
+    }
+}
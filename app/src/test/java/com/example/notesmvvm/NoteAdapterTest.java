@@ -0,0 +1,54 @@
+package com.example.notesmvvm;
+
+/*
+*  NoteAdapter.DIFF_CALLBACK - contents are compared by version only, and the payload of a changed item names exactly the fields
+*  which changed (also when title or preview is null).
+* */
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class NoteAdapterTest {
+
+    @Test
+    public void contentsAreComparedByVersion() {
+        NoteSummary note = new NoteSummary(1, "Title", 5, "Preview", 10);
+
+        assertTrue(NoteAdapter.DIFF_CALLBACK.areItemsTheSame(note, new NoteSummary(1, "Other", 1, "Other", 11)));
+        assertFalse(NoteAdapter.DIFF_CALLBACK.areItemsTheSame(note, new NoteSummary(2, "Title", 5, "Preview", 10)));
+        assertTrue(NoteAdapter.DIFF_CALLBACK.areContentsTheSame(note, new NoteSummary(1, "Title", 5, "Preview", 10)));
+        assertFalse(NoteAdapter.DIFF_CALLBACK.areContentsTheSame(note, new NoteSummary(1, "Title", 5, "Preview", 11)));
+    }
+
+    @Test
+    public void payloadHasOnlyChangedFields() {
+        NoteSummary note = new NoteSummary(1, "Title", 5, "Preview", 10);
+
+        assertEquals(NoteAdapter.PAYLOAD_TITLE, payload(note, new NoteSummary(1, "New title", 5, "Preview", 11)));
+        assertEquals(NoteAdapter.PAYLOAD_DESCRIPTION, payload(note, new NoteSummary(1, "Title", 5, "New preview", 11)));
+        assertEquals(NoteAdapter.PAYLOAD_PRIORITY, payload(note, new NoteSummary(1, "Title", 1, "Preview", 11)));
+        assertEquals(NoteAdapter.PAYLOAD_TITLE | NoteAdapter.PAYLOAD_PRIORITY,
+                payload(note, new NoteSummary(1, "New title", 1, "Preview", 11)));
+    }
+
+    @Test
+    public void payloadHandlesNullTitleAndPreview() {
+        NoteSummary empty = new NoteSummary(1, null, 5, null, 10);
+
+        assertEquals(0, payload(empty, new NoteSummary(1, null, 5, null, 11)));
+        assertEquals(NoteAdapter.PAYLOAD_TITLE | NoteAdapter.PAYLOAD_DESCRIPTION,
+                payload(empty, new NoteSummary(1, "Title", 5, "Preview", 11)));
+        assertEquals(NoteAdapter.PAYLOAD_TITLE | NoteAdapter.PAYLOAD_DESCRIPTION,
+                payload(new NoteSummary(1, "Title", 5, "Preview", 10), new NoteSummary(1, null, 5, null, 11)));
+    }
+
+    private static int payload(NoteSummary oldItem, NoteSummary newItem) {
+        return (Integer) NoteAdapter.DIFF_CALLBACK.getChangePayload(oldItem, newItem);
+    }
+}
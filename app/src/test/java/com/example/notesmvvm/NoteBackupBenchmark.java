@@ -0,0 +1,198 @@
+package com.example.notesmvvm;
+
+/*
+*  Export and import of a large backup (NoteRepository.exportNotes()/importNotes(File, ...)) - NOTES notes, about 90 MB of text,
+*  every other one long enough to be stored compressed. Both must not hold much more than one page/chunk of notes in memory: heap is
+*  sampled after a GC every few ms while they run, and its increase must stay below MAX_HEAP_INCREASE_BYTES.
+*  Throughput, file size and heap increase go to build/benchmark-results/NoteBackupBenchmark.json.
+*
+*  Run with: ./gradlew testDebugUnitTest -Pbenchmark --tests '*NoteBackupBenchmark'
+* */
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.LooperMode;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@LooperMode(LooperMode.Mode.PAUSED)
+public class NoteBackupBenchmark {
+
+    private static final int NOTES = 20000;
+    private static final int LONG_DESCRIPTION_WORDS = 1200; // about 8 KB - stored compressed
+    private static final int SHORT_DESCRIPTION_WORDS = 150;
+    // Live heap an export or import may add - a page/chunk of notes and the buffers, far less than all NOTES notes
+    private static final long MAX_HEAP_INCREASE_BYTES = 32 * 1024 * 1024;
+
+    @Rule
+    public NoteRepositoryRule rule = new NoteRepositoryRule();
+
+    private File backup;
+
+    @Before
+    public void setUp() {
+        backup = new File(rule.getApplication().getCacheDir(), "notes.backup");
+        NoteBackup.Checkpoint.delete(backup);
+        backup.delete();
+    }
+
+    @After
+    public void tearDown() {
+        NoteBackup.Checkpoint.delete(backup);
+        backup.delete();
+    }
+
+    @Test
+    public void exportAndImportMemoryAndThroughput() throws Exception {
+        NoteBenchmarkReport report = new NoteBenchmarkReport("NoteBackupBenchmark");
+        TestNotes.AwaitedWrite write = new TestNotes.AwaitedWrite(1);
+        rule.getRepository().importNotes(new GeneratedNotes(NOTES), write); // generated while they are inserted, never all at once
+        write.await();
+        assertTrue(write.success);
+        int expectedNotes = NoteRepositoryRule.SAMPLE_NOTES + NOTES;
+
+        HeapSampler exportHeap = new HeapSampler();
+        long startNanos = System.nanoTime();
+        assertEquals(expectedNotes, exportNotes());
+        long exportNanos = System.nanoTime() - startNanos;
+        long exportHeapIncrease = exportHeap.stop();
+
+        HeapSampler importHeap = new HeapSampler();
+        startNanos = System.nanoTime();
+        assertEquals(expectedNotes, importNotes());
+        long importNanos = System.nanoTime() - startNanos;
+        long importHeapIncrease = importHeap.stop();
+
+        report.recordValue("backup.fileBytes", backup.length());
+        report.recordNanos("backup.export", exportNanos);
+        report.recordRate("backup.export.notesPerSecond", expectedNotes, exportNanos);
+        report.recordValue("backup.export.heapIncreaseBytes", exportHeapIncrease);
+        report.recordNanos("backup.import", importNanos);
+        report.recordRate("backup.import.notesPerSecond", expectedNotes, importNanos);
+        report.recordValue("backup.import.heapIncreaseBytes", importHeapIncrease);
+        report.write();
+
+        assertTrue("Export added " + exportHeapIncrease + " bytes of heap", exportHeapIncrease < MAX_HEAP_INCREASE_BYTES);
+        assertTrue("Import added " + importHeapIncrease + " bytes of heap", importHeapIncrease < MAX_HEAP_INCREASE_BYTES);
+        assertEquals(2 * expectedNotes, rule.countNotes()); // the import added every note again, with new ids
+    }
+
+    private int exportNotes() throws InterruptedException {
+        BackupResult result = new BackupResult();
+        rule.getRepository().exportNotes(backup, result);
+        return result.await();
+    }
+
+    private int importNotes() throws InterruptedException {
+        BackupResult result = new BackupResult();
+        rule.getRepository().importNotes(backup, result);
+        return result.await();
+    }
+
+    // Number of notes, -1 if the export/import failed
+    private static class BackupResult implements NoteRepository.BackupCallback {
+
+        private final AtomicInteger result = new AtomicInteger();
+        private final CountDownLatch latch = new CountDownLatch(1);
+
+        @Override
+        public void onComplete(boolean success, int noteCount) {
+            result.set(success ? noteCount : -1);
+            latch.countDown();
+        }
+
+        int await() throws InterruptedException {
+            TestNotes.await(latch);
+            return result.get();
+        }
+    }
+
+    // Notes created one at a time while they are iterated - every other one long enough to be compressed
+    private static class GeneratedNotes implements Iterable<Note> {
+
+        private final int count;
+
+        GeneratedNotes(int count) {
+            this.count = count;
+        }
+
+        @Override
+        public Iterator<Note> iterator() {
+            final Random random = new Random(count);
+            return new Iterator<Note>() {
+                private int created;
+
+                @Override
+                public boolean hasNext() {
+                    return created < count;
+                }
+
+                @Override
+                public Note next() {
+                    int words = created++ % 2 == 0 ? LONG_DESCRIPTION_WORDS : SHORT_DESCRIPTION_WORDS;
+                    return new Note(TestNotes.words(random, 3), TestNotes.words(random, words), 1 + random.nextInt(10));
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+    }
+
+    // Largest live heap (used heap right after a GC) while it runs, minus the live heap when it was started
+    private static class HeapSampler {
+
+        private final AtomicBoolean running = new AtomicBoolean(true);
+        private final AtomicLong peak = new AtomicLong();
+        private final long baseline;
+        private final Thread thread;
+
+        HeapSampler() {
+            baseline = liveHeapBytes();
+            thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    while (running.get()) {
+                        long used = liveHeapBytes();
+                        if (used > peak.get()) {
+                            peak.set(used);
+                        }
+                        try {
+                            Thread.sleep(10);
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                }
+            });
+            thread.start();
+        }
+
+        long stop() throws InterruptedException {
+            running.set(false);
+            thread.join();
+            return Math.max(0, peak.get() - baseline);
+        }
+
+        private static long liveHeapBytes() {
+            System.gc();
+            return TestNotes.usedHeapBytes();
+        }
+    }
+}
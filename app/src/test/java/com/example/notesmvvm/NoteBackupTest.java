@@ -0,0 +1,241 @@
+package com.example.notesmvvm;
+
+/*
+*  Backups (NoteRepository.exportNotes()/importNotes(File, ...)/restoreNotes(), NoteBackup) - export with full descriptions of
+*  compressed notes, import next to existing notes (new ids) and restore by id, resuming an interrupted import from its checkpoint,
+*  and rejecting a truncated file. (Memory and throughput of a large backup are measured by NoteBackupBenchmark)
+* */
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.LooperMode;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricTestRunner.class)
+@LooperMode(LooperMode.Mode.PAUSED)
+public class NoteBackupTest {
+
+    private static final int LONG_DESCRIPTION_WORDS = 1200; // about 8 KB - stored compressed
+
+    @Rule
+    public NoteRepositoryRule rule = new NoteRepositoryRule();
+
+    private File backup;
+
+    @Before
+    public void setUp() {
+        backup = new File(rule.getApplication().getCacheDir(), "notes.backup");
+        deleteBackup();
+    }
+
+    @After
+    public void tearDown() {
+        deleteBackup();
+    }
+
+    // A backup of another device has ids which are used here too - its notes are added as new notes, the notes here stay as they are
+    @Test
+    public void importAddsNotesAndKeepsLocalNotes() throws Exception {
+        String longDescription = TestNotes.words(new Random(1), LONG_DESCRIPTION_WORDS);
+        TestNotes.AwaitedWrite write = new TestNotes.AwaitedWrite(1);
+        rule.getRepository().insert(new Note("Long", longDescription, 3), write);
+        write.await();
+
+        int localNotes = NoteRepositoryRule.SAMPLE_NOTES + 1;
+        assertEquals(localNotes, exportNotes());
+        NoteBackup.Reader reader = new NoteBackup.Reader(backup, NoteBackup.HEADER_SIZE, 0);
+        try {
+            Note note;
+            Note last = null;
+            while ((note = reader.read()) != null) {
+                assertTrue(last == null || note.getId() > last.getId()); // id order
+                last = note;
+            }
+            assertNotNull(last);
+            assertEquals("Long", last.getTitle());
+            assertEquals(longDescription, last.getDescription()); // not the stored prefix
+        } finally {
+            reader.close();
+        }
+
+        writeBackup(1, 3); // ids 1..3, same as the sample notes
+        assertEquals(3, importNotes());
+        assertEquals(localNotes + 3, rule.countNotes());
+        for (int id = 1; id <= NoteRepositoryRule.SAMPLE_NOTES; id++) {
+            assertEquals("Title " + id, getNoteById(id).getTitle()); // sample notes of NoteDatabase, not overwritten
+        }
+        assertEquals("Backup 1", getNoteById(localNotes + 1).getTitle());
+    }
+
+    // Restore keeps the ids of the backup - only into an empty database, so it fails while any note is here
+    @Test
+    public void restoreKeepsIdsOnlyIntoEmptyDatabase() throws Exception {
+        writeBackup(101, 5);
+        assertEquals(-1, restoreNotes());
+        assertEquals(NoteRepositoryRule.SAMPLE_NOTES, rule.countNotes());
+        assertNull(getNoteById(101));
+
+        rule.query(new Callable<Void>() {
+            @Override
+            public Void call() {
+                rule.getDatabase().getOpenHelper().getWritableDatabase().execSQL("DELETE FROM note_table");
+                return null;
+            }
+        });
+        assertEquals(5, restoreNotes());
+        assertEquals(5, rule.countNotes());
+        assertEquals("Backup 101", getNoteById(101).getTitle());
+        assertEquals("Backup 105", getNoteById(105).getTitle());
+    }
+
+    // Import interrupted after 1000 notes - the next import continues at the checkpoint instead of the start
+    @Test
+    public void importResumesFromCheckpoint() throws Exception {
+        writeBackup(1001, 1500);
+        NoteBackup.Reader reader = new NoteBackup.Reader(backup, NoteBackup.HEADER_SIZE, 0);
+        try {
+            for (int i = 0; i < 1000; i++) {
+                reader.read();
+            }
+            NoteBackup.Checkpoint.write(backup, reader.getPosition(), reader.getNoteCount());
+        } finally {
+            reader.close();
+        }
+
+        assertEquals(1500, importNotes());
+        assertEquals(NoteRepositoryRule.SAMPLE_NOTES + 500, rule.countNotes()); // notes before the checkpoint not imported again
+        assertEquals("Backup 2001", getNoteById(NoteRepositoryRule.SAMPLE_NOTES + 1).getTitle()); // new ids, after the sample notes
+        assertEquals("Backup 2500", getNoteById(NoteRepositoryRule.SAMPLE_NOTES + 500).getTitle());
+        assertEquals(0, NoteBackup.Checkpoint.read(backup).noteCount); // done - checkpoint deleted
+    }
+
+    // A file cut off (copy interrupted) fails the import before any note is imported, the complete file then imports everything
+    @Test
+    public void truncatedBackupIsRejected() throws Exception {
+        writeBackup(1001, 1200);
+        File complete = new File(backup.getPath() + ".complete");
+        assertTrue(backup.renameTo(complete));
+        copy(complete, backup, complete.length() - 6); // end marker and note count partly missing
+
+        assertEquals(-1, importNotes());
+        assertEquals(NoteRepositoryRule.SAMPLE_NOTES, rule.countNotes());
+        try {
+            NoteBackup.Reader reader = new NoteBackup.Reader(backup, NoteBackup.HEADER_SIZE, 0);
+            try {
+                while (reader.read() != null) {
+                }
+            } finally {
+                reader.close();
+            }
+            fail("Truncated backup was read to its end");
+        } catch (IOException expected) {
+        }
+
+        copy(complete, backup, complete.length());
+        assertTrue(complete.delete());
+        assertEquals(1200, importNotes());
+        assertEquals(NoteRepositoryRule.SAMPLE_NOTES + 1200, rule.countNotes());
+    }
+
+    // Number of exported notes, -1 if the export failed
+    private int exportNotes() throws InterruptedException {
+        BackupResult result = new BackupResult();
+        rule.getRepository().exportNotes(backup, result);
+        return result.await();
+    }
+
+    // Number of notes in the backup, -1 if the import failed
+    private int importNotes() throws InterruptedException {
+        BackupResult result = new BackupResult();
+        rule.getRepository().importNotes(backup, result);
+        return result.await();
+    }
+
+    private int restoreNotes() throws InterruptedException {
+        BackupResult result = new BackupResult();
+        rule.getRepository().restoreNotes(backup, result);
+        return result.await();
+    }
+
+    private Note getNoteById(final int id) throws Exception {
+        return rule.query(new Callable<Note>() {
+            @Override
+            public Note call() {
+                return rule.getDatabase().noteDao().getNoteById(id);
+            }
+        });
+    }
+
+    // count notes with ids (and titles "Backup <id>") from firstId on, written by NoteBackup.Writer like an export of another device
+    private void writeBackup(int firstId, int count) throws IOException {
+        NoteBackup.Writer writer = new NoteBackup.Writer(backup);
+        try {
+            List<Note> notes = TestNotes.createNotes(count, 20, count);
+            for (int i = 0; i < count; i++) {
+                Note generated = notes.get(i);
+                Note note = new Note("Backup " + (firstId + i), generated.getDescription(), generated.getPriority());
+                note.setId(firstId + i);
+                writer.write(note);
+            }
+            writer.finish();
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static void copy(File from, File to, long length) throws IOException {
+        FileInputStream input = new FileInputStream(from);
+        try {
+            FileOutputStream output = new FileOutputStream(to);
+            try {
+                input.getChannel().transferTo(0, length, output.getChannel());
+            } finally {
+                output.close();
+            }
+        } finally {
+            input.close();
+        }
+    }
+
+    private void deleteBackup() {
+        NoteBackup.Checkpoint.delete(backup);
+        backup.delete();
+    }
+
+    // Callback of an export, import or restore - the number of notes, -1 if it failed
+    private static class BackupResult implements NoteRepository.BackupCallback {
+
+        private final AtomicInteger result = new AtomicInteger();
+        private final CountDownLatch latch = new CountDownLatch(1);
+
+        @Override
+        public void onComplete(boolean success, int noteCount) {
+            result.set(success ? noteCount : -1);
+            latch.countDown();
+        }
+
+        int await() throws InterruptedException {
+            TestNotes.await(latch);
+            return result.get();
+        }
+    }
+}
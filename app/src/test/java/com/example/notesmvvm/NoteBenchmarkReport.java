@@ -0,0 +1,62 @@
+package com.example.notesmvvm;
+
+/*
+*  Results of one JVM benchmark (Robolectric + Room on the host's SQLite).
+*
+*  Every measured operation is recorded into an InMemoryNoteMetrics under its own name (e.g. "dao.getNoteById.100000") and written by
+*  NoteMetricsExporter.writeJsonTo() to app/build/benchmark-results/<benchmark>.json - same format as the metrics the app writes on a
+*  device (MainActivity), so the same scripts can compare runs and catch regressions.
+*  Numbers are for comparing builds on the same machine - a phone's SQLite and flash are much slower than a desktop's.
+* */
+
+import java.io.File;
+import java.io.IOException;
+
+class NoteBenchmarkReport {
+
+    private static final String OUTPUT_DIRECTORY = "build/benchmark-results"; // relative to app/, where Gradle runs unit tests
+
+    private final String name;
+    private final InMemoryNoteMetrics metrics = new InMemoryNoteMetrics();
+
+    NoteBenchmarkReport(String name) {
+        this.name = name;
+    }
+
+    // Runs the operation once, records and returns its duration in ns
+    long time(String metric, Runnable operation) {
+        long startNanos = System.nanoTime();
+        operation.run();
+        long nanos = System.nanoTime() - startNanos;
+        metrics.recordNanos(metric, nanos);
+        return nanos;
+    }
+
+    void recordNanos(String metric, long nanos) {
+        metrics.recordNanos(metric, nanos);
+    }
+
+    void recordValue(String metric, long value) {
+        metrics.recordValue(metric, value);
+    }
+
+    // Rows (or notes, bytes...) per second of an operation which took nanos
+    void recordRate(String metric, long count, long nanos) {
+        metrics.recordValue(metric, count * 1000000000L / Math.max(1, nanos));
+    }
+
+    LogLinearHistogram get(String metric) {
+        return metrics.getHistograms().get(metric);
+    }
+
+    File write() throws IOException {
+        File directory = new File(OUTPUT_DIRECTORY);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can't create " + directory.getAbsolutePath());
+        }
+        File file = new File(directory, name + ".json");
+        NoteMetricsExporter.writeJsonTo(metrics, file);
+        NoteMetricsExporter.toLogcat(metrics); // Robolectric prints logcat to stdout with -Drobolectric.logging=stdout
+        return file;
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.notesmvvm;
+
+/*
+*  Stale reads of NoteCache while writes commit at the same time - once a write is committed (its onCommitted() invalidated the
+*  note), no read may return the version from before it, even a read which loaded that version from the database while the write
+*  was running and puts it into the cache only afterwards.
+*
+*  First on NoteCache alone (a reader thread racing a writer thread), then end to end through NoteRepository.update() and getNote().
+* */
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.LooperMode;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@LooperMode(LooperMode.Mode.PAUSED)
+public class NoteCacheConcurrencyTest {
+
+    private static final int NOTE_ID = 1;
+    private static final int CACHE_WRITES = 20000;
+    private static final int REPOSITORY_WRITES = 200;
+    private static final int READS_PER_WRITE = 5;
+
+    @Rule
+    public NoteRepositoryRule rule = new NoteRepositoryRule();
+
+    @Test
+    public void cacheNeverKeepsVersionOlderThanLastInvalidation() throws Exception {
+        final NoteCache cache = new NoteCache(1024 * 1024);
+        final AtomicReference<Note> database = new AtomicReference<>(version(0)); // what a read from SQLite would return
+        final AtomicBoolean writing = new AtomicBoolean(true);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        // Reader - like NoteRepository.getNote() on a cache miss: generation first, then the load, then putIfUnchanged()
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (writing.get()) {
+                        if (cache.get(NOTE_ID) == null) {
+                            long generation = cache.getGeneration();
+                            Note loaded = database.get();
+                            cache.putIfUnchanged(loaded, generation);
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.set(e);
+                }
+            }
+        });
+        reader.start();
+
+        // Writer - like a committed write: new version is visible in the database, then onCommitted() invalidates the cache
+        for (int version = 1; version <= CACHE_WRITES; version++) {
+            database.set(version(version));
+            cache.invalidate(NOTE_ID);
+            Note cached = cache.get(NOTE_ID);
+            if (cached != null) {
+                assertTrue("Cache returned version " + cached.getVersion() + " after version " + version + " was committed",
+                        cached.getVersion() >= version);
+            }
+        }
+        writing.set(false);
+        reader.join();
+        assertNull(failure.get());
+    }
+
+    @Test
+    public void getNoteAfterCommittedUpdateReturnsThatUpdate() throws Exception {
+        NoteRepository repository = rule.getRepository();
+        for (int version = 1; version <= REPOSITORY_WRITES; version++) {
+            Note note = new Note("Title " + version, "Description " + version, 5);
+            note.setId(NOTE_ID);
+            TestNotes.AwaitedWrite write = new TestNotes.AwaitedWrite(1);
+            repository.update(note, write);
+
+            // Reads while the write is queued or committing - they may see either version, and may fill the cache
+            CountDownLatch reads = new CountDownLatch(READS_PER_WRITE);
+            for (int i = 0; i < READS_PER_WRITE; i++) {
+                getNote(repository, reads);
+            }
+            write.await();
+            assertTrue(write.success);
+            TestNotes.await(reads);
+
+            // Committed - from now on only the new version (read twice, the second one comes from the cache)
+            for (int i = 0; i < 2; i++) {
+                Note read = getNote(repository);
+                assertNotNull(read);
+                assertEquals("Title " + version, read.getTitle());
+                assertEquals("Description " + version, read.getDescription());
+            }
+        }
+        assertTrue(repository.getNoteCache().hitCount() > 0);
+    }
+
+    private static Note version(int version) {
+        Note note = new Note("Title " + version, "Description " + version, 5);
+        note.setId(NOTE_ID);
+        note.setVersion(version);
+        return note;
+    }
+
+    private static void getNote(NoteRepository repository, final CountDownLatch latch) {
+        repository.getNote(NOTE_ID, new NoteRepository.NoteCallback() {
+            @Override
+            public void onResult(Note note) {
+                latch.countDown();
+            }
+        });
+    }
+
+    private static Note getNote(NoteRepository repository) throws InterruptedException {
+        final AtomicReference<Note> result = new AtomicReference<>();
+        final CountDownLatch latch = new CountDownLatch(1);
+        repository.getNote(NOTE_ID, new NoteRepository.NoteCallback() {
+            @Override
+            public void onResult(Note note) {
+                result.set(note);
+                latch.countDown();
+            }
+        });
+        TestNotes.await(latch);
+        return result.get();
+    }
+}
@@ -0,0 +1,231 @@
+package com.example.notesmvvm;
+
+/*
+*  Long descriptions stored compressed (NoteDescriptionCodec, through NoteRepository) against the same notes stored as plain text -
+*  database file size, write latency of one note, read latency of one full note and of the first page of the note list.
+*  The corpus imitates what users paste: logcat output and meeting transcripts, 8 KB to 64 KB each (below NoteBlobStore.SPILL_THRESHOLD,
+*  so every long description ends up in description_blob). Results go to build/benchmark-results/NoteCompressionBenchmark.json.
+*
+*  Run with: ./gradlew testDebugUnitTest -Pbenchmark --tests '*NoteCompressionBenchmark'
+* */
+
+import android.database.Cursor;
+
+import androidx.annotation.NonNull;
+import androidx.paging.PagedList;
+import androidx.room.Room;
+import androidx.room.RoomDatabase;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.LooperMode;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@LooperMode(LooperMode.Mode.PAUSED)
+public class NoteCompressionBenchmark {
+
+    private static final int NOTES = 500;
+    private static final int MIN_DESCRIPTION_LENGTH = 8 * 1024;
+    private static final int MAX_DESCRIPTION_LENGTH = 64 * 1024;
+    private static final int READS = 200;
+    private static final String PLAIN_DATABASE_NAME = "note_database_plain";
+
+    private static final String[] LOG_TAGS = {"ActivityManager", "NotesRepository", "OkHttp", "SQLiteLog", "Choreographer", "WifiService"};
+    private static final String[] SPEAKERS = {"Anna", "Ben", "Chris", "Dana", "Eli"};
+
+    @Rule
+    public NoteRepositoryRule rule = new NoteRepositoryRule();
+
+    @Test
+    public void compressedAgainstPlainDescriptions() throws Exception {
+        NoteBenchmarkReport report = new NoteBenchmarkReport("NoteCompressionBenchmark");
+        List<Note> corpus = createCorpus(new Random(NOTES));
+        long corpusChars = 0;
+        for (Note note : corpus) {
+            corpusChars += note.getDescription().length();
+        }
+        report.recordValue("corpus.chars", corpusChars);
+
+        // Compressed - every note through NoteRepository, one write at a time (latency of a single save)
+        NoteRepository repository = rule.getRepository();
+        for (Note note : corpus) {
+            TestNotes.AwaitedWrite write = new TestNotes.AwaitedWrite(1);
+            long startNanos = System.nanoTime();
+            repository.insert(copy(note), write);
+            write.await();
+            report.recordNanos("compressed.write", System.nanoTime() - startNanos);
+            assertTrue(write.success);
+        }
+        final List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < NOTES; i++) {
+            ids.add(NoteRepositoryRule.SAMPLE_NOTES + 1 + i);
+        }
+        Random random = new Random(READS);
+        for (int i = 0; i < READS; i++) {
+            repository.getNoteCache().invalidateAll(); // from the database every time
+            int id = ids.get(random.nextInt(NOTES));
+            long startNanos = System.nanoTime();
+            Note note = getNote(repository, id);
+            report.recordNanos("compressed.readNote", System.nanoTime() - startNanos);
+            assertEquals(corpus.get(id - NoteRepositoryRule.SAMPLE_NOTES - 1).getDescription(), note.getDescription());
+        }
+        for (int i = 0; i < 20; i++) {
+            final NoteDao noteDao = rule.getDatabase().noteDao();
+            long nanos = rule.query(new Callable<Long>() {
+                @Override
+                public Long call() {
+                    long startNanos = System.nanoTime();
+                    PagedList<NoteSummary> page = TestNotes.loadFirstPage(noteDao);
+                    long nanos = System.nanoTime() - startNanos;
+                    assertTrue(page.size() > 0);
+                    return nanos;
+                }
+            });
+            report.recordNanos("compressed.firstPage", nanos);
+        }
+        rule.query(new Callable<Void>() {
+            @Override
+            public Void call() {
+                checkpoint(rule.getDatabase().getOpenHelper().getWritableDatabase());
+                return null;
+            }
+        });
+        long compressedBytes = fileBytes(NoteDatabase.DATABASE_NAME);
+        report.recordValue("compressed.fileBytes", compressedBytes);
+
+        // Plain - same notes written by the DAO as they are, description only in the TEXT column
+        rule.getApplication().deleteDatabase(PLAIN_DATABASE_NAME);
+        final NoteDatabase plainDatabase = Room.databaseBuilder(rule.getApplication(), NoteDatabase.class, PLAIN_DATABASE_NAME)
+                .allowMainThreadQueries()
+                .addCallback(new RoomDatabase.Callback() {
+                    @Override
+                    public void onCreate(@NonNull SupportSQLiteDatabase db) {
+                        NoteDatabase.createTriggersAndState(db);
+                    }
+                })
+                .build();
+        long plainBytes;
+        try {
+            List<Integer> plainIds = new ArrayList<>();
+            for (final Note note : corpus) {
+                long startNanos = System.nanoTime();
+                int id = plainDatabase.runInTransaction(new Callable<Integer>() {
+                    @Override
+                    public Integer call() {
+                        int id = (int) plainDatabase.noteDao().Insert(copy(note));
+                        plainDatabase.noteFtsDao().Insert(new NoteFts(id, note.getTitle(), note.getDescription()));
+                        return id;
+                    }
+                });
+                report.recordNanos("plain.write", System.nanoTime() - startNanos);
+                plainIds.add(id);
+            }
+            for (int i = 0; i < READS; i++) {
+                int id = plainIds.get(random.nextInt(NOTES));
+                long startNanos = System.nanoTime();
+                plainDatabase.noteDao().getNoteById(id);
+                report.recordNanos("plain.readNote", System.nanoTime() - startNanos);
+            }
+            for (int i = 0; i < 20; i++) {
+                long startNanos = System.nanoTime();
+                PagedList<NoteSummary> page = TestNotes.loadFirstPage(plainDatabase.noteDao());
+                report.recordNanos("plain.firstPage", System.nanoTime() - startNanos);
+                assertTrue(page.size() > 0);
+            }
+            checkpoint(plainDatabase.getOpenHelper().getWritableDatabase());
+            plainBytes = fileBytes(PLAIN_DATABASE_NAME);
+            report.recordValue("plain.fileBytes", plainBytes);
+        } finally {
+            plainDatabase.close();
+            rule.getApplication().deleteDatabase(PLAIN_DATABASE_NAME);
+        }
+
+        report.write();
+        assertTrue("Compressed " + compressedBytes + " bytes, plain " + plainBytes + " bytes", compressedBytes < plainBytes);
+    }
+
+    private static List<Note> createCorpus(Random random) {
+        List<Note> notes = new ArrayList<>(NOTES);
+        for (int i = 0; i < NOTES; i++) {
+            int length = MIN_DESCRIPTION_LENGTH + random.nextInt(MAX_DESCRIPTION_LENGTH - MIN_DESCRIPTION_LENGTH);
+            boolean log = i % 2 == 0;
+            String description = log ? logcat(random, length) : transcript(random, length);
+            notes.add(new Note((log ? "Crash log " : "Meeting notes ") + i, description, 1 + random.nextInt(10)));
+        }
+        return notes;
+    }
+
+    private static String logcat(Random random, int length) {
+        StringBuilder text = new StringBuilder(length + 256);
+        long millis = 1700000000000L + random.nextInt(1000000);
+        while (text.length() < length) {
+            millis += random.nextInt(500);
+            text.append(String.format("%tF %<tT.%03d %5d %5d %s %s: ", millis, millis % 1000, 1000 + random.nextInt(9000),
+                    1000 + random.nextInt(9000), "VDIWE".charAt(random.nextInt(5)), LOG_TAGS[random.nextInt(LOG_TAGS.length)]));
+            text.append(TestNotes.words(random, 4 + random.nextInt(12))).append('\n');
+        }
+        text.setLength(length);
+        return text.toString();
+    }
+
+    private static String transcript(Random random, int length) {
+        StringBuilder text = new StringBuilder(length + 256);
+        int seconds = 0;
+        while (text.length() < length) {
+            seconds += 5 + random.nextInt(60);
+            text.append(String.format("[%02d:%02d:%02d] %s: ", seconds / 3600, seconds / 60 % 60, seconds % 60,
+                    SPEAKERS[random.nextInt(SPEAKERS.length)]));
+            text.append(TestNotes.words(random, 8 + random.nextInt(30))).append(".\n");
+        }
+        text.setLength(length);
+        return text.toString();
+    }
+
+    // New Note with same content - the repository and the DAO set id/version on the notes they are given
+    private static Note copy(Note note) {
+        return new Note(note.getTitle(), note.getDescription(), note.getPriority());
+    }
+
+    private static Note getNote(NoteRepository repository, int id) throws InterruptedException {
+        final AtomicReference<Note> result = new AtomicReference<>();
+        final CountDownLatch latch = new CountDownLatch(1);
+        repository.getNote(id, new NoteRepository.NoteCallback() {
+            @Override
+            public void onResult(Note note) {
+                result.set(note);
+                latch.countDown();
+            }
+        });
+        TestNotes.await(latch);
+        return result.get();
+    }
+
+    // Moves everything from the WAL into the database file, so the file size is the size of the data
+    private static void checkpoint(SupportSQLiteDatabase db) {
+        Cursor cursor = db.query("PRAGMA wal_checkpoint(TRUNCATE)");
+        try {
+            cursor.moveToFirst();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private long fileBytes(String databaseName) {
+        File databaseFile = rule.getApplication().getDatabasePath(databaseName);
+        return databaseFile.length() + new File(databaseFile.getPath() + "-wal").length();
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.notesmvvm;
+
+/*
+*  Reads on the query pool while NoteRepository.importNotes() writes 100k notes on the writer thread - latency of getNoteById() and
+*  of the first page of the note list, from submitting the read to the query executor until its result, with no write running
+*  (read.idle) and during the import (read.duringImport). Results go to build/benchmark-results/NoteConcurrentReadBenchmark.json.
+*
+*  The import commits IMPORT_CHUNK_SIZE notes per transaction and WAL lets readers run next to a writer, so a read never waits for
+*  the whole import. Under Robolectric the host's SQLite may still run the statements of all connections one at a time, so here a read
+*  can wait for the chunk being written - the benchmark fails only if a read waited for a large part of the import.
+*
+*  Run with: ./gradlew testDebugUnitTest -Pbenchmark --tests '*NoteConcurrentReadBenchmark'
+* */
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.LooperMode;
+
+import java.util.Random;
+import java.util.concurrent.Callable;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@LooperMode(LooperMode.Mode.PAUSED)
+public class NoteConcurrentReadBenchmark {
+
+    private static final int SEEDED_NOTES = 10000; // read while the import runs
+    private static final int IMPORTED_NOTES = 100000;
+    private static final int IDLE_READS = 200;
+    private static final int MIN_READS_DURING_IMPORT = 20;
+
+    @Rule
+    public NoteRepositoryRule rule = new NoteRepositoryRule();
+
+    @Test
+    public void readsDuringImport() throws Exception {
+        NoteBenchmarkReport report = new NoteBenchmarkReport("NoteConcurrentReadBenchmark");
+        NoteRepository repository = rule.getRepository();
+        TestNotes.AwaitedWrite seed = new TestNotes.AwaitedWrite(1);
+        repository.importNotes(TestNotes.createNotes(SEEDED_NOTES, 20, SEEDED_NOTES), seed);
+        seed.await();
+        assertTrue(seed.success);
+        Random random = new Random(SEEDED_NOTES);
+
+        for (int i = 0; i < IDLE_READS; i++) {
+            read(report, "idle", random);
+        }
+
+        TestNotes.AwaitedWrite importWrite = new TestNotes.AwaitedWrite(1);
+        long importStartNanos = System.nanoTime();
+        repository.importNotes(TestNotes.createNotes(IMPORTED_NOTES, 20, IMPORTED_NOTES), importWrite);
+        int readsDuringImport = 0;
+        while (importWrite.latch.getCount() > 0) {
+            read(report, "duringImport", random);
+            readsDuringImport++;
+            TestNotes.idleMainLooper(); // the import's callback is delivered on the main looper
+        }
+        long importNanos = System.nanoTime() - importStartNanos;
+        assertTrue(importWrite.success);
+        report.recordNanos("import." + IMPORTED_NOTES, importNanos);
+        report.recordValue("read.duringImport.count", readsDuringImport);
+        report.write();
+
+        assertTrue("Only " + readsDuringImport + " reads during the import", readsDuringImport >= MIN_READS_DURING_IMPORT);
+        long slowestRead = Math.max(report.get("read.duringImport.noteById").getMax(),
+                report.get("read.duringImport.firstPage").getMax());
+        assertTrue("A read took " + slowestRead + " ns of an import of " + importNanos + " ns", slowestRead < importNanos / 10);
+    }
+
+    // One note by id and the first page of the list, each timed from submitting it to the query pool until its result
+    private void read(NoteBenchmarkReport report, String phase, Random random) throws Exception {
+        final int id = 1 + random.nextInt(SEEDED_NOTES);
+        long startNanos = System.nanoTime();
+        Note note = rule.query(new Callable<Note>() {
+            @Override
+            public Note call() {
+                return rule.getDatabase().noteDao().getNoteById(id);
+            }
+        });
+        report.recordNanos("read." + phase + ".noteById", System.nanoTime() - startNanos);
+        assertNotNull(note);
+
+        startNanos = System.nanoTime();
+        boolean empty = rule.query(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return TestNotes.loadFirstPage(rule.getDatabase().noteDao()).isEmpty();
+            }
+        });
+        report.recordNanos("read." + phase + ".firstPage", System.nanoTime() - startNanos);
+        assertFalse(empty);
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.notesmvvm;
+
+/*
+*  NoteDao at 1k, 10k and 100k notes - bulk insert, single and bulk updates, logical delete and purge, and the reads the app does
+*  (first page of the note list, note by id, search). Results go to build/benchmark-results/NoteDaoBenchmark.json (NoteBenchmarkReport).
+*
+*  Run with: ./gradlew testDebugUnitTest -Pbenchmark --tests '*NoteDaoBenchmark'
+* */
+
+import androidx.paging.PagedList;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+
+@RunWith(RobolectricTestRunner.class)
+public class NoteDaoBenchmark {
+
+    private static final int[] SIZES = {1000, 10000, 100000};
+    private static final int OPERATIONS = 1000; // single row operations measured per size
+    private static final int WARM_UP_OPERATIONS = 100;
+
+    @Test
+    public void daoOperations() throws Exception {
+        NoteBenchmarkReport report = new NoteBenchmarkReport("NoteDaoBenchmark");
+        for (int size : SIZES) {
+            run(report, size);
+        }
+        report.write();
+    }
+
+    private void run(NoteBenchmarkReport report, final int size) {
+        final NoteDatabase database = TestNotes.createInMemoryDatabase(ApplicationProvider.getApplicationContext());
+        try {
+            final NoteDao noteDao = database.noteDao();
+            Random random = new Random(size);
+
+            // Insert - chunks of 1000 notes, one transaction each (same as an import)
+            final List<Integer> ids = new ArrayList<>();
+            long insertNanos = report.time("dao.insert." + size, new Runnable() {
+                @Override
+                public void run() {
+                    ids.addAll(TestNotes.insertNotes(database, size, size));
+                }
+            });
+            report.recordRate("dao.insert." + size + ".rowsPerSecond", size, insertNanos);
+
+            // Reads
+            for (int i = 0; i < WARM_UP_OPERATIONS; i++) {
+                noteDao.getNoteById(ids.get(random.nextInt(size)));
+            }
+            for (int i = 0; i < OPERATIONS; i++) {
+                final int id = ids.get(random.nextInt(size));
+                report.time("dao.getNoteById." + size, new Runnable() {
+                    @Override
+                    public void run() {
+                        assertNotNull(noteDao.getNoteById(id));
+                    }
+                });
+            }
+            for (int i = 0; i < 20; i++) {
+                report.time("dao.firstPage." + size, new Runnable() {
+                    @Override
+                    public void run() {
+                        PagedList<NoteSummary> page = TestNotes.loadFirstPage(noteDao);
+                        assertFalse(page.isEmpty());
+                    }
+                });
+            }
+            for (int i = 0; i < 100; i++) {
+                final String word = TestNotes.WORDS[random.nextInt(TestNotes.WORDS.length)];
+                report.time("dao.search." + size, new Runnable() {
+                    @Override
+                    public void run() {
+                        noteDao.searchNotes("title:" + word + "*", word + "*", 200);
+                    }
+                });
+            }
+
+            // Updates - one statement per note, then 1000 notes in one bulk call
+            for (int i = 0; i < OPERATIONS; i++) {
+                final int id = ids.get(random.nextInt(size));
+                report.time("dao.updateTitle." + size, new Runnable() {
+                    @Override
+                    public void run() {
+                        noteDao.UpdateTitle(id, "updated " + id);
+                    }
+                });
+            }
+            final List<Note> notes = new ArrayList<>(OPERATIONS);
+            for (int i = 0; i < OPERATIONS; i++) {
+                Note note = new Note("bulk " + i, "bulk update", 5);
+                note.setId(ids.get(random.nextInt(size)));
+                notes.add(note);
+            }
+            long bulkUpdateNanos = report.time("dao.updateBulk." + size, new Runnable() {
+                @Override
+                public void run() {
+                    noteDao.Update(notes);
+                }
+            });
+            report.recordRate("dao.updateBulk." + size + ".rowsPerSecond", notes.size(), bulkUpdateNanos);
+
+            // Deletes - logical (MarkDeleted) for 10% of the notes, then the purge removes them in batches of 500
+            List<Integer> shuffled = new ArrayList<>(ids);
+            Collections.shuffle(shuffled, random);
+            final List<Integer> deleted = shuffled.subList(0, size / 10);
+            final long deletedAt = System.currentTimeMillis();
+            for (final int id : deleted) {
+                report.time("dao.markDeleted." + size, new Runnable() {
+                    @Override
+                    public void run() {
+                        noteDao.MarkDeleted(id, deletedAt);
+                    }
+                });
+            }
+            final int[] purged = new int[1];
+            long purgeNanos = report.time("dao.purge." + size, new Runnable() {
+                @Override
+                public void run() {
+                    int batch;
+                    do {
+                        batch = noteDao.PurgeDeletedBefore(deletedAt + 1, 500);
+                        purged[0] += batch;
+                    } while (batch == 500);
+                }
+            });
+            assertEquals(deleted.size(), purged[0]);
+            report.recordRate("dao.purge." + size + ".rowsPerSecond", purged[0], purgeNanos);
+        } finally {
+            database.close();
+        }
+    }
+}
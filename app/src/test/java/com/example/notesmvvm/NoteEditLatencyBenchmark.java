@@ -0,0 +1,142 @@
+package com.example.notesmvvm;
+
+/*
+*  End to end latency of a single edit at 50k notes - the title of one note of the first page is changed the way the editor saves it
+*  (NoteRepository.updateChangedFields()), and timed from that call until:
+*   - edit.committed    - the write callback (transaction of NoteWriteQueue committed)
+*   - edit.changeFeed   - the NoteChange of the note reached a change listener (what NoteViewModel updates search results from)
+*   - edit.list         - the paged note list observer got a PagedList showing the new title (Room invalidation, reload of the page)
+*  Callbacks are delivered on the main looper, which is polled every 1 ms - so every number includes up to 1 ms of waiting.
+*  Results go to build/benchmark-results/NoteEditLatencyBenchmark.json.
+*
+*  Run with: ./gradlew testDebugUnitTest -Pbenchmark --tests '*NoteEditLatencyBenchmark'
+* */
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.Observer;
+import androidx.paging.PagedList;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.LooperMode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@LooperMode(LooperMode.Mode.PAUSED)
+public class NoteEditLatencyBenchmark {
+
+    private static final int NOTES = 50000;
+    private static final int RUNS = 50;
+    private static final int WARM_UP_RUNS = 5;
+
+    @Rule
+    public NoteRepositoryRule rule = new NoteRepositoryRule();
+
+    // Written by the observers on the main looper, read by the test on the same thread
+    private String expectedTitle;
+    private int editedId;
+    private long startNanos;
+    private long feedNanos;
+    private long listNanos;
+    private CountDownLatch delivered;
+    private PagedList<NoteSummary> currentPage;
+    private final CountDownLatch firstPage = new CountDownLatch(1);
+
+    @Test
+    public void singleEditLatency() throws Exception {
+        NoteBenchmarkReport report = new NoteBenchmarkReport("NoteEditLatencyBenchmark");
+        NoteRepository repository = rule.getRepository();
+        TestNotes.AwaitedWrite seed = new TestNotes.AwaitedWrite(1);
+        repository.importNotes(TestNotes.createNotes(NOTES, 20, NOTES), seed);
+        seed.await();
+        assertTrue(seed.success);
+
+        NoteChange.Listener feedListener = new NoteChange.Listener() {
+            @Override
+            public void onNoteChange(NoteChange change) {
+                if (delivered != null && feedNanos == 0 && change.getIds().contains(editedId)) {
+                    feedNanos = System.nanoTime() - startNanos;
+                    delivered.countDown();
+                }
+            }
+        };
+        Observer<PagedList<NoteSummary>> listObserver = new Observer<PagedList<NoteSummary>>() {
+            @Override
+            public void onChanged(PagedList<NoteSummary> page) {
+                currentPage = page;
+                if (!page.isEmpty()) {
+                    firstPage.countDown();
+                }
+                if (delivered != null && listNanos == 0 && showsTitle(page, editedId, expectedTitle)) {
+                    listNanos = System.nanoTime() - startNanos;
+                    delivered.countDown();
+                }
+            }
+        };
+        LiveData<PagedList<NoteSummary>> list = repository.getNoteSummariesPaged();
+        repository.addChangeListener(feedListener);
+        list.observeForever(listObserver);
+        try {
+            TestNotes.await(firstPage);
+
+            for (int run = 0; run < WARM_UP_RUNS + RUNS; run++) {
+                List<NoteSummary> loaded = loadedItems(currentPage);
+                NoteSummary summary = loaded.get(run % loaded.size());
+                Note original = new Note(summary.getTitle(), null, summary.getPriority());
+                original.setId(summary.getId());
+                Note edited = new Note("Edited " + run, null, summary.getPriority()); // title only, like a rename in the editor
+                edited.setId(summary.getId());
+
+                editedId = summary.getId();
+                expectedTitle = edited.getTitle();
+                feedNanos = 0;
+                listNanos = 0;
+                delivered = new CountDownLatch(2);
+                TestNotes.AwaitedWrite write = new TestNotes.AwaitedWrite(1);
+                startNanos = System.nanoTime();
+                assertTrue(repository.updateChangedFields(original, edited, write));
+                write.await();
+                long committedNanos = System.nanoTime() - startNanos;
+                TestNotes.await(delivered);
+                assertTrue(write.success);
+
+                if (run >= WARM_UP_RUNS) {
+                    report.recordNanos("edit.committed." + NOTES, committedNanos);
+                    report.recordNanos("edit.changeFeed." + NOTES, feedNanos);
+                    report.recordNanos("edit.list." + NOTES, listNanos);
+                }
+            }
+        } finally {
+            list.removeObserver(listObserver);
+            repository.removeChangeListener(feedListener);
+        }
+        report.write();
+    }
+
+    private static boolean showsTitle(PagedList<NoteSummary> page, int id, String title) {
+        for (NoteSummary summary : loadedItems(page)) {
+            if (summary.getId() == id) {
+                return title.equals(summary.getTitle());
+            }
+        }
+        return false;
+    }
+
+    // Items of the page which are loaded (not placeholders)
+    private static List<NoteSummary> loadedItems(PagedList<NoteSummary> page) {
+        List<NoteSummary> items = new ArrayList<>();
+        for (NoteSummary summary : page.snapshot()) {
+            if (summary != null) {
+                items.add(summary);
+            }
+        }
+        return items;
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.notesmvvm;
+
+/*
+*  WAL bytes written by a title-only edit of a long note - NoteRepository.update() (whole row: title, compressed description, priority)
+*  against updateChangedFields() (only the title column). The WAL is truncated before every edit (wal_checkpoint(TRUNCATE)), so its size
+*  after the edit is what that one edit appended - pages of note_table and note_fts it changed, plus their commit frames.
+*  Results go to build/benchmark-results/NoteEditWalBenchmark.json.
+*
+*  Run with: ./gradlew testDebugUnitTest -Pbenchmark --tests '*NoteEditWalBenchmark'
+* */
+
+import android.database.Cursor;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.LooperMode;
+
+import java.io.File;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@LooperMode(LooperMode.Mode.PAUSED)
+public class NoteEditWalBenchmark {
+
+    private static final int DESCRIPTION_WORDS = 20000; // about 150k chars - compressed, below NoteBlobStore.SPILL_THRESHOLD
+    private static final int RUNS = 20;
+
+    @Rule
+    public NoteRepositoryRule rule = new NoteRepositoryRule();
+
+    @Test
+    public void titleEditWalBytes() throws Exception {
+        NoteBenchmarkReport report = new NoteBenchmarkReport("NoteEditWalBenchmark");
+        NoteRepository repository = rule.getRepository();
+        TestNotes.AwaitedWrite insert = new TestNotes.AwaitedWrite(1);
+        repository.insert(new Note("Transcript", TestNotes.words(new Random(DESCRIPTION_WORDS), DESCRIPTION_WORDS), 5), insert);
+        insert.await();
+        assertTrue(insert.success);
+        int id = NoteRepositoryRule.SAMPLE_NOTES + 1;
+
+        for (int run = 0; run < RUNS; run++) {
+            // update() - the whole note as the editor had it, with a new title
+            Note note = getNote(repository, id);
+            assertNotNull(note);
+            assertTrue(note.getDescription().length() > NoteDescriptionCodec.COMPRESSION_THRESHOLD);
+            Note edited = copyWithTitle(note, "Transcript " + run);
+            checkpoint();
+            TestNotes.AwaitedWrite write = new TestNotes.AwaitedWrite(1);
+            repository.update(edited, write);
+            write.await();
+            assertTrue(write.success);
+            report.recordValue("wal.update.bytes", walBytes());
+
+            // updateChangedFields() - same kind of edit, only the title is written
+            note = getNote(repository, id);
+            edited = copyWithTitle(note, "Transcript " + run + " (changed fields)");
+            checkpoint();
+            write = new TestNotes.AwaitedWrite(1);
+            assertTrue(repository.updateChangedFields(note, edited, write));
+            write.await();
+            assertTrue(write.success);
+            report.recordValue("wal.updateChangedFields.bytes", walBytes());
+        }
+
+        long wholeRow = report.get("wal.update.bytes").getValueAtPercentile(50);
+        long changedFields = report.get("wal.updateChangedFields.bytes").getValueAtPercentile(50);
+        report.write();
+        assertTrue("update() " + wholeRow + " WAL bytes, updateChangedFields() " + changedFields, changedFields < wholeRow);
+    }
+
+    private static Note copyWithTitle(Note note, String title) {
+        Note copy = new Note(title, note.getDescription(), note.getPriority());
+        copy.setId(note.getId());
+        copy.setVersion(note.getVersion());
+        return copy;
+    }
+
+    private static Note getNote(NoteRepository repository, int id) throws InterruptedException {
+        final AtomicReference<Note> result = new AtomicReference<>();
+        final CountDownLatch latch = new CountDownLatch(1);
+        repository.getNote(id, new NoteRepository.NoteCallback() {
+            @Override
+            public void onResult(Note note) {
+                result.set(note);
+                latch.countDown();
+            }
+        });
+        TestNotes.await(latch);
+        return result.get();
+    }
+
+    // Moves everything from the WAL into the database file and truncates the WAL to 0 bytes
+    private void checkpoint() throws Exception {
+        rule.query(new Callable<Void>() {
+            @Override
+            public Void call() {
+                Cursor cursor = rule.getDatabase().getOpenHelper().getWritableDatabase().query("PRAGMA wal_checkpoint(TRUNCATE)");
+                try {
+                    cursor.moveToFirst();
+                } finally {
+                    cursor.close();
+                }
+                return null;
+            }
+        });
+    }
+
+    private long walBytes() {
+        File databaseFile = rule.getApplication().getDatabasePath(NoteDatabase.DATABASE_NAME);
+        return new File(databaseFile.getPath() + "-wal").length();
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.notesmvvm;
+
+/*
+*  Import throughput of NoteRepository.importNotes(Iterable) - new notes at 1k, 10k and 100k, into a table which already holds the
+*  notes of the smaller sizes. Rows per second go to build/benchmark-results/NoteImportBenchmark.json.
+*
+*  Run with: ./gradlew testDebugUnitTest -Pbenchmark --tests '*NoteImportBenchmark'
+* */
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.LooperMode;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@LooperMode(LooperMode.Mode.PAUSED)
+public class NoteImportBenchmark {
+
+    private static final int[] SIZES = {1000, 10000, 100000};
+
+    @Rule
+    public NoteRepositoryRule rule = new NoteRepositoryRule();
+
+    @Test
+    public void importThroughput() throws Exception {
+        NoteBenchmarkReport report = new NoteBenchmarkReport("NoteImportBenchmark");
+        int expectedNotes = NoteRepositoryRule.SAMPLE_NOTES;
+
+        for (int size : SIZES) {
+            List<Note> notes = TestNotes.createNotes(size, 20, size);
+            long importNanos = importNotes(notes);
+            expectedNotes += size;
+            report.recordNanos("import.new." + size, importNanos);
+            report.recordRate("import.new." + size + ".rowsPerSecond", size, importNanos);
+            assertEquals(expectedNotes, rule.countNotes());
+        }
+
+        LogLinearHistogram bulk = rule.getMetrics().getHistograms().get(NoteMetrics.WRITE_BULK);
+        report.recordValue("import." + NoteMetrics.WRITE_BULK + ".p50", bulk.getValueAtPercentile(50));
+        report.write();
+    }
+
+    private long importNotes(List<Note> notes) throws InterruptedException {
+        TestNotes.AwaitedWrite write = new TestNotes.AwaitedWrite(1);
+        long startNanos = System.nanoTime();
+        rule.getRepository().importNotes(notes, write);
+        write.await();
+        long nanos = System.nanoTime() - startNanos;
+        assertTrue(write.success);
+        return nanos;
+    }
+}
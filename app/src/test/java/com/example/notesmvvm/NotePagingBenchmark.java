@@ -0,0 +1,96 @@
+package com.example.notesmvvm;
+
+/*
+*  Paged note list against the whole list at 100k notes - time until the first page is there (what the user waits for on start)
+*  and heap it holds, for the PagedList of NoteSummary the app uses and for the List<Note> of getAllNotes() it replaced.
+*  Results go to build/benchmark-results/NotePagingBenchmark.json.
+*
+*  Heap is measured as used heap after a GC with the result still referenced, minus used heap before loading it - good enough to
+*  compare the two, not an exact size.
+*
+*  Run with: ./gradlew testDebugUnitTest -Pbenchmark --tests '*NotePagingBenchmark'
+* */
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.Observer;
+import androidx.paging.PagedList;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.LooperMode;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@LooperMode(LooperMode.Mode.PAUSED)
+public class NotePagingBenchmark {
+
+    private static final int NOTES = 100000;
+    private static final int RUNS = 10;
+
+    @Test
+    public void firstPageAgainstWholeList() throws Exception {
+        NoteBenchmarkReport report = new NoteBenchmarkReport("NotePagingBenchmark");
+        NoteDatabase database = TestNotes.createInMemoryDatabase(ApplicationProvider.getApplicationContext());
+        try {
+            TestNotes.insertNotes(database, NOTES, NOTES);
+            NoteDao noteDao = database.noteDao();
+
+            for (int i = 0; i < RUNS; i++) {
+                long heapBefore = settledHeapBytes();
+                long startNanos = System.nanoTime();
+                PagedList<NoteSummary> page = TestNotes.loadFirstPage(noteDao);
+                report.recordNanos("paged.timeToFirstPage", System.nanoTime() - startNanos);
+                report.recordValue("paged.heapBytes", settledHeapBytes() - heapBefore);
+                assertEquals(NoteRepository.PAGED_LIST_CONFIG.initialLoadSizeHint, page.size());
+            }
+
+            for (int i = 0; i < RUNS; i++) {
+                long heapBefore = settledHeapBytes();
+                long startNanos = System.nanoTime();
+                List<Note> notes = loadAllNotes(noteDao.getAllNotes());
+                report.recordNanos("allNotes.timeToFirstPage", System.nanoTime() - startNanos);
+                report.recordValue("allNotes.heapBytes", settledHeapBytes() - heapBefore);
+                assertEquals(NOTES, notes.size());
+            }
+
+            long pagedHeap = report.get("paged.heapBytes").getValueAtPercentile(50);
+            long allNotesHeap = report.get("allNotes.heapBytes").getValueAtPercentile(50);
+            assertTrue("Paged " + pagedHeap + " bytes, whole list " + allNotesHeap + " bytes", pagedHeap * 10 < allNotesHeap);
+        } finally {
+            database.close();
+        }
+        report.write();
+    }
+
+    // First value of Room's LiveData - its query runs on Room's query executor, the value is delivered on the main looper
+    private static List<Note> loadAllNotes(LiveData<List<Note>> liveData) throws InterruptedException {
+        final AtomicReference<List<Note>> result = new AtomicReference<>();
+        final CountDownLatch latch = new CountDownLatch(1);
+        Observer<List<Note>> observer = new Observer<List<Note>>() {
+            @Override
+            public void onChanged(List<Note> notes) {
+                result.set(notes);
+                latch.countDown();
+            }
+        };
+        liveData.observeForever(observer);
+        TestNotes.await(latch);
+        liveData.removeObserver(observer);
+        return result.get();
+    }
+
+    private static long settledHeapBytes() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return TestNotes.usedHeapBytes();
+    }
+}
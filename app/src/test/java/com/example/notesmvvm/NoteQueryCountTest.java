@@ -0,0 +1,102 @@
+package com.example.notesmvvm;
+
+/*
+*  One shared NoteRepository - however many ViewModels and observers watch the note list, Room runs its query once when the list is
+*  first observed and once per invalidation of note_table. Queries are counted by CountingOpenHelperFactory.
+* */
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.Observer;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.LooperMode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricTestRunner.class)
+@LooperMode(LooperMode.Mode.PAUSED)
+public class NoteQueryCountTest {
+
+    private static final int VIEW_MODELS = 3;
+    private static final int OBSERVERS_PER_VIEW_MODEL = 2;
+    private static final int OBSERVERS = VIEW_MODELS * OBSERVERS_PER_VIEW_MODEL;
+
+    // SQL of NoteDao.getAllNotes(), and the COUNT(*) query a LimitOffsetDataSource of the paged list runs once per load
+    static final String ALL_NOTES_SQL = "SELECT * FROM note_table WHERE " + NoteDao.NOT_DELETED + " ORDER BY priority DESC, id DESC";
+    static final String PAGED_COUNT_SQL = "SELECT COUNT(*) FROM ( " + NoteDao.NOTE_SUMMARIES_QUERY;
+
+    @Rule
+    public NoteRepositoryRule rule = new NoteRepositoryRule();
+
+    private final CountingOpenHelperFactory queries = new CountingOpenHelperFactory();
+
+    public NoteQueryCountTest() {
+        rule.getConfig().setOpenHelperFactory(queries);
+    }
+
+    @Test
+    public void observersShareOneQueryPerInvalidation() throws Exception {
+        List<NoteViewModel> viewModels = new ArrayList<>();
+        for (int i = 0; i < VIEW_MODELS; i++) {
+            viewModels.add(new NoteViewModel(rule.getApplication()));
+        }
+        assertSame(viewModels.get(0).getAllNotes(), viewModels.get(VIEW_MODELS - 1).getAllNotes());
+
+        int allNotesQueries = queries.count(ALL_NOTES_SQL);
+        int pagedQueries = queries.count(PAGED_COUNT_SQL);
+        AtomicInteger allNotesEmissions = new AtomicInteger();
+        AtomicInteger pagedEmissions = new AtomicInteger();
+        for (NoteViewModel viewModel : viewModels) {
+            for (int i = 0; i < OBSERVERS_PER_VIEW_MODEL; i++) {
+                observeForever(viewModel.getAllNotes(), allNotesEmissions);
+                observeForever(viewModel.getNoteSummariesPaged(), pagedEmissions);
+            }
+        }
+        awaitEmissions(allNotesEmissions, OBSERVERS);
+        awaitEmissions(pagedEmissions, OBSERVERS);
+        assertEquals(1, queries.count(ALL_NOTES_SQL) - allNotesQueries);
+        assertEquals(1, queries.count(PAGED_COUNT_SQL) - pagedQueries);
+
+        // One write - one invalidation of note_table, every observer gets the new list from one query
+        TestNotes.AwaitedWrite write = new TestNotes.AwaitedWrite(1);
+        rule.getRepository().insert(new Note("Title", "Description", 5), write);
+        write.await();
+        awaitEmissions(allNotesEmissions, 2 * OBSERVERS);
+        awaitEmissions(pagedEmissions, 2 * OBSERVERS);
+        assertEquals(2, queries.count(ALL_NOTES_SQL) - allNotesQueries);
+        assertEquals(2, queries.count(PAGED_COUNT_SQL) - pagedQueries);
+    }
+
+    private static <T> void observeForever(LiveData<T> liveData, final AtomicInteger emissions) {
+        liveData.observeForever(new Observer<T>() {
+            @Override
+            public void onChanged(T value) {
+                emissions.incrementAndGet();
+            }
+        });
+    }
+
+    // Runs the main looper (where LiveData delivers) until observers got expected values in total
+    private static void awaitEmissions(AtomicInteger emissions, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (emissions.get() < expected) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Observers got " + emissions.get() + " values, expected " + expected);
+            }
+            TestNotes.idleMainLooper();
+            Thread.sleep(5);
+        }
+        Thread.sleep(100); // a second query would come right after the first one
+        TestNotes.idleMainLooper();
+        assertEquals(expected, emissions.get());
+    }
+}
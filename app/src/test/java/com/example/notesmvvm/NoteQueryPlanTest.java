@@ -0,0 +1,93 @@
+package com.example.notesmvvm;
+
+/*
+*  EXPLAIN QUERY PLAN of the queries which run most often - checks that SQLite uses the indices they were written for.
+*  A plan is decided by SQLite when the query is prepared, so an innocent looking change of a WHERE (e.g. a new indexed column in it)
+*  can make it pick another index and sort the whole table again - these tests catch that.
+* */
+
+import android.database.Cursor;
+import android.text.TextUtils;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class NoteQueryPlanTest {
+
+    private NoteDatabase database;
+
+    @Before
+    public void setUp() {
+        database = TestNotes.createInMemoryDatabase(ApplicationProvider.getApplicationContext());
+        TestNotes.insertNotes(database, 1000, 1); // no ANALYZE - like on a device, SQLite plans without statistics
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void noteListIsReadAlongPriorityIndexWithoutSorting() {
+        // Same LIMIT/OFFSET the paged DataSource adds to the query
+        String plan = explain(NoteDao.NOTE_SUMMARIES_QUERY + " LIMIT 90 OFFSET 0");
+
+        assertTrue(plan, plan.contains("index_note_table_priority_id"));
+        assertFalse(plan, plan.contains("TEMP B-TREE"));
+        assertFalse(plan, plan.contains("index_note_table_deleted_at"));
+        assertFalse(plan, plan.contains("index_note_table_generation"));
+    }
+
+    @Test
+    public void searchStartsFromFullTextIndexAndReadsNotesByPrimaryKey() {
+        // :titleQuery, :limit, :query - named parameters are numbered in order of their first use
+        String plan = explain(NoteDao.SEARCH_QUERY, "title:meeting*", 200, "meeting*");
+
+        assertTrue(plan, plan.contains("VIRTUAL TABLE")); // note_fts MATCH drives the query
+        assertTrue(plan, plan.contains("PRIMARY KEY"));   // every hit is one rowid lookup in note_table
+        assertTrue(plan, plan.contains("DESC"));          // hits are read from the index newest first, so LIMIT stops the scan
+        assertFalse(plan, plan.contains("SCAN TABLE note_table") || plan.contains("SCAN note_table"));
+    }
+
+    @Test
+    public void noteByIdIsReadByPrimaryKey() {
+        String plan = explain("SELECT * FROM note_table WHERE id = ? AND " + NoteDao.NOT_DELETED, 1);
+
+        assertTrue(plan, plan.contains("PRIMARY KEY"));
+        assertFalse(plan, plan.contains("SCAN TABLE note_table") || plan.contains("SCAN note_table"));
+    }
+
+    @Test
+    public void purgeFindsDeletedNotesByTheirIndex() {
+        String plan = explain("SELECT id FROM note_table WHERE deleted_at > 0 AND deleted_at < ? LIMIT 500", System.currentTimeMillis());
+
+        assertTrue(plan, plan.contains("index_note_table_deleted_at"));
+    }
+
+    // Detail column of every row of the plan, one per line
+    private String explain(String sql, Object... args) {
+        List<String> details = new ArrayList<>();
+        Cursor cursor = database.getOpenHelper().getWritableDatabase().query("EXPLAIN QUERY PLAN " + sql, args);
+        try {
+            int detail = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext()) {
+                details.add(cursor.getString(detail));
+            }
+        } finally {
+            cursor.close();
+        }
+        return TextUtils.join("\n", details);
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.notesmvvm;
+
+/*
+*  Write throughput of NoteRepository - notes inserted and updated through the public API (NoteWriteQueue batches them), measured
+*  from the first call until the last callback. Results go to build/benchmark-results/NoteRepositoryBenchmark.json, together with
+*  batch sizes and queue waits the write queue reported to NoteMetrics meanwhile.
+*
+*  Run with: ./gradlew testDebugUnitTest -Pbenchmark --tests '*NoteRepositoryBenchmark'
+* */
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.LooperMode;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@LooperMode(LooperMode.Mode.PAUSED)
+public class NoteRepositoryBenchmark {
+
+    private static final int[] SIZES = {1000, 10000, 100000};
+
+    @Rule
+    public NoteRepositoryRule rule = new NoteRepositoryRule();
+
+    @Test
+    public void writeThroughput() throws Exception {
+        NoteBenchmarkReport report = new NoteBenchmarkReport("NoteRepositoryBenchmark");
+        NoteRepository repository = rule.getRepository();
+        int expectedNotes = NoteRepositoryRule.SAMPLE_NOTES;
+        int lastId = NoteRepositoryRule.SAMPLE_NOTES; // ids of the sample notes are 1..3, inserted notes follow in order
+
+        for (int size : SIZES) {
+            List<Note> notes = TestNotes.createNotes(size, 20, size);
+
+            TestNotes.AwaitedWrite inserts = new TestNotes.AwaitedWrite(size);
+            long startNanos = System.nanoTime();
+            for (Note note : notes) {
+                repository.insert(note, inserts);
+            }
+            inserts.await();
+            long insertNanos = System.nanoTime() - startNanos;
+            assertTrue(inserts.success);
+            expectedNotes += size;
+            report.recordNanos("repository.insert." + size, insertNanos);
+            report.recordRate("repository.insert." + size + ".notesPerSecond", size, insertNanos);
+
+            // Every note inserted above is written again, with a new title
+            final int afterId = lastId;
+            final int count = size;
+            List<Note> inserted = rule.query(new Callable<List<Note>>() {
+                @Override
+                public List<Note> call() {
+                    return rule.getDatabase().noteDao().getNotesWithoutBlobAfterId(afterId, count);
+                }
+            });
+            assertEquals(size, inserted.size());
+            lastId = inserted.get(inserted.size() - 1).getId();
+
+            TestNotes.AwaitedWrite updates = new TestNotes.AwaitedWrite(size);
+            startNanos = System.nanoTime();
+            for (Note note : inserted) {
+                Note edited = new Note(note.getTitle() + " (edited)", note.getDescription(), note.getPriority());
+                edited.setId(note.getId());
+                repository.update(edited, updates);
+            }
+            updates.await();
+            long updateNanos = System.nanoTime() - startNanos;
+            assertTrue(updates.success);
+            report.recordNanos("repository.update." + size, updateNanos);
+            report.recordRate("repository.update." + size + ".notesPerSecond", size, updateNanos);
+        }
+        assertEquals(expectedNotes, rule.countNotes());
+
+        // What the write queue itself measured - how full the batches were and how long writes waited for them
+        for (String metric : new String[]{NoteMetrics.WRITE_BATCH_SIZE, NoteMetrics.WRITE_QUEUE_WAIT, NoteMetrics.WRITE_BATCH}) {
+            LogLinearHistogram histogram = rule.getMetrics().getHistograms().get(metric);
+            report.recordValue("repository." + metric + ".p50", histogram.getValueAtPercentile(50));
+            report.recordValue("repository." + metric + ".p99", histogram.getValueAtPercentile(99));
+        }
+        report.write();
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.notesmvvm;
+
+/*
+*  Gives a test the real NoteRepository singleton (with its NoteWriteQueue and a file NoteDatabase) on fresh executors and metrics,
+*  and destroys all of them after the test - so every test starts with a new database and no writes left over from the test before.
+*
+*  The database is created with the 3 sample notes of NoteDatabase's first run population - before() waits until they are inserted
+*  and Room has handled the invalidation of their insert, so they can't show up in the middle of a test.
+*
+*  Room doesn't allow queries on the main thread, which is the test thread under Robolectric - tests which call a DAO directly do it
+*  through query(), on the query executor.
+* */
+
+import android.app.Application;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.rules.ExternalResource;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.fail;
+
+class NoteRepositoryRule extends ExternalResource {
+
+    static final int SAMPLE_NOTES = 3;
+
+    private final NoteDatabaseConfig config = new NoteDatabaseConfig();
+    private final InMemoryNoteMetrics metrics = new InMemoryNoteMetrics();
+    private ScheduledExecutorService writeExecutor;
+    private ExecutorService queryExecutor;
+    private Application application;
+    private NoteRepository repository;
+
+    // Called by a test before the rule runs (e.g. to count queries with its own SupportSQLiteOpenHelper.Factory)
+    NoteDatabaseConfig getConfig() {
+        return config;
+    }
+
+    @Override
+    protected void before() throws Throwable {
+        application = ApplicationProvider.getApplicationContext();
+        application.deleteDatabase(NoteDatabase.DATABASE_NAME);
+        writeExecutor = Executors.newSingleThreadScheduledExecutor();
+        queryExecutor = Executors.newFixedThreadPool(4);
+        NoteDatabase.setConfig(config
+                .setWriteExecutor(writeExecutor)
+                .setQueryExecutor(queryExecutor)
+                .setMetrics(metrics));
+        query(new Callable<Void>() {
+            @Override
+            public Void call() {
+                NoteDatabase.warmUp(application); // creates the database - and starts inserting the sample notes
+                return null;
+            }
+        });
+        repository = NoteRepository.getInstance(application);
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (countNotes() < SAMPLE_NOTES) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Sample notes were not inserted");
+            }
+            TestNotes.idleMainLooper(); // AsyncTask of the population finishes on the main looper
+            Thread.sleep(5);
+        }
+        query(new Callable<Void>() {
+            @Override
+            public Void call() {
+                getDatabase().getInvalidationTracker().refreshVersionsSync();
+                return null;
+            }
+        });
+    }
+
+    @Override
+    protected void after() {
+        NoteRepository.destroyInstance();
+        NoteWriteQueue.destroyInstance();
+        NoteDatabase.destroyInstance();
+        writeExecutor.shutdownNow();
+        queryExecutor.shutdownNow();
+        try {
+            writeExecutor.awaitTermination(10, TimeUnit.SECONDS);
+            queryExecutor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        application.deleteDatabase(NoteDatabase.DATABASE_NAME);
+    }
+
+    Application getApplication() {
+        return application;
+    }
+
+    NoteRepository getRepository() {
+        return repository;
+    }
+
+    NoteDatabase getDatabase() {
+        return NoteDatabase.getInstance(application);
+    }
+
+    // Runs callable on the query executor and returns its result - for DAO calls from the test thread
+    <T> T query(Callable<T> callable) throws Exception {
+        try {
+            return queryExecutor.submit(callable).get(30, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    // Notes which are not deleted
+    int countNotes() throws Exception {
+        return query(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return getDatabase().noteDao().getNotesWithoutBlobAfterId(Integer.MIN_VALUE, Integer.MAX_VALUE).size();
+            }
+        });
+    }
+
+    InMemoryNoteMetrics getMetrics() {
+        return metrics;
+    }
+
+    // Waits until every write queued before this call is committed and its callback has run
+    void awaitWrites() throws InterruptedException {
+        TestNotes.AwaitedWrite barrier = new TestNotes.AwaitedWrite(1);
+        NoteWriteQueue.getInstance(getDatabase()).enqueue(new NoteWriteQueue.Write() {
+            @Override
+            public void apply(NoteDao noteDao) {
+            }
+        }, barrier);
+        barrier.await();
+    }
+}
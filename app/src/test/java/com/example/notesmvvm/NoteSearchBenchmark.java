@@ -0,0 +1,100 @@
+package com.example.notesmvvm;
+
+/*
+*  Search latency of NoteRepository.searchNotes() at 10k and 100k notes - a word most notes contain, a prefix of it, two words, and
+*  a word no note contains. Every query is timed from the call until the callback (the main looper is polled every 1 ms, so this
+*  includes up to 1 ms of waiting), and by the repository itself (NoteMetrics.QUERY_SEARCH, MATCH + ranking + loading the notes).
+*  Percentiles go to build/benchmark-results/NoteSearchBenchmark.json.
+*  Fails if the median search measured by the repository is MAX_SEARCH_MS or more for any query and size - the target is a search
+*  within 10 ms at 100k notes.
+*
+*  Run with: ./gradlew testDebugUnitTest -Pbenchmark --tests '*NoteSearchBenchmark'
+* */
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.LooperMode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@LooperMode(LooperMode.Mode.PAUSED)
+public class NoteSearchBenchmark {
+
+    private static final int[] SIZES = {10000, 100000};
+    private static final String[] QUERIES = {"meeting", "mee", "meeting budget", "xylophone"};
+    private static final int RUNS = 50; // per query and size
+    private static final int WARM_UP_RUNS = 5;
+    private static final long MAX_SEARCH_MS = 10;
+
+    @Rule
+    public NoteRepositoryRule rule = new NoteRepositoryRule();
+
+    @Test
+    public void searchLatency() throws Exception {
+        NoteBenchmarkReport report = new NoteBenchmarkReport("NoteSearchBenchmark");
+        NoteRepository repository = rule.getRepository();
+        int noteCount = 0;
+        List<String> slowSearches = new ArrayList<>();
+
+        for (int size : SIZES) {
+            TestNotes.AwaitedWrite write = new TestNotes.AwaitedWrite(1);
+            repository.importNotes(TestNotes.createNotes(size - noteCount, 20, size), write);
+            write.await();
+            assertTrue(write.success);
+            noteCount = size;
+
+            for (String query : QUERIES) {
+                for (int i = 0; i < WARM_UP_RUNS; i++) {
+                    search(repository, query);
+                }
+                rule.getMetrics().reset(); // QUERY_SEARCH below is for this query and size only
+                String metric = "search." + query.replace(' ', '_') + "." + size;
+                for (int i = 0; i < RUNS; i++) {
+                    long startNanos = System.nanoTime();
+                    List<Note> notes = search(repository, query);
+                    report.recordNanos(metric, System.nanoTime() - startNanos);
+                    if (query.equals("xylophone")) {
+                        assertEquals(0, notes.size());
+                    } else {
+                        assertFalse(notes.isEmpty());
+                    }
+                }
+                // Same searches as measured by the repository, without the hop to the main looper
+                LogLinearHistogram searches = rule.getMetrics().getHistograms().get(NoteMetrics.QUERY_SEARCH);
+                long medianNanos = searches.getValueAtPercentile(50);
+                report.recordNanos(metric + "." + NoteMetrics.QUERY_SEARCH + ".p50", medianNanos);
+                report.recordNanos(metric + "." + NoteMetrics.QUERY_SEARCH + ".p99", searches.getValueAtPercentile(99));
+                if (medianNanos >= TimeUnit.MILLISECONDS.toNanos(MAX_SEARCH_MS)) {
+                    slowSearches.add("'" + query + "' at " + size + " notes: " + TimeUnit.NANOSECONDS.toMicros(medianNanos) + " us");
+                }
+            }
+        }
+        report.write();
+        assertTrue("Median search of " + MAX_SEARCH_MS + " ms or more: " + slowSearches, slowSearches.isEmpty());
+    }
+
+    private static List<Note> search(NoteRepository repository, String query) throws InterruptedException {
+        final AtomicReference<List<Note>> result = new AtomicReference<>();
+        final CountDownLatch latch = new CountDownLatch(1);
+        repository.searchNotes(query, new NoteRepository.SearchCallback() {
+            @Override
+            public void onResult(List<Note> notes) {
+                result.set(notes);
+                latch.countDown();
+            }
+        });
+        TestNotes.await(latch);
+        return result.get();
+    }
+}
@@ -0,0 +1,222 @@
+package com.example.notesmvvm;
+
+/*
+*  NoteRepository.searchNotes() end to end - on the real repository, its write queue and note_fts.
+* */
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.LooperMode;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@LooperMode(LooperMode.Mode.PAUSED)
+public class NoteSearchTest {
+
+    @Rule
+    public NoteRepositoryRule rule = new NoteRepositoryRule();
+
+    // A word far behind the stored prefix of a compressed description is found - note_fts has the whole text
+    @Test
+    public void findsWordsOfWholeLongDescription() throws Exception {
+        String description = TestNotes.words(new Random(1), 2000) + " zebracorn";
+        assertTrue(description.length() > NoteDescriptionCodec.COMPRESSION_THRESHOLD);
+        TestNotes.AwaitedWrite write = new TestNotes.AwaitedWrite(1);
+        rule.getRepository().insert(new Note("Transcript", description, 5), write);
+        write.await();
+        assertTrue(write.success);
+
+        final int id = NoteRepositoryRule.SAMPLE_NOTES + 1;
+        byte[] descriptionBlob = rule.query(new Callable<byte[]>() {
+            @Override
+            public byte[] call() {
+                return rule.getDatabase().noteDao().getDescriptionBlob(id);
+            }
+        });
+        assertNotNull(descriptionBlob); // stored compressed, the description column has only the first STORED_PREFIX_LENGTH chars
+
+        List<Note> notes = search(rule.getRepository(), "zebracorn");
+        assertEquals(1, notes.size());
+        assertEquals(id, notes.get(0).getId());
+    }
+
+    // A long note saved again in its stored form (only the beginning of the description loaded) still has its whole text indexed
+    @Test
+    public void updateOfStoredNoteKeepsWordsOfWholeDescription() throws Exception {
+        String description = TestNotes.words(new Random(2), 2000) + " zebracorn";
+        TestNotes.AwaitedWrite write = new TestNotes.AwaitedWrite(1);
+        rule.getRepository().insert(new Note("Transcript", description, 5), write);
+        write.await();
+        assertTrue(write.success);
+
+        final int id = NoteRepositoryRule.SAMPLE_NOTES + 1;
+        Note stored = rule.query(new Callable<Note>() {
+            @Override
+            public Note call() {
+                return rule.getDatabase().noteDao().getNoteById(id);
+            }
+        });
+        assertFalse(stored.hasFullDescription());
+        Note renamed = new Note("Renamed transcript", stored.getDescription(), stored.getPriority());
+        renamed.setId(id);
+        renamed.setDescriptionBlob(stored.getDescriptionBlob());
+        write = new TestNotes.AwaitedWrite(1);
+        rule.getRepository().update(renamed, write);
+        write.await();
+        assertTrue(write.success);
+
+        List<Note> notes = search(rule.getRepository(), "zebracorn");
+        assertEquals(1, notes.size());
+        assertEquals("Renamed transcript", notes.get(0).getTitle());
+    }
+
+    // Notes with every word in the title come first, then the newest - the order NoteDao.SEARCH_QUERY ranks by
+    @Test
+    public void titleMatchesRankFirstThenNewest() throws Exception {
+        String[][] notes = {{"Budget review", "numbers"}, {"Shopping", "budget for food"}, {"Call", "talk about the budget"}};
+        for (String[] text : notes) {
+            TestNotes.AwaitedWrite write = new TestNotes.AwaitedWrite(1);
+            rule.getRepository().insert(new Note(text[0], text[1], 1), write); // one by one, so ids are in this order
+            write.await();
+            assertTrue(write.success);
+        }
+
+        List<Note> found = search(rule.getRepository(), "budg");
+        assertEquals(3, found.size());
+        assertEquals("Budget review", found.get(0).getTitle());
+        assertEquals("Call", found.get(1).getTitle());
+        assertEquals("Shopping", found.get(2).getTitle());
+    }
+
+    /*
+    * Deleted notes are filtered in the search query itself, before the result limit - after "delete all" of more notes than the limit,
+    * the notes written afterwards are found (not an empty page of deleted hits). Undo brings the hidden notes back into search and list.
+    * */
+    @Test
+    public void searchAndListFollowDeleteAllAndUndo() throws Exception {
+        final NoteRepository repository = rule.getRepository();
+        int hidden = 300; // more than the search result limit of the repository
+        TestNotes.AwaitedWrite writes = new TestNotes.AwaitedWrite(hidden);
+        for (int i = 0; i < hidden; i++) {
+            repository.insert(new Note("Alpha " + i, "old note", 5), writes);
+        }
+        writes.await();
+
+        TestNotes.AwaitedWrite deleteAll = new TestNotes.AwaitedWrite(1);
+        repository.deleteAllNotes(deleteAll);
+        deleteAll.await();
+        writes = new TestNotes.AwaitedWrite(5);
+        for (int i = 0; i < 5; i++) {
+            repository.insert(new Note("Alpha new " + i, "new note", 5), writes);
+        }
+        writes.await();
+        assertTrue(writes.success);
+
+        List<Note> found = search(repository, "alpha");
+        assertEquals(5, found.size());
+        for (Note note : found) {
+            assertEquals("new note", note.getDescription());
+        }
+        assertEquals(5, rule.countNotes());
+        assertEquals(5, firstPageSize());
+
+        // One of the new notes deleted and restored
+        TestNotes.AwaitedWrite delete = new TestNotes.AwaitedWrite(1);
+        repository.deleteById(found.get(0).getId(), delete);
+        delete.await();
+        assertEquals(4, search(repository, "alpha").size());
+        TestNotes.AwaitedWrite undo = new TestNotes.AwaitedWrite(1);
+        repository.undoDelete(found.get(0).getId(), undo);
+        undo.await();
+        assertEquals(5, search(repository, "alpha").size());
+
+        // Undo of "delete all" - old notes are back, together with the ones written since
+        undo = new TestNotes.AwaitedWrite(1);
+        repository.undoDeleteAllNotes(undo);
+        undo.await();
+        assertTrue(undo.success);
+        assertEquals(NoteRepositoryRule.SAMPLE_NOTES + hidden + 5, rule.countNotes());
+        assertEquals(200, search(repository, "alpha").size()); // the result limit, full of visible notes
+        assertEquals(NoteRepository.PAGED_LIST_CONFIG.initialLoadSizeHint, firstPageSize());
+    }
+
+    // The editor saves only the changed fields of a note which was deleted while it was open - the note is back, like after update()
+    @Test
+    public void editSavedAfterDeleteRestoresNote() throws Exception {
+        final NoteRepository repository = rule.getRepository();
+        final int id = NoteRepositoryRule.SAMPLE_NOTES;
+        Note original = rule.query(new Callable<Note>() {
+            @Override
+            public Note call() {
+                return rule.getDatabase().noteDao().getNoteById(id);
+            }
+        });
+        TestNotes.AwaitedWrite delete = new TestNotes.AwaitedWrite(1);
+        repository.deleteById(id, delete);
+        delete.await();
+        assertEquals(NoteRepositoryRule.SAMPLE_NOTES - 1, rule.countNotes());
+
+        Note edited = new Note("Zebracorn plans", original.getDescription(), original.getPriority());
+        edited.setId(id);
+        TestNotes.AwaitedWrite write = new TestNotes.AwaitedWrite(1);
+        assertTrue(repository.updateChangedFields(original, edited, write));
+        write.await();
+        assertTrue(write.success);
+
+        assertEquals(NoteRepositoryRule.SAMPLE_NOTES, rule.countNotes());
+        List<Note> found = search(repository, "zebracorn");
+        assertEquals(1, found.size());
+        assertEquals(id, found.get(0).getId());
+
+        // Once the note is purged there is nothing to restore - the edit fails instead of writing nothing
+        rule.query(new Callable<Void>() {
+            @Override
+            public Void call() {
+                rule.getDatabase().getOpenHelper().getWritableDatabase().execSQL("DELETE FROM note_table WHERE id = " + id);
+                return null;
+            }
+        });
+        Note renamed = new Note("Renamed again", edited.getDescription(), edited.getPriority());
+        renamed.setId(id);
+        write = new TestNotes.AwaitedWrite(1);
+        assertTrue(repository.updateChangedFields(edited, renamed, write));
+        write.await();
+        assertFalse(write.success);
+        assertTrue(search(repository, "zebracorn").isEmpty());
+    }
+
+    private int firstPageSize() throws Exception {
+        return rule.query(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return TestNotes.loadFirstPage(rule.getDatabase().noteDao()).size();
+            }
+        });
+    }
+
+    static List<Note> search(NoteRepository repository, String query) throws InterruptedException {
+        final AtomicReference<List<Note>> result = new AtomicReference<>();
+        final CountDownLatch latch = new CountDownLatch(1);
+        repository.searchNotes(query, new NoteRepository.SearchCallback() {
+            @Override
+            public void onResult(List<Note> notes) {
+                result.set(notes);
+                latch.countDown();
+            }
+        });
+        TestNotes.await(latch);
+        return result.get();
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.notesmvvm;
+
+/*
+*  What index (priority, id) saves - first page of the note list at 100k notes with the index, and again after dropping it
+*  (SQLite then scans and sorts the whole table in a temp B-tree for every page). Results go to
+*  build/benchmark-results/NoteSortIndexBenchmark.json.
+*
+*  Run with: ./gradlew testDebugUnitTest -Pbenchmark --tests '*NoteSortIndexBenchmark'
+* */
+
+import androidx.paging.PagedList;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class NoteSortIndexBenchmark {
+
+    private static final int NOTES = 100000;
+    private static final int RUNS = 30;
+
+    @Test
+    public void firstPageWithAndWithoutSortIndex() throws Exception {
+        NoteBenchmarkReport report = new NoteBenchmarkReport("NoteSortIndexBenchmark");
+        NoteDatabase database = TestNotes.createInMemoryDatabase(ApplicationProvider.getApplicationContext());
+        try {
+            TestNotes.insertNotes(database, NOTES, NOTES);
+
+            measureFirstPage(report, database.noteDao(), "list.firstPage.withIndex");
+            database.getOpenHelper().getWritableDatabase().execSQL("DROP INDEX index_note_table_priority_id");
+            measureFirstPage(report, database.noteDao(), "list.firstPage.withoutIndex");
+
+            long withIndex = report.get("list.firstPage.withIndex").getValueAtPercentile(50);
+            long withoutIndex = report.get("list.firstPage.withoutIndex").getValueAtPercentile(50);
+            assertTrue("With index " + withIndex + " ns, without " + withoutIndex + " ns", withIndex < withoutIndex);
+        } finally {
+            database.close();
+        }
+        report.write();
+    }
+
+    private void measureFirstPage(NoteBenchmarkReport report, final NoteDao noteDao, String metric) {
+        TestNotes.loadFirstPage(noteDao); // warm up - statement and first pages of the table are cached after it
+        for (int i = 0; i < RUNS; i++) {
+            report.time(metric, new Runnable() {
+                @Override
+                public void run() {
+                    PagedList<NoteSummary> page = TestNotes.loadFirstPage(noteDao);
+                    assertEquals(NoteRepository.PAGED_LIST_CONFIG.initialLoadSizeHint, page.size());
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.notesmvvm;
+
+/*
+*  10k inserts through NoteRepository (NoteWriteQueue batches them into shared transactions) against 10k inserts in their own
+*  transactions, like the old AsyncTask per write did. Time, notes per second, batches and invalidations of note_table go to
+*  build/benchmark-results/NoteWriteQueueBenchmark.json.
+*
+*  Run with: ./gradlew testDebugUnitTest -Pbenchmark --tests '*NoteWriteQueueBenchmark'
+* */
+
+import androidx.annotation.NonNull;
+import androidx.room.InvalidationTracker;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.LooperMode;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@LooperMode(LooperMode.Mode.PAUSED)
+public class NoteWriteQueueBenchmark {
+
+    private static final int WRITES = 10000;
+
+    @Rule
+    public NoteRepositoryRule rule = new NoteRepositoryRule();
+
+    @Test
+    public void batchedAgainstOneTransactionPerWrite() throws Exception {
+        NoteBenchmarkReport report = new NoteBenchmarkReport("NoteWriteQueueBenchmark");
+        final NoteDatabase database = rule.getDatabase();
+
+        // After - inserts through the repository, NoteWriteQueue batches them
+        final AtomicInteger invalidations = new AtomicInteger();
+        final InvalidationTracker.Observer observer = new InvalidationTracker.Observer("note_table") {
+            @Override
+            public void onInvalidated(@NonNull Set<String> tables) {
+                invalidations.incrementAndGet();
+            }
+        };
+        rule.query(new Callable<Void>() {
+            @Override
+            public Void call() {
+                database.getInvalidationTracker().addObserver(observer); // syncs Room's triggers, not on the main thread
+                return null;
+            }
+        });
+        List<Note> batchedNotes = TestNotes.createNotes(WRITES, 20, 1);
+        TestNotes.AwaitedWrite writes = new TestNotes.AwaitedWrite(WRITES);
+        long startNanos = System.nanoTime();
+        for (Note note : batchedNotes) {
+            rule.getRepository().insert(note, writes);
+        }
+        writes.await();
+        long batchedNanos = System.nanoTime() - startNanos;
+        rule.query(new Callable<Void>() {
+            @Override
+            public Void call() {
+                database.getInvalidationTracker().removeObserver(observer);
+                return null;
+            }
+        });
+
+        // Before - every insert is its own transaction (what InsertNoteAsyncTask did), run on one background thread
+        final List<Note> notes = TestNotes.createNotes(WRITES, 20, 2);
+        long singleNanos = rule.query(new Callable<Long>() {
+            @Override
+            public Long call() {
+                long startNanos = System.nanoTime();
+                for (Note note : notes) {
+                    database.noteDao().Insert(note);
+                }
+                return System.nanoTime() - startNanos;
+            }
+        });
+
+        report.recordNanos("insert.singleTransactions." + WRITES, singleNanos);
+        report.recordRate("insert.singleTransactions." + WRITES + ".notesPerSecond", WRITES, singleNanos);
+        report.recordNanos("insert.batched." + WRITES, batchedNanos);
+        report.recordRate("insert.batched." + WRITES + ".notesPerSecond", WRITES, batchedNanos);
+        report.recordValue("insert.batched." + WRITES + ".invalidations", invalidations.get());
+        report.recordValue("insert.batched." + WRITES + ".batches",
+                rule.getMetrics().getHistograms().get(NoteMetrics.WRITE_BATCH).getTotalCount());
+        report.write();
+
+        assertTrue(writes.success);
+        assertEquals(NoteRepositoryRule.SAMPLE_NOTES + 2 * WRITES, rule.countNotes());
+        assertTrue("Batched " + batchedNanos + " ns, single transactions " + singleNanos + " ns", batchedNanos < singleNanos);
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.notesmvvm;
+
+/*
+*  NoteWriteQueue - writes keep their order, writes issued together share a transaction (and an invalidation of the note list),
+*  and a committed batch is never applied again. (Its throughput against one transaction per write is NoteWriteQueueBenchmark)
+* */
+
+import androidx.annotation.NonNull;
+import androidx.room.InvalidationTracker;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.LooperMode;
+
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@LooperMode(LooperMode.Mode.PAUSED)
+public class NoteWriteQueueTest {
+
+    private static final int WRITES = 2000;
+
+    @Rule
+    public NoteRepositoryRule rule = new NoteRepositoryRule();
+
+    @Test
+    public void writesOfSameNoteAreAppliedInOrder() throws Exception {
+        final int id = NoteRepositoryRule.SAMPLE_NOTES; // a sample note
+        NoteRepository repository = rule.getRepository();
+
+        TestNotes.AwaitedWrite writes = new TestNotes.AwaitedWrite(1000);
+        for (int i = 0; i < 1000; i++) {
+            Note note = new Note("Title " + i, "Description " + i, 1 + i % 10);
+            note.setId(id);
+            repository.update(note, writes);
+        }
+        writes.await();
+
+        assertTrue(writes.success);
+        Note stored = rule.query(new Callable<Note>() {
+            @Override
+            public Note call() {
+                return rule.getDatabase().noteDao().getNoteById(id);
+            }
+        });
+        assertEquals("Title 999", stored.getTitle());
+        assertEquals("Description 999", stored.getDescription());
+    }
+
+    @Test
+    public void throwingOnCommittedDoesNotRetryTheBatch() throws Exception {
+        final AtomicInteger applied = new AtomicInteger();
+        NoteWriteQueue writeQueue = NoteWriteQueue.getInstance(rule.getDatabase());
+        TestNotes.AwaitedWrite writes = new TestNotes.AwaitedWrite(2);
+        writeQueue.enqueue(new NoteWriteQueue.Write() {
+            @Override
+            public void apply(NoteDao noteDao) {
+                applied.incrementAndGet();
+                noteDao.Insert(new Note("First", "Description", 1));
+            }
+
+            @Override
+            public void onCommitted() {
+                throw new IllegalStateException("Hook failed");
+            }
+        }, writes);
+        writeQueue.enqueue(new NoteWriteQueue.Write() { // same batch
+            @Override
+            public void apply(NoteDao noteDao) {
+                applied.incrementAndGet();
+                noteDao.Insert(new Note("Second", "Description", 1));
+            }
+        }, writes);
+        writes.await();
+
+        // Both writes were committed once - the exception was only logged, the batch was not run again one write at a time
+        assertTrue(writes.success);
+        assertEquals(2, applied.get());
+        assertEquals(NoteRepositoryRule.SAMPLE_NOTES + 2, rule.countNotes());
+    }
+
+    // Writes issued together share transactions - and Room re-queries the note list once per transaction, not once per write
+    @Test
+    public void writesShareTransactionsAndInvalidations() throws Exception {
+        final NoteDatabase database = rule.getDatabase();
+        final AtomicInteger invalidations = new AtomicInteger();
+        final InvalidationTracker.Observer observer = new InvalidationTracker.Observer("note_table") {
+            @Override
+            public void onInvalidated(@NonNull Set<String> tables) {
+                invalidations.incrementAndGet();
+            }
+        };
+        rule.query(new Callable<Void>() {
+            @Override
+            public Void call() {
+                database.getInvalidationTracker().addObserver(observer); // syncs Room's triggers, not on the main thread
+                return null;
+            }
+        });
+        rule.getMetrics().reset(); // WRITE_BATCH below counts only the batches of these writes
+
+        TestNotes.AwaitedWrite writes = new TestNotes.AwaitedWrite(WRITES);
+        for (Note note : TestNotes.createNotes(WRITES, 20, 1)) {
+            rule.getRepository().insert(note, writes);
+        }
+        writes.await();
+        rule.query(new Callable<Void>() {
+            @Override
+            public Void call() {
+                database.getInvalidationTracker().refreshVersionsSync(); // invalidation of the last batch is delivered
+                database.getInvalidationTracker().removeObserver(observer);
+                return null;
+            }
+        });
+
+        assertTrue(writes.success);
+        assertEquals(NoteRepositoryRule.SAMPLE_NOTES + WRITES, rule.countNotes());
+        long batches = rule.getMetrics().getHistograms().get(NoteMetrics.WRITE_BATCH).getTotalCount();
+        assertTrue(batches + " batches for " + WRITES + " writes", batches < WRITES / 10);
+        // One invalidation per batch at most (Room also merges the ones which come faster than the list re-queries)
+        assertTrue(invalidations.get() + " invalidations for " + batches + " batches", invalidations.get() <= batches);
+        assertTrue(invalidations.get() > 0);
+    }
+}
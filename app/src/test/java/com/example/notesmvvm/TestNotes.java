@@ -0,0 +1,169 @@
+package com.example.notesmvvm;
+
+/*
+*  Helpers shared by the JVM (Robolectric) tests and benchmarks -
+*  - an in-memory NoteDatabase with the same triggers and note_state row as the real one,
+*  - generated notes (deterministic - same seed, same notes, so runs of a benchmark can be compared),
+*  - waiting for callbacks which NoteRepository/NoteWriteQueue post to the main looper (the test thread).
+* */
+
+import android.content.Context;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.paging.DataSource;
+import androidx.paging.PagedList;
+import androidx.room.Room;
+import androidx.room.RoomDatabase;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.fail;
+import static org.robolectric.Shadows.shadowOf;
+
+final class TestNotes {
+
+    static final int INSERT_CHUNK_SIZE = 1000;
+
+    private static final long AWAIT_TIMEOUT_MS = 60 * 1000;
+
+    // Words of generated notes - a search for one of them hits about 1 / WORDS.length of the notes per word in the query
+    static final String[] WORDS = {
+            "meeting", "project", "budget", "holiday", "grocery", "recipe", "garden", "travel", "invoice", "report",
+            "doctor", "birthday", "movie", "package", "laptop", "payment", "workout", "dentist", "library", "concert",
+            "lecture", "deadline", "printer", "kitchen", "weekend", "airport", "license", "contract", "interview", "client",
+            "release", "backup", "server", "android", "kotlin", "python", "database", "network", "camera", "battery",
+            "bicycle", "coffee", "dinner", "flight", "hotel", "museum", "parking", "school", "tennis", "vacation"};
+
+    // Runs a task right away on the calling thread - PagedList loads in tests are synchronous with it
+    static final Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public void execute(@NonNull Runnable command) {
+            command.run();
+        }
+    };
+
+    private TestNotes() {
+    }
+
+    static NoteDatabase createInMemoryDatabase(Context context) {
+        return Room.inMemoryDatabaseBuilder(context, NoteDatabase.class)
+                .allowMainThreadQueries() // tests and benchmarks query from the test thread
+                .addCallback(new RoomDatabase.Callback() {
+                    @Override
+                    public void onCreate(@NonNull SupportSQLiteDatabase db) {
+                        NoteDatabase.createTriggersAndState(db);
+                    }
+                })
+                .build();
+    }
+
+    // descriptionWords words per description, title is 3 words
+    static List<Note> createNotes(int count, int descriptionWords, long seed) {
+        Random random = new Random(seed);
+        List<Note> notes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            notes.add(new Note(words(random, 3), words(random, descriptionWords), 1 + random.nextInt(10)));
+        }
+        return notes;
+    }
+
+    static String words(Random random, int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                text.append(' ');
+            }
+            text.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return text.toString();
+    }
+
+    /*
+    * Inserts count generated notes (and their search index rows, like NoteRepository does) in transactions of INSERT_CHUNK_SIZE notes.
+    * Returns ids of the notes.
+    * */
+    static List<Integer> insertNotes(final NoteDatabase database, int count, long seed) {
+        final List<Integer> ids = new ArrayList<>(count);
+        final List<Note> notes = createNotes(count, 20, seed);
+        for (int start = 0; start < count; start += INSERT_CHUNK_SIZE) {
+            final List<Note> chunk = notes.subList(start, Math.min(count, start + INSERT_CHUNK_SIZE));
+            database.runInTransaction(new Runnable() {
+                @Override
+                public void run() {
+                    long[] chunkIds = database.noteDao().Insert(chunk);
+                    List<NoteFts> noteFts = new ArrayList<>(chunk.size());
+                    for (int i = 0; i < chunk.size(); i++) {
+                        noteFts.add(new NoteFts((int) chunkIds[i], chunk.get(i).getTitle(), chunk.get(i).getDescription()));
+                        ids.add((int) chunkIds[i]);
+                    }
+                    database.noteFtsDao().Insert(noteFts);
+                }
+            });
+        }
+        return ids;
+    }
+
+    // First page of the note list, loaded the way NoteRepository's LivePagedListBuilder loads it (same DataSource and config)
+    static PagedList<NoteSummary> loadFirstPage(NoteDao noteDao) {
+        DataSource<Integer, NoteSummary> dataSource = noteDao.getNoteSummariesPaged().create();
+        return new PagedList.Builder<>(dataSource, NoteRepository.PAGED_LIST_CONFIG)
+                .setNotifyExecutor(DIRECT_EXECUTOR)
+                .setFetchExecutor(DIRECT_EXECUTOR)
+                .build();
+    }
+
+    /*
+    * Waits until latch is counted down, running the main looper meanwhile - NoteWriteQueue and NoteRepository deliver their callbacks
+    * by posting to it, and in tests the main looper is the test thread itself.
+    * */
+    static void await(CountDownLatch latch) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + AWAIT_TIMEOUT_MS;
+        while (!latch.await(1, TimeUnit.MILLISECONDS)) {
+            idleMainLooper();
+            if (System.currentTimeMillis() > deadline) {
+                fail("Timed out waiting for a callback");
+            }
+        }
+        idleMainLooper();
+    }
+
+    // Runs everything posted to the main looper so far
+    static void idleMainLooper() {
+        shadowOf(Looper.getMainLooper()).idle();
+    }
+
+    // Callback which counts down latch - and remembers whether the write succeeded
+    static class AwaitedWrite implements NoteWriteQueue.WriteCallback {
+
+        final CountDownLatch latch;
+        volatile boolean success = true;
+
+        AwaitedWrite(int writes) {
+            latch = new CountDownLatch(writes);
+        }
+
+        @Override
+        public void onComplete(boolean success) {
+            if (!success) {
+                this.success = false;
+            }
+            latch.countDown();
+        }
+
+        void await() throws InterruptedException {
+            TestNotes.await(latch);
+        }
+    }
+
+    static long usedHeapBytes() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.notesmvvm;
+
+/*
+*  TimingOpenHelperFactory (the default open helper factory of NoteDatabaseConfig) - DAO queries and page loads of the note list
+*  are recorded to the metrics of the database, each under its own name.
+* */
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.LooperMode;
+
+import java.util.concurrent.Callable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@LooperMode(LooperMode.Mode.PAUSED)
+public class TimingOpenHelperFactoryTest {
+
+    @Rule
+    public NoteRepositoryRule rule = new NoteRepositoryRule();
+
+    @Test
+    public void daoQueriesAndPageLoadsAreTimed() throws Exception {
+        assertTrue(rule.getConfig().getOpenHelperFactory() instanceof TimingOpenHelperFactory);
+        rule.getMetrics().reset();
+
+        Note note = rule.query(new Callable<Note>() {
+            @Override
+            public Note call() {
+                return rule.getDatabase().noteDao().getNoteById(NoteRepositoryRule.SAMPLE_NOTES);
+            }
+        });
+        assertNotNull(note);
+        assertTrue(count(NoteMetrics.QUERY_SQL) >= 1); // Room's invalidation tracker may have run its own queries as well
+        assertEquals(0, count(NoteMetrics.QUERY_PAGE));
+
+        int loaded = rule.query(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return TestNotes.loadFirstPage(rule.getDatabase().noteDao()).size();
+            }
+        });
+        assertEquals(NoteRepositoryRule.SAMPLE_NOTES, loaded);
+        assertEquals(1, count(NoteMetrics.QUERY_PAGE));
+    }
+
+    private long count(String metric) {
+        LogLinearHistogram histogram = rule.getMetrics().getHistograms().get(metric);
+        return histogram == null ? 0 : histogram.getTotalCount();
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.notesmvvm;
+
+/*
+*  NoteDao on a device at 10k notes, measured by Jetpack Microbenchmark (BenchmarkRule) - the reads the app does most (note by id
+*  when the editor opens, search as the user types) and the write of a title-only edit. The JVM version of it, at 1k/10k/100k notes,
+*  is app/src/test/.../NoteDaoBenchmark.
+*
+*  Run with: ./gradlew :benchmark:connectedCheck
+* */
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.room.Room;
+import androidx.room.RoomDatabase;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+
+@RunWith(AndroidJUnit4.class)
+public class NoteDaoMicrobenchmark {
+
+    private static final int NOTES = 10000;
+    private static final int INSERT_CHUNK_SIZE = 1000;
+    private static final String[] WORDS = {"meeting", "budget", "shopping", "call", "project", "review", "travel", "idea",
+            "recipe", "garden", "book", "movie", "doctor", "birthday", "invoice", "team", "plan", "report", "gym", "music"};
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private NoteDatabase database;
+    private NoteDao noteDao;
+    private final List<Integer> ids = new ArrayList<>(NOTES);
+
+    @Before
+    public void setUp() {
+        Context context = ApplicationProvider.getApplicationContext();
+        database = Room.inMemoryDatabaseBuilder(context, NoteDatabase.class)
+                .allowMainThreadQueries() // benchmarks query from the test thread
+                .addCallback(new RoomDatabase.Callback() {
+                    @Override
+                    public void onCreate(@NonNull SupportSQLiteDatabase db) {
+                        NoteDatabase.createTriggersAndState(db);
+                    }
+                })
+                .build();
+        noteDao = database.noteDao();
+        insertNotes(new Random(NOTES));
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void getNoteById() {
+        Random random = new Random(1);
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            Note note = noteDao.getNoteById(ids.get(random.nextInt(NOTES)));
+            state.pauseTiming();
+            assertNotNull(note);
+            state.resumeTiming();
+        }
+    }
+
+    @Test
+    public void searchNotes() {
+        Random random = new Random(2);
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            String word = WORDS[random.nextInt(WORDS.length)].substring(0, 4);
+            List<Integer> found = noteDao.searchNotes("title:" + word + "*", word + "*", 200);
+            state.pauseTiming();
+            assertFalse(found.isEmpty());
+            state.resumeTiming();
+        }
+    }
+
+    @Test
+    public void updateTitle() {
+        Random random = new Random(3);
+        BenchmarkState state = benchmarkRule.getState();
+        int edit = 0;
+        while (state.keepRunning()) {
+            noteDao.UpdateTitle(ids.get(random.nextInt(NOTES)), "Edited " + edit++); // own transaction, like a single edit
+        }
+    }
+
+    // NOTES notes with 3 word titles and 20 word descriptions, in transactions of INSERT_CHUNK_SIZE (same as an import)
+    private void insertNotes(Random random) {
+        for (int start = 0; start < NOTES; start += INSERT_CHUNK_SIZE) {
+            final List<Note> chunk = new ArrayList<>(INSERT_CHUNK_SIZE);
+            for (int i = start; i < Math.min(NOTES, start + INSERT_CHUNK_SIZE); i++) {
+                chunk.add(new Note(words(random, 3), words(random, 20), 1 + random.nextInt(10)));
+            }
+            database.runInTransaction(new Runnable() {
+                @Override
+                public void run() {
+                    long[] chunkIds = noteDao.Insert(chunk);
+                    List<NoteFts> noteFts = new ArrayList<>(chunk.size());
+                    for (int i = 0; i < chunk.size(); i++) {
+                        noteFts.add(new NoteFts((int) chunkIds[i], chunk.get(i).getTitle(), chunk.get(i).getDescription()));
+                        ids.add((int) chunkIds[i]);
+                    }
+                    database.noteFtsDao().Insert(noteFts);
+                }
+            });
+        }
+    }
+
+    private static String words(Random random, int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                text.append(' ');
+            }
+            text.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return text.toString();
+    }
+}